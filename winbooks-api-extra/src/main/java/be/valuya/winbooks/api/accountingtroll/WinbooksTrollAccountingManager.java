@@ -13,26 +13,29 @@ import be.valuya.accountingtroll.domain.ATThirdParty;
 import be.valuya.accountingtroll.domain.ATThirdPartyBalance;
 import be.valuya.jbooks.model.WbDocument;
 import be.valuya.winbooks.api.accountingtroll.cache.AccountingManagerCache;
+import be.valuya.winbooks.api.accountingtroll.cache.AccountingManagerCacheRefresher;
+import be.valuya.winbooks.api.accountingtroll.cache.AccountingManagerCacheRegistry;
 import be.valuya.winbooks.api.accountingtroll.converter.ATDocumentConverter;
 import be.valuya.winbooks.api.extra.WinbooksExtraService;
+import be.valuya.winbooks.api.extra.WinbooksFileFingerprint;
 import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
 import be.valuya.winbooks.domain.error.WinbooksError;
 import be.valuya.winbooks.domain.error.WinbooksException;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-public class WinbooksTrollAccountingManager implements AccountingManager {
+public class WinbooksTrollAccountingManager implements AccountingManager, AutoCloseable {
 
     private static final String DOCUMENTS_PATH_NAME = "Document";
     private static final String DOCUMENT_UPLOAD_PATH_NAME = "Scans";
@@ -40,12 +43,62 @@ public class WinbooksTrollAccountingManager implements AccountingManager {
     private WinbooksExtraService extraService;
     private WinbooksFileConfiguration fileConfiguration;
 
-    private final AccountingManagerCache accountingManagerCache;
+    // Either a cache refresher of our own, or the one shared through the registry
+    private final Optional<AccountingManagerCacheRefresher> ownCacheRefresherOptional;
+    private final Optional<AccountingManagerCacheRegistry> cacheRegistryOptional;
+    private volatile Path dossierBasePath;
 
+    /**
+     * The cache is refreshed in the background when a cache refresh interval is configured, until this manager is
+     * closed.
+     *
+     * @see WinbooksFileConfiguration#setCacheRefreshIntervalOptional(Optional)
+     */
     public WinbooksTrollAccountingManager(WinbooksFileConfiguration fileConfiguration) {
         this.fileConfiguration = fileConfiguration;
         extraService = new WinbooksExtraService();
-        accountingManagerCache = new AccountingManagerCache(fileConfiguration);
+        AccountingManagerCacheRefresher cacheRefresher = new AccountingManagerCacheRefresher(fileConfiguration);
+        fileConfiguration.getCacheRefreshIntervalOptional()
+                .ifPresent(cacheRefresher::start);
+        ownCacheRefresherOptional = Optional.of(cacheRefresher);
+        cacheRegistryOptional = Optional.empty();
+    }
+
+    /**
+     * The cache is shared with the other managers of the same dossier through the registry, and may be evicted from it
+     * to be loaded again later.
+     */
+    public WinbooksTrollAccountingManager(WinbooksFileConfiguration fileConfiguration, AccountingManagerCacheRegistry cacheRegistry) {
+        this.fileConfiguration = fileConfiguration;
+        extraService = new WinbooksExtraService();
+        ownCacheRefresherOptional = Optional.empty();
+        cacheRegistryOptional = Optional.of(cacheRegistry);
+    }
+
+    /**
+     * Replaces the cache now if the dossier tables changed, without waiting for the background refresh.
+     *
+     * @return whether the cache was replaced.
+     */
+    public boolean refreshCacheIfChanged() {
+        return getCacheRefresher().refreshIfChanged();
+    }
+
+    /**
+     * Stops refreshing the cache in the background. A cache shared through a registry stops being refreshed for all
+     * its managers.
+     */
+    public void stopCacheRefresh() {
+        getCacheRefresher().stop();
+    }
+
+    /**
+     * Stops refreshing our own cache in the background. A cache shared through a registry keeps being refreshed for
+     * its other managers, until it is evicted.
+     */
+    @Override
+    public void close() {
+        ownCacheRefresherOptional.ifPresent(AccountingManagerCacheRefresher::stop);
     }
 
     @Override
@@ -56,73 +109,173 @@ public class WinbooksTrollAccountingManager implements AccountingManager {
 
     @Override
     public Stream<ATAccount> streamAccounts() {
-        return accountingManagerCache.streamAccounts();
+        return getCache().streamAccounts();
     }
 
     @Override
     public Stream<ATBookYear> streamBookYears() {
         // TODO: check use of book year index 0 that was added in gestemps
-        return accountingManagerCache.streamBookYears();
+        return getCache().streamBookYears();
     }
 
     @Override
     public Stream<ATBookPeriod> streamPeriods() {
-        return accountingManagerCache.streamPeriods();
+        return getCache().streamPeriods();
     }
 
     @Override
     public Stream<ATThirdParty> streamThirdParties() {
-        return accountingManagerCache.streamThirdParties();
+        return getCache().streamThirdParties();
     }
 
     @Override
     public Stream<ATThirdPartyBalance> streamThirdPartyBalances() {
-        List<ATBookPeriod> allPeriods = streamPeriods().collect(Collectors.toList());
-        Stream<ATAccountingEntry> entryStream = streamAccountingEntries();
+        // Periods and entries from the same cache
+        AccountingManagerCache cache = getCache();
+        List<ATBookPeriod> allPeriods = cache.streamPeriods().collect(Collectors.toList());
+        Stream<ATAccountingEntry> entryStream = streamSortedAccountingEntries(cache);
         ThirdPartyBalanceSpliterator balanceSpliterator = new ThirdPartyBalanceSpliterator(entryStream, allPeriods);
 
         balanceSpliterator.setResetOnBookYearOpening(true);
         balanceSpliterator.setIgnoreIntermediatePeriodOpeningEntry(false);
 
-        return StreamSupport.stream(balanceSpliterator, false);
+        // Closing the balances releases the entries, sorted to disk or indexing documents lazily
+        return StreamSupport.stream(balanceSpliterator, false)
+                .onClose(entryStream::close);
     }
 
     @Override
     public Stream<ATAccountingEntry> streamAccountingEntries() {
-        return accountingManagerCache.streamAccountingEntries()
-                .sorted();
+        return streamSortedAccountingEntries(getCache());
     }
 
     @Override
     public Stream<ATAccountBalance> streamAccountBalances() {
-        List<ATBookPeriod> allPeriods = streamPeriods().collect(Collectors.toList());
-        Stream<ATAccountingEntry> entryStream = streamAccountingEntries();
+        AccountingManagerCache cache = getCache();
+        List<ATBookPeriod> allPeriods = cache.streamPeriods().collect(Collectors.toList());
+        Stream<ATAccountingEntry> entryStream = streamSortedAccountingEntries(cache);
         AccountBalanceSpliterator balanceSpliterator = new AccountBalanceSpliterator(entryStream, allPeriods);
 
         balanceSpliterator.setResetOnBookYearOpening(true);
         balanceSpliterator.setResetEveryYear(false);
         balanceSpliterator.setIgnoreIntermediatePeriodOpeningEntry(false);
 
-        return StreamSupport.stream(balanceSpliterator, false);
+        // Closing the balances releases the entries, sorted to disk or indexing documents lazily
+        return StreamSupport.stream(balanceSpliterator, false)
+                .onClose(entryStream::close);
     }
 
     @Override
     public Stream<ATDocument> streamDocuments() {
-        return accountingManagerCache.streamDocuments();
+        return getCache().streamDocuments();
     }
 
     @Override
     public InputStream streamDocumentContent(ATDocument atDocument) {
-        ATDocumentConverter documentConverter = new ATDocumentConverter(accountingManagerCache);
+        ATDocumentConverter documentConverter = new ATDocumentConverter(getCache());
         WbDocument wbDocument = documentConverter.convertWbDocument(atDocument);
-        byte[] documentdata = extraService.getDocumentData(fileConfiguration, wbDocument)
+        return extraService.openDocumentContent(fileConfiguration, wbDocument)
                 .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "Could not find document"));
+    }
+
+    /**
+     * @param partIndex The part index, from 0 to the document part count, exclusive.
+     */
+    public InputStream streamDocumentPartContent(ATDocument atDocument, int partIndex) {
+        ATDocumentConverter documentConverter = new ATDocumentConverter(getCache());
+        WbDocument wbDocument = documentConverter.convertWbDocument(atDocument);
+        return extraService.openDocumentPartContent(fileConfiguration, wbDocument, partIndex)
+                .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "Could not find document part"));
+    }
 
-        return new ByteArrayInputStream(documentdata);
+    /**
+     * @param firstPageNumber The first page, starting from 1.
+     * @param lastPageNumber  The last page, inclusive.
+     */
+    public InputStream streamDocumentPagesContent(ATDocument atDocument, int firstPageNumber, int lastPageNumber) {
+        ATDocumentConverter documentConverter = new ATDocumentConverter(getCache());
+        WbDocument wbDocument = documentConverter.convertWbDocument(atDocument);
+        return extraService.openDocumentPagesContent(fileConfiguration, wbDocument, firstPageNumber, lastPageNumber)
+                .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "Could not find document pages"));
     }
 
     @Override
     public void uploadDocument(String documentRelativePathName, InputStream inputStream) throws Exception {
+        // Written on this thread, under a temporary name first
+        Path uploadDirectoryPath = getUploadDirectoryPath();
+        Path documentPath = getDocumentUploadPath(uploadDirectoryPath, documentRelativePathName);
+        extraService.writeFile(fileConfiguration, documentPath, inputStream);
+    }
+
+    /**
+     * Uploads several documents at once, writing them concurrently. Each document is written under a temporary name
+     * first, so that partial documents are never visible. Input streams are not closed.
+     *
+     * @param inputStreamsByRelativePathName Document contents, by path name relative to the upload directory.
+     * @see WinbooksFileConfiguration#setDocumentUploadParallelism(int)
+     */
+    public void uploadDocuments(Map<String, InputStream> inputStreamsByRelativePathName) {
+        Path uploadDirectoryPath = getUploadDirectoryPath();
+        Map<Path, InputStream> inputStreamsByPath = new LinkedHashMap<>();
+        inputStreamsByRelativePathName.forEach((documentRelativePathName, inputStream) -> {
+            Path documentPath = getDocumentUploadPath(uploadDirectoryPath, documentRelativePathName);
+            inputStreamsByPath.put(documentPath, inputStream);
+        });
+        extraService.writeFiles(fileConfiguration, inputStreamsByPath);
+    }
+
+    /**
+     * @param directoryRelativePathName Directory path name relative to the upload directory, empty for the upload
+     *                                  directory itself.
+     * @return fingerprints of documents uploaded to this directory, by path name relative to the upload directory.
+     * @see WinbooksFileConfiguration#setDocumentUploadFingerprints(boolean)
+     */
+    public Map<String, WinbooksFileFingerprint> getUploadedDocumentFingerprints(String directoryRelativePathName) {
+        Path uploadDirectoryPath = getUploadDirectoryPath();
+        Path directoryPath = getDocumentUploadPath(uploadDirectoryPath, directoryRelativePathName);
+        if (!Files.isDirectory(directoryPath)) {
+            return Map.of();
+        }
+        Map<String, WinbooksFileFingerprint> fingerprintsByRelativePathName = new LinkedHashMap<>();
+        extraService.getFileFingerprints(fileConfiguration, directoryPath)
+                .forEach((documentPath, fingerprint) -> {
+                    String documentRelativePathName = uploadDirectoryPath.relativize(documentPath).toString();
+                    fingerprintsByRelativePathName.put(documentRelativePathName, fingerprint);
+                });
+        return fingerprintsByRelativePathName;
+    }
+
+    private AccountingManagerCache getCache() {
+        return getCacheRefresher().getCache();
+    }
+
+    private AccountingManagerCacheRefresher getCacheRefresher() {
+        return ownCacheRefresherOptional
+                .orElseGet(() -> cacheRegistryOptional.get().getCacheRefresher(getDossierBasePath(), fileConfiguration));
+    }
+
+    private Path getDossierBasePath() {
+        // Resolved once, as it may probe the filesystem
+        if (dossierBasePath == null) {
+            dossierBasePath = extraService.getDossierBasePath(fileConfiguration)
+                    .toAbsolutePath()
+                    .normalize();
+        }
+        return dossierBasePath;
+    }
+
+    private Stream<ATAccountingEntry> streamSortedAccountingEntries(AccountingManagerCache cache) {
+        // Sorted by the cache already
+        return cache.streamAccountingEntries();
+    }
+
+    private Path getUploadDirectoryPath() {
+        Path baseFolderPath = extraService.getDossierBasePath(fileConfiguration);
+        return baseFolderPath.resolve(DOCUMENTS_PATH_NAME)
+                .resolve(DOCUMENT_UPLOAD_PATH_NAME);
+    }
+
+    private Path getDocumentUploadPath(Path uploadDirectoryPath, String documentRelativePathName) {
         Path documentRelativePath = Paths.get(documentRelativePathName);
         int documentFileNamePathCount = documentRelativePath.getNameCount();
         if (documentFileNamePathCount < 0) {
@@ -133,20 +286,7 @@ public class WinbooksTrollAccountingManager implements AccountingManager {
             throw new WinbooksException(WinbooksError.USER_FILE_ERROR, "Document path is absolute");
         }
 
-        Path baseFolderPath = extraService.getDossierBasePath(fileConfiguration);
-
-        Path documentDirectoryPath = baseFolderPath.resolve(DOCUMENTS_PATH_NAME)
-                .resolve(DOCUMENT_UPLOAD_PATH_NAME)
-                .resolve(documentRelativePathName)
-                .getParent();
-        String documentFileName = documentRelativePath
-                .getFileName()
-                .toString();
-
-        Path actualDirectoryPath = extraService.createDirectories(fileConfiguration, documentDirectoryPath);
-        Path documentPath = actualDirectoryPath.resolve(documentFileName);
-
-        Files.copy(inputStream, documentPath, StandardCopyOption.REPLACE_EXISTING);
+        return uploadDirectoryPath.resolve(documentRelativePathName);
     }
 
 }
@@ -0,0 +1,158 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.accountingtroll.domain.ATAccount;
+import be.valuya.accountingtroll.domain.ATAccountingEntry;
+import be.valuya.accountingtroll.domain.ATBookPeriod;
+import be.valuya.accountingtroll.domain.ATThirdParty;
+import be.valuya.accountingtroll.domain.AccountingEntryDocumentNumberType;
+import be.valuya.accountingtroll.domain.AccountingEntryDocumentType;
+import be.valuya.accountingtroll.domain.AccountingEntryType;
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Compact binary rows for accounting entries. Periods, accounts and third parties are written as references, and
+ * resolved again from the cache when read. Documents are not written: they are linked again after reading.
+ */
+class AccountingEntryRowCodec {
+
+    private static final int NULL_ORDINAL = -1;
+    private static final long NULL_EPOCH_DAY = Long.MIN_VALUE;
+
+    private final List<ATBookPeriod> bookPeriods;
+    private final Map<ATBookPeriod, Integer> bookPeriodIndexes = new IdentityHashMap<>();
+    private final Function<String, Optional<ATAccount>> accountResolver;
+    private final Function<String, Optional<ATThirdParty>> thirdPartyResolver;
+
+    /**
+     * @param bookPeriods        All periods entries may refer to.
+     * @param accountResolver    Resolves accounts by code.
+     * @param thirdPartyResolver Resolves third parties by id.
+     */
+    AccountingEntryRowCodec(List<ATBookPeriod> bookPeriods, Function<String, Optional<ATAccount>> accountResolver,
+                            Function<String, Optional<ATThirdParty>> thirdPartyResolver) {
+        this.bookPeriods = bookPeriods;
+        this.accountResolver = accountResolver;
+        this.thirdPartyResolver = thirdPartyResolver;
+        for (int periodIndex = 0; periodIndex < bookPeriods.size(); periodIndex++) {
+            bookPeriodIndexes.put(bookPeriods.get(periodIndex), periodIndex);
+        }
+    }
+
+    void writeRow(DataOutput dataOutput, ATAccountingEntry accountingEntry) throws IOException {
+        ATBookPeriod bookPeriod = accountingEntry.getBookPeriod();
+        Integer periodIndex = Optional.ofNullable(bookPeriodIndexes.get(bookPeriod))
+                .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "Unknown period " + bookPeriod));
+        dataOutput.writeInt(periodIndex);
+        writeDate(dataOutput, accountingEntry.getDateOptional());
+        writeAmount(dataOutput, accountingEntry.getAmount());
+        writeString(dataOutput, accountingEntry.getDbkCodeOptional());
+        writeOrdinal(dataOutput, accountingEntry.getAccountingEntryTypeOptional());
+        writeString(dataOutput, accountingEntry.getDocNumberOptional());
+        writeOrdinal(dataOutput, accountingEntry.getDocNumberTypeOptional());
+        dataOutput.writeInt(accountingEntry.getOrderingNumber());
+        writeOrdinal(dataOutput, accountingEntry.getAccountingEntryDocumentTypeOptional());
+        dataOutput.writeUTF(accountingEntry.getAccount().getCode());
+        dataOutput.writeBoolean(accountingEntry.isMatched());
+        writeString(dataOutput, accountingEntry.getThirdPartyOptional().map(ATThirdParty::getId));
+        writeDate(dataOutput, accountingEntry.getDocumentDateOptional());
+        writeDate(dataOutput, accountingEntry.getDueDateOptional());
+        writeString(dataOutput, accountingEntry.getCommentOptional());
+    }
+
+    ATAccountingEntry readRow(DataInput dataInput) throws IOException {
+        ATAccountingEntry accountingEntry = new ATAccountingEntry();
+        int periodIndex = dataInput.readInt();
+        accountingEntry.setBookPeriod(bookPeriods.get(periodIndex));
+        readDate(dataInput).ifPresent(accountingEntry::setDate);
+        accountingEntry.setAmount(readAmount(dataInput));
+        readString(dataInput).ifPresent(accountingEntry::setDbkCode);
+        readOrdinal(dataInput, AccountingEntryType.values()).ifPresent(accountingEntry::setAccountingEntryType);
+        readString(dataInput).ifPresent(accountingEntry::setDocNumber);
+        readOrdinal(dataInput, AccountingEntryDocumentNumberType.values()).ifPresent(accountingEntry::setDocNumberType);
+        accountingEntry.setOrderingNumber(dataInput.readInt());
+        readOrdinal(dataInput, AccountingEntryDocumentType.values()).ifPresent(accountingEntry::setAccountingEntryDocumentType);
+        String accountCode = dataInput.readUTF();
+        ATAccount account = accountResolver.apply(accountCode)
+                .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "No account found for number " + accountCode));
+        accountingEntry.setAccount(account);
+        accountingEntry.setMatched(dataInput.readBoolean());
+        readString(dataInput)
+                .flatMap(thirdPartyResolver)
+                .ifPresent(accountingEntry::setThirdParty);
+        readDate(dataInput).ifPresent(accountingEntry::setDocumentDate);
+        readDate(dataInput).ifPresent(accountingEntry::setDueDate);
+        readString(dataInput).ifPresent(accountingEntry::setComment);
+        return accountingEntry;
+    }
+
+    private void writeAmount(DataOutput dataOutput, BigDecimal amount) throws IOException {
+        byte[] unscaledValueBytes = amount.unscaledValue().toByteArray();
+        dataOutput.writeByte(amount.scale());
+        dataOutput.writeByte(unscaledValueBytes.length);
+        dataOutput.write(unscaledValueBytes);
+    }
+
+    private BigDecimal readAmount(DataInput dataInput) throws IOException {
+        int scale = dataInput.readByte();
+        int unscaledValueLength = dataInput.readUnsignedByte();
+        byte[] unscaledValueBytes = new byte[unscaledValueLength];
+        dataInput.readFully(unscaledValueBytes);
+        return new BigDecimal(new BigInteger(unscaledValueBytes), scale);
+    }
+
+    private void writeDate(DataOutput dataOutput, Optional<LocalDate> dateOptional) throws IOException {
+        long epochDay = dateOptional.map(LocalDate::toEpochDay)
+                .orElse(NULL_EPOCH_DAY);
+        dataOutput.writeLong(epochDay);
+    }
+
+    private Optional<LocalDate> readDate(DataInput dataInput) throws IOException {
+        long epochDay = dataInput.readLong();
+        if (epochDay == NULL_EPOCH_DAY) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDate.ofEpochDay(epochDay));
+    }
+
+    private void writeString(DataOutput dataOutput, Optional<String> stringOptional) throws IOException {
+        dataOutput.writeBoolean(stringOptional.isPresent());
+        if (stringOptional.isPresent()) {
+            dataOutput.writeUTF(stringOptional.get());
+        }
+    }
+
+    private Optional<String> readString(DataInput dataInput) throws IOException {
+        boolean present = dataInput.readBoolean();
+        if (!present) {
+            return Optional.empty();
+        }
+        return Optional.of(dataInput.readUTF());
+    }
+
+    private void writeOrdinal(DataOutput dataOutput, Optional<? extends Enum<?>> enumOptional) throws IOException {
+        int ordinal = enumOptional.map(Enum::ordinal)
+                .orElse(NULL_ORDINAL);
+        dataOutput.writeByte(ordinal);
+    }
+
+    private <E extends Enum<E>> Optional<E> readOrdinal(DataInput dataInput, E[] enumValues) throws IOException {
+        int ordinal = dataInput.readByte();
+        if (ordinal == NULL_ORDINAL) {
+            return Optional.empty();
+        }
+        return Optional.of(enumValues[ordinal]);
+    }
+}
@@ -21,29 +21,70 @@ import be.valuya.winbooks.api.accountingtroll.converter.ATBookYearConverter;
 import be.valuya.winbooks.api.accountingtroll.converter.ATDocumentConverter;
 import be.valuya.winbooks.api.accountingtroll.converter.ATThirdPartyConverter;
 import be.valuya.winbooks.api.accountingtroll.converter.ATThirdPartyIdFactory;
+import be.valuya.winbooks.api.extra.WinbooksDocumentIndex;
+import be.valuya.winbooks.api.extra.WinbooksDossierTable;
 import be.valuya.winbooks.api.extra.WinbooksExtraService;
 import be.valuya.winbooks.api.extra.config.DocumentMatchingMode;
 import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import be.valuya.winbooks.api.extra.reader.WbEntryDbfReader;
 import be.valuya.winbooks.domain.error.WinbooksError;
 import be.valuya.winbooks.domain.error.WinbooksException;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class AccountingManagerCache {
-
-    private List<WbBookYearFull> wbBookYearFulls;
-    private Map<String, ATBookYear> bookYearsByShortName;
-    private Map<String, List<ATBookPeriod>> bookPeriodsByBookYearShortName;
-    private Map<String, ATAccount> accountsByCode;
-    private Map<String, ATThirdParty> thirdPartiesById;
-    private Map<ATDocumentCacheKey, ATDocument> documentsByCacheKey;
-    private List<ATAccountingEntry> accountingEntries;
+    private static Logger LOGGER = Logger.getLogger(AccountingManagerCache.class.getName());
+
+    // Rough retained sizes, in bytes, including the strings, dates and amounts owned by each instance
+    private static final long CACHE_RETAINED_SIZE = 4096;
+    private static final long BOOK_YEAR_RETAINED_SIZE = 512;
+    private static final long BOOK_PERIOD_RETAINED_SIZE = 256;
+    private static final long ACCOUNT_RETAINED_SIZE = 320;
+    private static final long THIRD_PARTY_RETAINED_SIZE = 640;
+    private static final long DOCUMENT_RETAINED_SIZE = 384;
+    private static final long ACCOUNTING_ENTRY_RETAINED_SIZE = 480;
+
+    private static final Comparator<CachedAccountingEntry> CACHED_ACCOUNTING_ENTRY_COMPARATOR = Comparator.comparing(CachedAccountingEntry::getAccountingEntry);
+
+    private final CachedSection<List<WbBookYearFull>> wbBookYearFullsSection = new CachedSection<>(this::loadWbBookYearFulls);
+    private final CachedSection<Map<String, ATBookYear>> bookYearsByShortNameSection = new CachedSection<>(this::loadBookYears);
+    private final CachedSection<Map<String, List<ATBookPeriod>>> bookPeriodsByBookYearShortNameSection = new CachedSection<>(this::loadBookPeriods);
+    // Periods by the book year periods entries refer to, shared through the dossier metadata
+    private final CachedSection<Map<WbPeriod, ATBookPeriod>> bookPeriodsByWbPeriodSection = new CachedSection<>(this::loadBookPeriodsByWbPeriod);
+    private final CachedSection<Map<String, ATAccount>> accountsByCodeSection = new CachedSection<>(this::loadAccounts);
+    private final CachedSection<Map<String, ATThirdParty>> thirdPartiesByIdSection = new CachedSection<>(this::loadThirdParties);
+    private final CachedSection<Map<ATDocumentCacheKey, ATDocument>> documentsByCacheKeySection = new CachedSection<>(this::loadDocuments);
+    // Lazily indexed documents, by book year short name and dbk code. Each dbk is loaded as a section of its own.
+    private final Map<String, Map<String, CachedSection<Map<ATDocumentCacheKey, ATDocument>>>> lazyDocumentsByBookYearAndDbk = new ConcurrentHashMap<>();
+    // Entries by book year index, in book year order, each sorted
+    private final CachedSection<Map<Integer, List<CachedAccountingEntry>>> accountingEntriesSection = new CachedSection<>(this::loadAccountingEntries);
+    // Dossier tables that changed since a previous cache, whose entries may be reused
+    private final Set<WinbooksDossierTable> changedTables;
+    private volatile Map<Integer, List<CachedAccountingEntry>> previousAccountingEntriesByBookYear;
+    // Documents of a previous cache, whose archived book years documents may be reused
+    private volatile Map<ATDocumentCacheKey, ATDocument> previousDocumentsByCacheKey;
+    // Book years some entries of which could not be converted or resolved, by index. Filled with the entries section.
+    private final Set<Integer> rejectingBookYearIndexes = ConcurrentHashMap.newKeySet();
+    private volatile Set<Integer> previousRejectingBookYearIndexes = Set.of();
 
     private final WinbooksExtraService extraService;
     private final WinbooksFileConfiguration fileConfiguration;
@@ -56,8 +97,64 @@ public class AccountingManagerCache {
     private final ATDocumentConverter atDocumentConverter;
 
     public AccountingManagerCache(WinbooksFileConfiguration fileConfiguration) {
+        this(fileConfiguration, new WinbooksExtraService(), Set.of());
+    }
+
+    AccountingManagerCache(WinbooksFileConfiguration fileConfiguration, WinbooksExtraService extraService) {
+        this(fileConfiguration, extraService, Set.of());
+    }
+
+    /**
+     * A cache for the same dossier, taking over the sections of a previous cache that do not depend on changed tables.
+     * Entries of book years whose table did not change are reused, with their accounts and third parties resolved
+     * again if those changed. Archived book years are never read again, unless accounts changed while some of their
+     * entries were rejected. When entries changed, documents of book years that are not archived are scanned again,
+     * as new entries may refer to new documents.
+     *
+     * @param changedTables Tables that changed since the previous cache was created, not including the param table.
+     */
+    AccountingManagerCache(AccountingManagerCache previousCache, Set<WinbooksDossierTable> changedTables) {
+        this(previousCache.fileConfiguration, previousCache.extraService, changedTables);
+        if (changedTables.contains(WinbooksDossierTable.PARAM)) {
+            throw new IllegalArgumentException("Book years changed");
+        }
+        wbBookYearFullsSection.reuseLoaded(previousCache.wbBookYearFullsSection);
+        bookYearsByShortNameSection.reuseLoaded(previousCache.bookYearsByShortNameSection);
+        bookPeriodsByBookYearShortNameSection.reuseLoaded(previousCache.bookPeriodsByBookYearShortNameSection);
+        bookPeriodsByWbPeriodSection.reuseLoaded(previousCache.bookPeriodsByWbPeriodSection);
+        if (changedTables.contains(WinbooksDossierTable.ACCOUNTING_ENTRY)) {
+            previousDocumentsByCacheKey = previousCache.documentsByCacheKeySection.getLoadedOptional()
+                    .orElse(null);
+            Set<String> archivedBookYearShortNames = previousCache.wbBookYearFullsSection.getLoadedOptional()
+                    .orElseGet(List::of)
+                    .stream()
+                    .filter(this::isArchivedBookYear)
+                    .map(WbBookYearFull::getShortName)
+                    .collect(Collectors.toSet());
+            previousCache.lazyDocumentsByBookYearAndDbk.entrySet().stream()
+                    .filter(entry -> archivedBookYearShortNames.contains(entry.getKey()))
+                    .forEach(entry -> lazyDocumentsByBookYearAndDbk.put(entry.getKey(), entry.getValue()));
+        } else {
+            documentsByCacheKeySection.reuseLoaded(previousCache.documentsByCacheKeySection);
+            lazyDocumentsByBookYearAndDbk.putAll(previousCache.lazyDocumentsByBookYearAndDbk);
+        }
+        if (!changedTables.contains(WinbooksDossierTable.ACCOUNT)) {
+            accountsByCodeSection.reuseLoaded(previousCache.accountsByCodeSection);
+        }
+        if (!changedTables.contains(WinbooksDossierTable.CUSTOMER_SUPPLIER)) {
+            thirdPartiesByIdSection.reuseLoaded(previousCache.thirdPartiesByIdSection);
+        }
+        previousAccountingEntriesByBookYear = previousCache.accountingEntriesSection.getLoadedOptional()
+                .orElse(null);
+        if (previousAccountingEntriesByBookYear != null) {
+            previousRejectingBookYearIndexes = Set.copyOf(previousCache.rejectingBookYearIndexes);
+        }
+    }
+
+    private AccountingManagerCache(WinbooksFileConfiguration fileConfiguration, WinbooksExtraService extraService, Set<WinbooksDossierTable> changedTables) {
         this.fileConfiguration = fileConfiguration;
-        this.extraService = new WinbooksExtraService();
+        this.changedTables = changedTables;
+        this.extraService = extraService;
 
         atAccountConverter = new ATAccountConverter();
         atAccountingEntryConverter = new ATAccountingEntryConverter(this);
@@ -68,57 +165,74 @@ public class AccountingManagerCache {
     }
 
     public Stream<WbBookYearFull> streamWbBookYearFulls() {
-        this.cachWbBookYearFull();
-        return wbBookYearFulls.stream();
+        return wbBookYearFullsSection.get().stream();
     }
 
     public Stream<ATAccount> streamAccounts() {
-        this.cacheAccounts();
-        return accountsByCode.values().stream();
+        return accountsByCodeSection.get().values().stream();
     }
 
     public Stream<ATBookYear> streamBookYears() {
-        this.cacheBookYears();
-        return bookYearsByShortName.values().stream()
+        return bookYearsByShortNameSection.get().values().stream()
                 .sorted();
     }
 
     public Stream<ATBookPeriod> streamPeriods() {
-        this.cacheBookPeriods();
-        return bookPeriodsByBookYearShortName.values()
+        return bookPeriodsByBookYearShortNameSection.get().values()
                 .stream()
                 .flatMap(List::stream)
                 .sorted();
     }
 
     public Stream<ATThirdParty> streamThirdParties() {
-        this.cacheThirdParties();
-        return thirdPartiesById.values().stream();
+        return thirdPartiesByIdSection.get().values().stream();
     }
 
 
+    /**
+     * @return entries in their natural order, merged lazily from the book years entries sorted when loaded. When a
+     * spill directory is configured, entries are read and sorted to disk instead: the stream should then be closed
+     * if not fully consumed.
+     */
     public Stream<ATAccountingEntry> streamAccountingEntries() {
-        this.cacheAccountingEntries();
-        return accountingEntries.stream();
+        Optional<Path> entrySortSpillPathOptional = fileConfiguration.getEntrySortSpillPathOptional();
+        if (entrySortSpillPathOptional.isPresent()) {
+            return streamSpilledAccountingEntries(entrySortSpillPathOptional.get());
+        }
+        List<List<CachedAccountingEntry>> bookYearEntriesList = List.copyOf(accountingEntriesSection.get().values());
+        long entryCount = bookYearEntriesList.stream()
+                .mapToLong(List::size)
+                .sum();
+        SortedRunsIterator<CachedAccountingEntry> entryIterator = SortedRunsIterator.mergeLists(bookYearEntriesList, CACHED_ACCOUNTING_ENTRY_COMPARATOR);
+        Spliterator<CachedAccountingEntry> entrySpliterator = Spliterators.spliterator(entryIterator, entryCount,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(entrySpliterator, false)
+                .map(CachedAccountingEntry::getAccountingEntry);
     }
 
     public Stream<ATDocument> streamDocuments() {
-        this.cacheDocuments();
-        return documentsByCacheKey.values().stream();
+        return documentsByCacheKeySection.get().values().stream();
     }
 
     public ATBookYear getCachedBookYearOrThrow(String bookYearShortName) {
-        cacheBookYears();
-        ATBookYear bookYearNullable = bookYearsByShortName.get(bookYearShortName);
+        ATBookYear bookYearNullable = bookYearsByShortNameSection.get().get(bookYearShortName);
         return Optional.ofNullable(bookYearNullable)
                 .orElseThrow(() -> new WinbooksException(WinbooksError.FATAL_ERRORS, "No book year matching short name " + bookYearShortName));
     }
 
     public ATBookPeriod getCachedBookPeriodOrThrow(WbPeriod wbPeriod) {
-        cacheBookPeriods();
+        ATBookPeriod bookPeriodNullable = bookPeriodsByWbPeriodSection.get().get(wbPeriod);
+        if (bookPeriodNullable != null) {
+            return bookPeriodNullable;
+        }
+        // Not one of the cached book years periods
+        return findCachedBookPeriodByNameOrThrow(wbPeriod);
+    }
+
+    private ATBookPeriod findCachedBookPeriodByNameOrThrow(WbPeriod wbPeriod) {
         WbBookYearFull wbBookYearFull = wbPeriod.getWbBookYearFull();
         String shortName = wbBookYearFull.getShortName();
-        List<ATBookPeriod> periodListNullable = bookPeriodsByBookYearShortName.get(shortName);
+        List<ATBookPeriod> periodListNullable = bookPeriodsByBookYearShortNameSection.get().get(shortName);
         return Optional.ofNullable(periodListNullable)
                 .map(List::stream)
                 .orElse(Stream.empty())
@@ -128,14 +242,12 @@ public class AccountingManagerCache {
     }
 
     public Optional<ATAccount> getCachedAccountByCodeOptional(String accountCode) {
-        cacheAccounts();
-        ATAccount accountNullable = accountsByCode.get(accountCode);
+        ATAccount accountNullable = accountsByCodeSection.get().get(accountCode);
         return Optional.ofNullable(accountNullable);
     }
 
 
     public Optional<ATThirdParty> getCachedThirdPartyOptional(String accountId, WbDocType wbDocType) {
-        cacheThirdParties();
         switch (wbDocType) {
             case IMPUT_CLIENT:
                 return getCachedCustomerThirdPartyOptional(accountId);
@@ -147,25 +259,78 @@ public class AccountingManagerCache {
         }
     }
 
+    private Optional<ATThirdParty> getCachedThirdPartyByIdOptional(String thirdPartyId) {
+        ATThirdParty thirdParty = thirdPartiesByIdSection.get().get(thirdPartyId);
+        return Optional.ofNullable(thirdParty);
+    }
+
     public Optional<ATThirdParty> getCachedCustomerThirdPartyOptional(String accountId) {
         String id = ATThirdPartyIdFactory.getId(WbClientSupplierType.CLIENT, accountId);
-        ATThirdParty thirdParty = thirdPartiesById.get(id);
+        ATThirdParty thirdParty = thirdPartiesByIdSection.get().get(id);
         return Optional.ofNullable(thirdParty);
     }
 
     public Optional<ATThirdParty> getCachedSupplierThirdPartyOptional(String accountId) {
         String id = ATThirdPartyIdFactory.getId(WbClientSupplierType.SUPPLIER, accountId);
-        ATThirdParty thirdParty = thirdPartiesById.get(id);
+        ATThirdParty thirdParty = thirdPartiesByIdSection.get().get(id);
         return Optional.ofNullable(thirdParty);
     }
 
-    private void cacheAccounts() {
-        if (accountsByCode != null) {
-            return;
+    /**
+     * Loads the sections that are loaded in another cache, so that this one can replace it without callers waiting.
+     */
+    void preloadSections(AccountingManagerCache loadedCache) {
+        preloadSection(wbBookYearFullsSection, loadedCache.wbBookYearFullsSection);
+        preloadSection(bookYearsByShortNameSection, loadedCache.bookYearsByShortNameSection);
+        preloadSection(bookPeriodsByBookYearShortNameSection, loadedCache.bookPeriodsByBookYearShortNameSection);
+        preloadSection(bookPeriodsByWbPeriodSection, loadedCache.bookPeriodsByWbPeriodSection);
+        preloadSection(accountsByCodeSection, loadedCache.accountsByCodeSection);
+        preloadSection(thirdPartiesByIdSection, loadedCache.thirdPartiesByIdSection);
+        preloadSection(documentsByCacheKeySection, loadedCache.documentsByCacheKeySection);
+        preloadSection(accountingEntriesSection, loadedCache.accountingEntriesSection);
+    }
+
+    /**
+     * Estimates the memory retained by the loaded sections, from their sizes. Sections shared with a previous cache
+     * are counted in both.
+     *
+     * @return the estimated retained size, in bytes.
+     */
+    long estimateRetainedSize() {
+        long bookYearCount = wbBookYearFullsSection.getLoadedOptional().map(List::size).orElse(0)
+                + bookYearsByShortNameSection.getLoadedOptional().map(Map::size).orElse(0);
+        long bookPeriodCount = bookPeriodsByBookYearShortNameSection.getLoadedOptional()
+                .map(periodsByBookYear -> periodsByBookYear.values().stream().mapToLong(List::size).sum())
+                .orElse(0L);
+        long accountCount = accountsByCodeSection.getLoadedOptional().map(Map::size).orElse(0);
+        long thirdPartyCount = thirdPartiesByIdSection.getLoadedOptional().map(Map::size).orElse(0);
+        long lazyDocumentCount = lazyDocumentsByBookYearAndDbk.values().stream()
+                .flatMap(documentsByDbk -> documentsByDbk.values().stream())
+                .mapToLong(documentsSection -> documentsSection.getLoadedOptional().map(Map::size).orElse(0))
+                .sum();
+        long documentCount = documentsByCacheKeySection.getLoadedOptional().map(Map::size).orElse(0)
+                + lazyDocumentCount;
+        long accountingEntryCount = accountingEntriesSection.getLoadedOptional()
+                .map(entriesByBookYear -> entriesByBookYear.values().stream().mapToLong(List::size).sum())
+                .orElse(0L);
+        return CACHE_RETAINED_SIZE
+                + bookYearCount * BOOK_YEAR_RETAINED_SIZE
+                + bookPeriodCount * BOOK_PERIOD_RETAINED_SIZE
+                + accountCount * ACCOUNT_RETAINED_SIZE
+                + thirdPartyCount * THIRD_PARTY_RETAINED_SIZE
+                + documentCount * DOCUMENT_RETAINED_SIZE
+                + accountingEntryCount * ACCOUNTING_ENTRY_RETAINED_SIZE;
+    }
+
+    private void preloadSection(CachedSection<?> section, CachedSection<?> loadedSection) {
+        if (loadedSection.getLoadedOptional().isPresent()) {
+            section.get();
         }
+    }
 
+    private Map<String, ATAccount> loadAccounts() {
         int accountNumberLength = extraService.getAccountNumberLengthFromParamsTable(fileConfiguration);
-        accountsByCode = extraService.streamAcf(fileConfiguration)
+        return extraService.streamAcf(fileConfiguration)
                 .filter(this::isValidAccount)
                 .map(wbAccount -> this.safeConvertToTrollAccount(wbAccount, accountNumberLength))
                 .peek(e -> this.checkThrowOnConversion(e, WinbooksError.CANNOT_OPEN_DOSSIER))
@@ -185,20 +350,13 @@ public class AccountingManagerCache {
     }
 
 
-    private void cachWbBookYearFull() {
-        if (wbBookYearFulls != null) {
-            return;
-        }
-        wbBookYearFulls = extraService.streamBookYears(fileConfiguration)
+    private List<WbBookYearFull> loadWbBookYearFulls() {
+        return extraService.streamBookYears(fileConfiguration)
                 .collect(Collectors.toList());
     }
 
-    private void cacheBookYears() {
-        if (bookYearsByShortName != null) {
-            return;
-        }
-        cachWbBookYearFull();
-        bookYearsByShortName = wbBookYearFulls.stream()
+    private Map<String, ATBookYear> loadBookYears() {
+        return streamWbBookYearFulls()
                 .map(this::safeConvertToTrollBookYear)
                 .peek(e -> this.checkThrowOnConversion(e, WinbooksError.NO_BOOKYEAR))
                 .flatMap(this::streamOptional)
@@ -209,22 +367,34 @@ public class AccountingManagerCache {
     }
 
 
-    private void cacheBookPeriods() {
-        if (bookPeriodsByBookYearShortName != null) {
-            return;
-        }
-        bookPeriodsByBookYearShortName = extraService.streamBookYears(fileConfiguration)
+    private Map<String, List<ATBookPeriod>> loadBookPeriods() {
+        return extraService.streamBookYears(fileConfiguration)
                 .flatMap(this::streamYearPeriods)
                 .collect(Collectors.groupingBy(
                         p -> p.getBookYear().getName()
                 ));
     }
 
-    private void cacheThirdParties() {
-        if (thirdPartiesById != null) {
-            return;
+    private Map<WbPeriod, ATBookPeriod> loadBookPeriodsByWbPeriod() {
+        Map<String, List<ATBookPeriod>> bookPeriodsByBookYearShortName = bookPeriodsByBookYearShortNameSection.get();
+        // By identity, as entries refer to these same periods. Other instances are matched by name.
+        Map<WbPeriod, ATBookPeriod> bookPeriodsByWbPeriod = new IdentityHashMap<>();
+        for (WbBookYearFull wbBookYearFull : wbBookYearFullsSection.get()) {
+            String shortName = wbBookYearFull.getShortName();
+            List<ATBookPeriod> bookPeriods = bookPeriodsByBookYearShortName.getOrDefault(shortName, List.of());
+            for (WbPeriod wbPeriod : wbBookYearFull.getPeriodList()) {
+                // First period by that name, as matched by name otherwise
+                bookPeriods.stream()
+                        .filter(atPeriod -> this.isSamePeriod(atPeriod, wbPeriod))
+                        .findFirst()
+                        .ifPresent(bookPeriod -> bookPeriodsByWbPeriod.put(wbPeriod, bookPeriod));
+            }
         }
-        thirdPartiesById = extraService.streamCsf(fileConfiguration)
+        return Collections.unmodifiableMap(bookPeriodsByWbPeriod);
+    }
+
+    private Map<String, ATThirdParty> loadThirdParties() {
+        return extraService.streamCsf(fileConfiguration)
                 .filter(this::isValidClientSupplier)
                 .map(this::safeConvertToTrollThirdParty)
                 .peek(e -> this.checkThrowOnConversion(e, WinbooksError.CANNOT_OPEN_DOSSIER))
@@ -240,25 +410,177 @@ public class AccountingManagerCache {
     }
 
 
-    private void cacheAccountingEntries() {
-        if (accountingEntries != null) {
-            return;
+    private Map<Integer, List<CachedAccountingEntry>> loadAccountingEntries() {
+        bookYearsByShortNameSection.get();
+        bookPeriodsByBookYearShortNameSection.get();
+
+        DocumentMatchingMode documentMatchingMode = fileConfiguration.getDocumentMatchingMode();
+        if (documentMatchingMode == DocumentMatchingMode.EAGERLY_CACHE_ALL_DOCUMENTS) {
+            documentsByCacheKeySection.get();
+        }
+
+        Map<Integer, List<CachedAccountingEntry>> previousEntriesByBookYear = Optional.ofNullable(previousAccountingEntriesByBookYear)
+                .orElseGet(Map::of);
+        Set<Integer> previousRejectingBookYearIndexes = this.previousRejectingBookYearIndexes;
+        boolean accountsChanged = changedTables.contains(WinbooksDossierTable.ACCOUNT);
+        List<WbBookYearFull> wbBookYearFulls = wbBookYearFullsSection.get();
+        // A single reader, resolving the periods of all book years once, created when a book year is read
+        WbEntryDbfReader wbEntryDbfReaderNullable = null;
+
+        Map<Integer, List<CachedAccountingEntry>> entriesByBookYear = new LinkedHashMap<>();
+        List<List<CachedAccountingEntry>> loadedBookYearEntriesList = new ArrayList<>();
+        for (WbBookYearFull wbBookYearFull : wbBookYearFulls) {
+            int bookYearIndex = wbBookYearFull.getIndex();
+            List<CachedAccountingEntry> previousBookYearEntriesNullable = previousEntriesByBookYear.get(bookYearIndex);
+            boolean bookYearTableChanged = !isArchivedBookYear(wbBookYearFull)
+                    && changedTables.contains(WinbooksDossierTable.ACCOUNTING_ENTRY);
+            // Rejected rows are not kept: they may only be converted again by reading the book year again
+            boolean rejectedEntriesResolvable = accountsChanged && previousRejectingBookYearIndexes.contains(bookYearIndex);
+            List<CachedAccountingEntry> bookYearEntries;
+            if (previousBookYearEntriesNullable != null && !bookYearTableChanged && !rejectedEntriesResolvable) {
+                bookYearEntries = reuseBookYearAccountingEntries(bookYearIndex, previousBookYearEntriesNullable);
+            } else {
+                if (wbEntryDbfReaderNullable == null) {
+                    wbEntryDbfReaderNullable = extraService.createWbEntryDbfReader(fileConfiguration, wbBookYearFulls);
+                }
+                bookYearEntries = loadBookYearAccountingEntries(wbEntryDbfReaderNullable, wbBookYearFull, documentMatchingMode);
+                loadedBookYearEntriesList.add(bookYearEntries);
+            }
+            entriesByBookYear.put(bookYearIndex, bookYearEntries);
         }
-        cacheBookYears();
-        cacheBookPeriods();
+        // Reused entries are sorted already
+        loadedBookYearEntriesList.parallelStream()
+                .forEach(this::sortBookYearAccountingEntries);
+        // Do not hold on the previous entries anymore
+        previousAccountingEntriesByBookYear = null;
+        this.previousRejectingBookYearIndexes = Set.of();
+
+        if (documentMatchingMode == DocumentMatchingMode.LAZY_INDEXED) {
+            fileConfiguration.getDocumentIndexOptional()
+                    .ifPresent(WinbooksDocumentIndex::save);
+        }
+        return Collections.unmodifiableMap(entriesByBookYear);
+    }
 
+    private Stream<ATAccountingEntry> streamSpilledAccountingEntries(Path entrySortSpillPath) {
         DocumentMatchingMode documentMatchingMode = fileConfiguration.getDocumentMatchingMode();
         if (documentMatchingMode == DocumentMatchingMode.EAGERLY_CACHE_ALL_DOCUMENTS) {
-            cacheDocuments();
+            documentsByCacheKeySection.get();
         }
+        List<ATBookPeriod> bookPeriods = streamPeriods()
+                .collect(Collectors.toList());
+        AccountingEntryRowCodec rowCodec = new AccountingEntryRowCodec(bookPeriods, this::getCachedAccountByCodeOptional, this::getCachedThirdPartyByIdOptional);
+        int entrySortRunSize = fileConfiguration.getEntrySortRunSize();
+        ExternalAccountingEntrySorter entrySorter = new ExternalAccountingEntrySorter(entrySortSpillPath, entrySortRunSize, rowCodec);
 
-        accountingEntries = extraService.streamAct(fileConfiguration)
+        Stream<ATAccountingEntry> entryStream = extraService.streamAct(fileConfiguration)
                 .filter(this::isValidAccountingEntry)
                 .map(this::safeConvertToTrollAccountingEntry)
                 .peek(e -> this.checkThrowOnConversion(e, WinbooksError.USER_FILE_ERROR))
+                .flatMap(this::streamOptional);
+        // Documents are linked once read back, as they are not written
+        Stream<ATAccountingEntry> sortedEntryStream = entrySorter.sort(entryStream)
+                .map(e -> this.linkEntryDocument(e, documentMatchingMode));
+        if (documentMatchingMode == DocumentMatchingMode.LAZY_INDEXED) {
+            return sortedEntryStream.onClose(() -> fileConfiguration.getDocumentIndexOptional()
+                    .ifPresent(WinbooksDocumentIndex::save));
+        }
+        return sortedEntryStream;
+    }
+
+    private List<CachedAccountingEntry> loadBookYearAccountingEntries(WbEntryDbfReader wbEntryDbfReader, WbBookYearFull wbBookYearFull,
+                                                                      DocumentMatchingMode documentMatchingMode) {
+        AtomicInteger rejectedEntryCount = new AtomicInteger();
+        List<CachedAccountingEntry> bookYearEntries = extraService.streamBookYearAct(fileConfiguration, wbEntryDbfReader, wbBookYearFull)
+                .filter(this::isValidAccountingEntry)
+                .map(this::safeConvertToCachedAccountingEntry)
+                .peek(e -> this.checkThrowOnConversion(e, WinbooksError.USER_FILE_ERROR))
+                .peek(e -> this.countRejected(e, rejectedEntryCount))
+                .flatMap(this::streamOptional)
+                .peek(cachedEntry -> this.linkEntryDocument(cachedEntry.getAccountingEntry(), documentMatchingMode))
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (rejectedEntryCount.get() > 0) {
+            rejectingBookYearIndexes.add(wbBookYearFull.getIndex());
+        }
+        return bookYearEntries;
+    }
+
+    private void countRejected(Optional<?> convertedEntity, AtomicInteger rejectedCount) {
+        if (convertedEntity.isEmpty()) {
+            rejectedCount.incrementAndGet();
+        }
+    }
+
+    private void sortBookYearAccountingEntries(List<CachedAccountingEntry> bookYearEntries) {
+        // Rows are mostly in order already, and often sorted
+        if (!isSorted(bookYearEntries)) {
+            bookYearEntries.sort(CACHED_ACCOUNTING_ENTRY_COMPARATOR);
+        }
+    }
+
+    private boolean isSorted(List<CachedAccountingEntry> entries) {
+        for (int entryIndex = 1; entryIndex < entries.size(); entryIndex++) {
+            CachedAccountingEntry previousEntry = entries.get(entryIndex - 1);
+            CachedAccountingEntry entry = entries.get(entryIndex);
+            if (CACHED_ACCOUNTING_ENTRY_COMPARATOR.compare(previousEntry, entry) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Entries are shared with the previous cache as long as their accounts and third parties did not change. They are
+     * copied otherwise, leaving the previous cache untouched.
+     */
+    private List<CachedAccountingEntry> reuseBookYearAccountingEntries(int bookYearIndex, List<CachedAccountingEntry> previousEntries) {
+        boolean accountsChanged = changedTables.contains(WinbooksDossierTable.ACCOUNT);
+        boolean thirdPartiesChanged = changedTables.contains(WinbooksDossierTable.CUSTOMER_SUPPLIER);
+        if (previousRejectingBookYearIndexes.contains(bookYearIndex)) {
+            // Still rejecting: read again once accounts change
+            rejectingBookYearIndexes.add(bookYearIndex);
+        }
+        if (!accountsChanged && !thirdPartiesChanged) {
+            return previousEntries;
+        }
+        AtomicInteger rejectedEntryCount = new AtomicInteger();
+        List<CachedAccountingEntry> bookYearEntries = previousEntries.stream()
+                .map(this::safeResolveCachedAccountingEntry)
+                .peek(e -> this.checkThrowOnConversion(e, WinbooksError.USER_FILE_ERROR))
+                .peek(e -> this.countRejected(e, rejectedEntryCount))
                 .flatMap(this::streamOptional)
-                .map(e -> this.linkEntryDocument(e, documentMatchingMode))
                 .collect(Collectors.toList());
+        if (rejectedEntryCount.get() > 0) {
+            rejectingBookYearIndexes.add(bookYearIndex);
+        }
+        return bookYearEntries;
+    }
+
+    private Optional<CachedAccountingEntry> safeResolveCachedAccountingEntry(CachedAccountingEntry previousEntry) {
+        String accountCode = previousEntry.getAccountCode();
+        Optional<ATAccount> accountOptional = getCachedAccountByCodeOptional(accountCode);
+        if (accountOptional.isEmpty()) {
+            LOGGER.fine("No account found for number " + accountCode);
+            return Optional.empty();
+        }
+        Optional<ATThirdParty> thirdPartyOptional = getCachedThirdPartyOptional(previousEntry.getThirdPartyAccountId(), previousEntry.getWbDocType());
+
+        ATAccountingEntry accountingEntry = atAccountingEntryConverter.copyAccountingEntry(previousEntry.getAccountingEntry());
+        accountingEntry.setAccount(accountOptional.get());
+        accountingEntry.setThirdParty(thirdPartyOptional.orElse(null));
+        CachedAccountingEntry cachedEntry = new CachedAccountingEntry(accountingEntry, accountCode,
+                previousEntry.getThirdPartyAccountId(), previousEntry.getWbDocType());
+        return Optional.of(cachedEntry);
+    }
+
+    private Optional<CachedAccountingEntry> safeConvertToCachedAccountingEntry(WbEntry wbEntry) {
+        return safeConvertToTrollAccountingEntry(wbEntry)
+                .map(accountingEntry -> new CachedAccountingEntry(accountingEntry, wbEntry.getAccountGl(),
+                        wbEntry.getAccountRp(), wbEntry.getWbDocType()));
+    }
+
+    private boolean isArchivedBookYear(WbBookYearFull wbBookYearFull) {
+        return wbBookYearFull.getArchivePathNameOptional().isPresent();
     }
 
     private Optional<ATAccountingEntry> safeConvertToTrollAccountingEntry(WbEntry wbEntry) {
@@ -320,26 +642,66 @@ public class AccountingManagerCache {
         if (documentMatchingMode == DocumentMatchingMode.EAGERLY_CACHE_ALL_DOCUMENTS) {
             Optional<ATDocument> documentOptional = this.findAccountingEntryDocument(accountingEntry);
             documentOptional.ifPresent(accountingEntry::setDocument);
+        } else if (documentMatchingMode == DocumentMatchingMode.LAZY_INDEXED) {
+            Optional<ATDocument> documentOptional = this.findLazyAccountingEntryDocument(accountingEntry);
+            documentOptional.ifPresent(accountingEntry::setDocument);
         }
         return accountingEntry;
     }
 
+    private Optional<ATDocument> findLazyAccountingEntryDocument(ATAccountingEntry accountingEntry) {
+        if (documentsByCacheKeySection.getLoadedOptional().isPresent()) {
+            // All documents were cached already
+            return findAccountingEntryDocument(accountingEntry);
+        }
+        String dbkCode = accountingEntry.getDbkCode();
+        ATBookPeriod bookPeriod = accountingEntry.getBookPeriod();
+        String docNumber = accountingEntry.getDocNumber();
+        String bookYearName = bookPeriod.getBookYear().getName();
+
+        // Only creates the section in the map: the folder is listed on get, not to block other dbks meanwhile
+        CachedSection<Map<ATDocumentCacheKey, ATDocument>> dbkDocumentsSection = lazyDocumentsByBookYearAndDbk
+                .computeIfAbsent(bookYearName, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(dbkCode, code -> new CachedSection<>(() -> this.loadBookYearDbkDocuments(bookYearName, code)));
+        Map<ATDocumentCacheKey, ATDocument> dbkDocumentsByCacheKey = dbkDocumentsSection.get();
+        ATDocumentCacheKey cacheKey = new ATDocumentCacheKey(docNumber, dbkCode, bookPeriod);
+        ATDocument documentNullable = dbkDocumentsByCacheKey.get(cacheKey);
+
+        return Optional.ofNullable(documentNullable);
+    }
+
+    private Map<ATDocumentCacheKey, ATDocument> loadBookYearDbkDocuments(String bookYearName, String dbkCode) {
+        return streamWbBookYearFulls()
+                .filter(wbBookYearFull -> wbBookYearFull.getShortName().equals(bookYearName))
+                .findFirst()
+                .map(wbBookYearFull -> extraService.streamBookYearDbkDocuments(fileConfiguration, wbBookYearFull, dbkCode))
+                .orElseGet(Stream::empty)
+                .map(this::safeConvertToDocument)
+                .peek(e -> this.checkThrowOnConversion(e, WinbooksError.USER_FILE_ERROR))
+                .flatMap(this::streamOptional)
+                .collect(Collectors.toMap(
+                        ATDocumentCacheKey::new,
+                        Function.identity()
+                ));
+    }
+
     private Optional<ATDocument> findAccountingEntryDocument(ATAccountingEntry accountingEntry) {
         String dbkCode = accountingEntry.getDbkCode();
         ATBookPeriod bookPeriod = accountingEntry.getBookPeriod();
         String docNumber = accountingEntry.getDocNumber();
         ATDocumentCacheKey cacheKey = new ATDocumentCacheKey(docNumber, dbkCode, bookPeriod);
-        ATDocument documentNullable = documentsByCacheKey.get(cacheKey);
+        ATDocument documentNullable = documentsByCacheKeySection.get().get(cacheKey);
 
         return Optional.ofNullable(documentNullable);
     }
 
-    private void cacheDocuments() {
-        if (documentsByCacheKey != null) {
-            return;
-        }
-        documentsByCacheKey = streamWbBookYearFulls()
-                .flatMap(bookYear -> extraService.streamBookYearDocuments(fileConfiguration, bookYear))
+    private Map<ATDocumentCacheKey, ATDocument> loadDocuments() {
+        Map<ATDocumentCacheKey, ATDocument> previousDocumentsByCacheKey = this.previousDocumentsByCacheKey;
+        // Documents of archived book years do not change
+        List<WbBookYearFull> bookYears = streamWbBookYearFulls()
+                .filter(bookYear -> previousDocumentsByCacheKey == null || !isArchivedBookYear(bookYear))
+                .collect(Collectors.toList());
+        Map<ATDocumentCacheKey, ATDocument> documentsByCacheKey = extraService.streamBookYearsDocuments(fileConfiguration, bookYears)
                 .map(this::safeConvertToDocument)
                 .peek(e -> this.checkThrowOnConversion(e, WinbooksError.USER_FILE_ERROR))
                 .flatMap(this::streamOptional)
@@ -347,6 +709,16 @@ public class AccountingManagerCache {
                         ATDocumentCacheKey::new,
                         Function.identity()
                 ));
+        if (previousDocumentsByCacheKey != null) {
+            previousDocumentsByCacheKey.forEach((cacheKey, document) -> {
+                if (cacheKey.getPeriod().getBookYear().isArchived()) {
+                    documentsByCacheKey.putIfAbsent(cacheKey, document);
+                }
+            });
+            // Do not hold on the previous documents anymore
+            this.previousDocumentsByCacheKey = null;
+        }
+        return documentsByCacheKey;
     }
 
 
@@ -386,4 +758,36 @@ public class AccountingManagerCache {
                 .filter(Objects::nonNull);
     }
 
+    /**
+     * An entry, along with what is needed to resolve its account and third party again.
+     */
+    private static class CachedAccountingEntry {
+        private final ATAccountingEntry accountingEntry;
+        private final String accountCode;
+        private final String thirdPartyAccountId;
+        private final WbDocType wbDocType;
+
+        private CachedAccountingEntry(ATAccountingEntry accountingEntry, String accountCode, String thirdPartyAccountId, WbDocType wbDocType) {
+            this.accountingEntry = accountingEntry;
+            this.accountCode = accountCode;
+            this.thirdPartyAccountId = thirdPartyAccountId;
+            this.wbDocType = wbDocType;
+        }
+
+        private ATAccountingEntry getAccountingEntry() {
+            return accountingEntry;
+        }
+
+        private String getAccountCode() {
+            return accountCode;
+        }
+
+        private String getThirdPartyAccountId() {
+            return thirdPartyAccountId;
+        }
+
+        private WbDocType getWbDocType() {
+            return wbDocType;
+        }
+    }
 }
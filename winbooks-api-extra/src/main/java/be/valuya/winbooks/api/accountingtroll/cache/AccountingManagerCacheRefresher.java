@@ -0,0 +1,181 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.extra.WinbooksDossierTable;
+import be.valuya.winbooks.api.extra.WinbooksExtraService;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the accounting manager cache of a dossier, replacing it once the dossier tables changed.
+ * <p>
+ * A replacement cache is built and loaded off the request path, then swapped in at once. Callers never wait on a
+ * refresh: they keep being served by the previous cache until then. Only the sections depending on changed tables are
+ * loaded again, unless the dossier params changed.
+ */
+public class AccountingManagerCacheRefresher {
+    private static Logger LOGGER = Logger.getLogger(AccountingManagerCacheRefresher.class.getName());
+
+    private final Supplier<Map<WinbooksDossierTable, String>> tableSignaturesSupplier;
+    private final Supplier<AccountingManagerCache> cacheFactory;
+    private final Object refreshLock = new Object();
+
+    private volatile AccountingManagerCache cache;
+    // Signatures of the tables when the current cache was created, null if unknown
+    private volatile Map<WinbooksDossierTable, String> cacheTableSignatures;
+    private ScheduledExecutorService refreshExecutorService;
+
+    public AccountingManagerCacheRefresher(WinbooksFileConfiguration fileConfiguration) {
+        this(createTableSignaturesSupplier(fileConfiguration), () -> new AccountingManagerCache(fileConfiguration));
+    }
+
+    /**
+     * Reads the table signatures along with the creation of the first cache, so that a first refresh only replaces
+     * it if the tables changed since.
+     */
+    AccountingManagerCacheRefresher(Supplier<Map<WinbooksDossierTable, String>> tableSignaturesSupplier, Supplier<AccountingManagerCache> cacheFactory) {
+        this.tableSignaturesSupplier = tableSignaturesSupplier;
+        this.cacheFactory = cacheFactory;
+        this.cacheTableSignatures = readTableSignaturesOptional()
+                .orElse(null);
+        this.cache = cacheFactory.get();
+    }
+
+    public AccountingManagerCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Polls the dossier tables in the background, refreshing the cache when they changed. The background task does
+     * not keep this refresher reachable: it stops by itself once this refresher is garbage collected without being
+     * stopped.
+     */
+    public synchronized void start(Duration refreshInterval) {
+        if (refreshExecutorService != null) {
+            return;
+        }
+        refreshExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "winbooks-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        RefreshTask refreshTask = new RefreshTask(this, refreshExecutorService);
+        long refreshIntervalMillis = refreshInterval.toMillis();
+        refreshExecutorService.scheduleWithFixedDelay(refreshTask, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        Optional.ofNullable(refreshExecutorService)
+                .ifPresent(ScheduledExecutorService::shutdownNow);
+        refreshExecutorService = null;
+    }
+
+    /**
+     * Builds and loads a new cache if the dossier tables changed since the current one was created. Sections loaded
+     * in the current cache are loaded in the new one before it is published.
+     *
+     * @return whether the cache was replaced.
+     */
+    public boolean refreshIfChanged() {
+        synchronized (refreshLock) {
+            Map<WinbooksDossierTable, String> tableSignatures = tableSignaturesSupplier.get();
+            Set<WinbooksDossierTable> changedTables = getChangedTables(tableSignatures);
+            if (changedTables.isEmpty()) {
+                return false;
+            }
+            long time0 = System.currentTimeMillis();
+
+            AccountingManagerCache currentCache = cache;
+            AccountingManagerCache refreshedCache;
+            if (changedTables.contains(WinbooksDossierTable.PARAM)) {
+                // Book years and periods may have changed, on which everything else depends
+                refreshedCache = cacheFactory.get();
+            } else {
+                refreshedCache = new AccountingManagerCache(currentCache, changedTables);
+            }
+            refreshedCache.preloadSections(currentCache);
+            cache = refreshedCache;
+            cacheTableSignatures = tableSignatures;
+
+            long time1 = System.currentTimeMillis();
+            long deltaTime = time1 - time0;
+            LOGGER.finer("REFRESH accounting manager cache (" + changedTables + "): " + deltaTime);
+            return true;
+        }
+    }
+
+    private Optional<Map<WinbooksDossierTable, String>> readTableSignaturesOptional() {
+        try {
+            return Optional.of(tableSignaturesSupplier.get());
+        } catch (RuntimeException exception) {
+            // The first refresh will replace the cache
+            LOGGER.log(Level.FINE, "Could not read dossier table signatures", exception);
+            return Optional.empty();
+        }
+    }
+
+    private Set<WinbooksDossierTable> getChangedTables(Map<WinbooksDossierTable, String> tableSignatures) {
+        Map<WinbooksDossierTable, String> previousTableSignatures = cacheTableSignatures;
+        if (previousTableSignatures == null) {
+            return EnumSet.allOf(WinbooksDossierTable.class);
+        }
+        Set<WinbooksDossierTable> changedTables = EnumSet.noneOf(WinbooksDossierTable.class);
+        for (WinbooksDossierTable dossierTable : WinbooksDossierTable.values()) {
+            String signature = tableSignatures.get(dossierTable);
+            String previousSignature = previousTableSignatures.get(dossierTable);
+            if (!Objects.equals(signature, previousSignature)) {
+                changedTables.add(dossierTable);
+            }
+        }
+        return changedTables;
+    }
+
+    private static Supplier<Map<WinbooksDossierTable, String>> createTableSignaturesSupplier(WinbooksFileConfiguration fileConfiguration) {
+        WinbooksExtraService extraService = new WinbooksExtraService();
+        return () -> extraService.getDossierTableSignatures(fileConfiguration);
+    }
+
+    private void refreshSafely() {
+        try {
+            refreshIfChanged();
+        } catch (RuntimeException exception) {
+            // Keep serving the current cache, and try again next time
+            LOGGER.log(Level.WARNING, "Could not refresh accounting manager cache", exception);
+        }
+    }
+
+    /**
+     * Refreshes a refresher as long as it is reachable, then shuts its executor down.
+     */
+    private static class RefreshTask implements Runnable {
+        private final WeakReference<AccountingManagerCacheRefresher> cacheRefresherReference;
+        private final ScheduledExecutorService refreshExecutorService;
+
+        private RefreshTask(AccountingManagerCacheRefresher cacheRefresher, ScheduledExecutorService refreshExecutorService) {
+            this.cacheRefresherReference = new WeakReference<>(cacheRefresher);
+            this.refreshExecutorService = refreshExecutorService;
+        }
+
+        @Override
+        public void run() {
+            AccountingManagerCacheRefresher cacheRefresher = cacheRefresherReference.get();
+            if (cacheRefresher == null) {
+                refreshExecutorService.shutdown();
+                return;
+            }
+            cacheRefresher.refreshSafely();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Accounting manager caches shared between managers of the same dossiers, with a total retained size budget. Least
+ * recently used dossiers are evicted first.
+ * <p>
+ * Dossiers are identified by their base path. Configurations sharing a dossier are expected to read it with the same
+ * options. Retained sizes are estimated from the loaded sections. The size of a dossier is estimated again whenever it
+ * is accessed. As sections are loaded after their dossier is accessed, all sizes are estimated again before evicting,
+ * on a miss or when the budget is exceeded: a dossier growing while in use may exceed the budget until the next access.
+ */
+public class AccountingManagerCacheRegistry {
+
+    private final long maxSize;
+    private final Function<WinbooksFileConfiguration, AccountingManagerCacheRefresher> cacheRefresherFactory;
+
+    // Access-ordered: eldest entries are the least recently used ones
+    private final LinkedHashMap<Path, DossierCacheEntry> cacheEntriesByDossierPath = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxSize The maximum estimated total size retained by cached dossiers, in bytes.
+     */
+    public AccountingManagerCacheRegistry(long maxSize) {
+        this(maxSize, AccountingManagerCacheRefresher::new);
+    }
+
+    AccountingManagerCacheRegistry(long maxSize, Function<WinbooksFileConfiguration, AccountingManagerCacheRefresher> cacheRefresherFactory) {
+        this.maxSize = maxSize;
+        this.cacheRefresherFactory = cacheRefresherFactory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the estimated total size retained by cached dossiers, in bytes, from their currently loaded sections.
+     */
+    public synchronized long getSize() {
+        updateSizes();
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return cacheEntriesByDossierPath.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    /**
+     * Removes all cached dossiers, stopping their background refresh.
+     */
+    public synchronized void clear() {
+        List<Path> dossierPaths = List.copyOf(cacheEntriesByDossierPath.keySet());
+        dossierPaths.forEach(this::evict);
+    }
+
+    /**
+     * @return the cache refresher of this dossier, shared with all callers until the dossier is evicted. When absent,
+     * it is created for this configuration first, and refreshed in the background if a refresh interval is configured.
+     */
+    public AccountingManagerCacheRefresher getCacheRefresher(Path dossierBasePath, WinbooksFileConfiguration fileConfiguration) {
+        Optional<AccountingManagerCacheRefresher> cachedRefresherOptional = findCacheRefresher(dossierBasePath);
+        if (cachedRefresherOptional.isPresent()) {
+            return cachedRefresherOptional.get();
+        }
+        // Reads the dossier tables signatures, outside the lock
+        AccountingManagerCacheRefresher createdCacheRefresher = cacheRefresherFactory.apply(fileConfiguration);
+
+        AccountingManagerCacheRefresher cacheRefresher;
+        synchronized (this) {
+            DossierCacheEntry cacheEntry = cacheEntriesByDossierPath.get(dossierBasePath);
+            if (cacheEntry == null) {
+                missCount.incrementAndGet();
+                cacheEntry = new DossierCacheEntry(createdCacheRefresher);
+                cacheEntriesByDossierPath.put(dossierBasePath, cacheEntry);
+            } else {
+                // Created by another caller meanwhile
+                hitCount.incrementAndGet();
+            }
+            updateSizes();
+            evictLeastRecentlyUsed(dossierBasePath);
+            cacheRefresher = cacheEntry.getCacheRefresher();
+        }
+        if (cacheRefresher == createdCacheRefresher) {
+            fileConfiguration.getCacheRefreshIntervalOptional()
+                    .ifPresent(cacheRefresher::start);
+        }
+        return cacheRefresher;
+    }
+
+    private synchronized Optional<AccountingManagerCacheRefresher> findCacheRefresher(Path dossierBasePath) {
+        DossierCacheEntry cacheEntry = cacheEntriesByDossierPath.get(dossierBasePath);
+        if (cacheEntry == null) {
+            return Optional.empty();
+        }
+        hitCount.incrementAndGet();
+        updateSize(cacheEntry);
+        if (size > maxSize) {
+            updateSizes();
+            evictLeastRecentlyUsed(dossierBasePath);
+        }
+        return Optional.of(cacheEntry.getCacheRefresher());
+    }
+
+    private void updateSizes() {
+        // Iterating values does not change the access order
+        cacheEntriesByDossierPath.values()
+                .forEach(this::updateSize);
+    }
+
+    private void updateSize(DossierCacheEntry cacheEntry) {
+        long previousRetainedSize = cacheEntry.getRetainedSize();
+        long retainedSize = cacheEntry.getCacheRefresher().getCache().estimateRetainedSize();
+        cacheEntry.setRetainedSize(retainedSize);
+        size += retainedSize - previousRetainedSize;
+    }
+
+    private void evictLeastRecentlyUsed(Path retainedDossierPath) {
+        Iterator<Map.Entry<Path, DossierCacheEntry>> entryIterator = cacheEntriesByDossierPath.entrySet().iterator();
+        while (size > maxSize && entryIterator.hasNext()) {
+            Map.Entry<Path, DossierCacheEntry> entry = entryIterator.next();
+            Path dossierPath = entry.getKey();
+            if (dossierPath.equals(retainedDossierPath)) {
+                continue;
+            }
+            DossierCacheEntry cacheEntry = entry.getValue();
+            entryIterator.remove();
+            size -= cacheEntry.getRetainedSize();
+            cacheEntry.getCacheRefresher().stop();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void evict(Path dossierPath) {
+        DossierCacheEntry cacheEntry = cacheEntriesByDossierPath.remove(dossierPath);
+        if (cacheEntry != null) {
+            size -= cacheEntry.getRetainedSize();
+            cacheEntry.getCacheRefresher().stop();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AccountingManagerCacheRegistry{" +
+                "size=" + size +
+                ", maxSize=" + maxSize +
+                ", entries=" + cacheEntriesByDossierPath.size() +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+
+    private static class DossierCacheEntry {
+        private final AccountingManagerCacheRefresher cacheRefresher;
+        private long retainedSize;
+
+        private DossierCacheEntry(AccountingManagerCacheRefresher cacheRefresher) {
+            this.cacheRefresher = cacheRefresher;
+        }
+
+        private AccountingManagerCacheRefresher getCacheRefresher() {
+            return cacheRefresher;
+        }
+
+        private long getRetainedSize() {
+            return retainedSize;
+        }
+
+        private void setRetainedSize(long retainedSize) {
+            this.retainedSize = retainedSize;
+        }
+    }
+}
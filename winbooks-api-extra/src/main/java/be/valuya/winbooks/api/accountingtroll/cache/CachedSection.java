@@ -0,0 +1,46 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Lazily loaded section of the cache. Concurrent callers wait on a single load and share its result, while other
+ * sections may load in parallel. A failed load is attempted again by the next caller.
+ */
+class CachedSection<T> {
+
+    private final Supplier<T> loader;
+    private volatile T value;
+
+    CachedSection(Supplier<T> loader) {
+        this.loader = loader;
+    }
+
+    T get() {
+        T loadedValue = value;
+        if (loadedValue != null) {
+            return loadedValue;
+        }
+        synchronized (this) {
+            if (value == null) {
+                value = loader.get();
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Takes over the value of another section, if it is loaded, so that it is not loaded again. Only to be called
+     * before this section is shared.
+     */
+    void reuseLoaded(CachedSection<T> loadedSection) {
+        value = loadedSection.value;
+    }
+
+    /**
+     * @return the value, only if it is loaded already.
+     */
+    Optional<T> getLoadedOptional() {
+        return Optional.ofNullable(value);
+    }
+}
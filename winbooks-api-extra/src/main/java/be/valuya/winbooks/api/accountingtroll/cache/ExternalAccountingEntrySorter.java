@@ -0,0 +1,251 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.accountingtroll.domain.ATAccountingEntry;
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sorts accounting entries with a bounded number of them in memory. Sorted runs are written to a temporary directory,
+ * then merged lazily while the sorted stream is consumed. Run files are removed once read, and the temporary directory
+ * once all runs are merged, or when the stream is closed.
+ */
+class ExternalAccountingEntrySorter {
+    private static Logger LOGGER = Logger.getLogger(ExternalAccountingEntrySorter.class.getName());
+
+    private static final String RUN_FILE_EXTENSION = ".run";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final Path spillDirectoryPath;
+    private final int runSize;
+    private final AccountingEntryRowCodec rowCodec;
+
+    /**
+     * @param spillDirectoryPath A local directory, in which a temporary directory is created for each sort.
+     * @param runSize            The maximum number of entries held in memory while sorting.
+     */
+    ExternalAccountingEntrySorter(Path spillDirectoryPath, int runSize, AccountingEntryRowCodec rowCodec) {
+        this.spillDirectoryPath = spillDirectoryPath;
+        this.runSize = runSize;
+        this.rowCodec = rowCodec;
+    }
+
+    /**
+     * @return the entries, in their natural order. When they fit in a single run, they are sorted in memory.
+     */
+    Stream<ATAccountingEntry> sort(Stream<ATAccountingEntry> entryStream) {
+        long time0 = System.currentTimeMillis();
+
+        List<Path> runPaths = new ArrayList<>();
+        Path sortDirectoryPath = null;
+        List<ATAccountingEntry> runEntries = new ArrayList<>();
+        try (entryStream) {
+            Iterator<ATAccountingEntry> entryIterator = entryStream.iterator();
+            while (entryIterator.hasNext()) {
+                runEntries.add(entryIterator.next());
+                if (runEntries.size() < runSize) {
+                    continue;
+                }
+                if (sortDirectoryPath == null) {
+                    sortDirectoryPath = Files.createTempDirectory(spillDirectoryPath, "entries-");
+                }
+                Path runPath = writeRun(sortDirectoryPath, runPaths.size(), runEntries);
+                runPaths.add(runPath);
+                runEntries.clear();
+            }
+        } catch (IOException exception) {
+            deleteSortDirectory(sortDirectoryPath);
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        } catch (RuntimeException exception) {
+            deleteSortDirectory(sortDirectoryPath);
+            throw exception;
+        }
+        runEntries.sort(Comparator.naturalOrder());
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("SORT accounting entries (" + runPaths.size() + " runs on disk): " + deltaTime);
+
+        if (runPaths.isEmpty()) {
+            return runEntries.stream();
+        }
+        return mergeRuns(sortDirectoryPath, runPaths, runEntries);
+    }
+
+    private Path writeRun(Path sortDirectoryPath, int runIndex, List<ATAccountingEntry> runEntries) throws IOException {
+        runEntries.sort(Comparator.naturalOrder());
+        Path runPath = sortDirectoryPath.resolve(runIndex + RUN_FILE_EXTENSION);
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runPath), STREAM_BUFFER_SIZE))) {
+            for (ATAccountingEntry accountingEntry : runEntries) {
+                rowCodec.writeRow(dataOutputStream, accountingEntry);
+            }
+        }
+        return runPath;
+    }
+
+    private Stream<ATAccountingEntry> mergeRuns(Path sortDirectoryPath, List<Path> runPaths, List<ATAccountingEntry> lastRunEntries) {
+        List<Iterator<ATAccountingEntry>> runIterators = new ArrayList<>();
+        List<RunFileIterator> runFileIterators = new ArrayList<>();
+        try {
+            for (Path runPath : runPaths) {
+                RunFileIterator runFileIterator = new RunFileIterator(runPath);
+                runFileIterators.add(runFileIterator);
+                runIterators.add(runFileIterator);
+            }
+            runIterators.add(lastRunEntries.iterator());
+
+            SortedRunsIterator<ATAccountingEntry> sortedRunsIterator = new SortedRunsIterator<>(runIterators, Comparator.naturalOrder());
+            MergedRunsIterator entryIterator = new MergedRunsIterator(sortedRunsIterator, sortDirectoryPath, runFileIterators);
+            Spliterator<ATAccountingEntry> entrySpliterator = Spliterators.spliteratorUnknownSize(entryIterator,
+                    Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(entrySpliterator, false)
+                    .onClose(entryIterator::close);
+        } catch (RuntimeException exception) {
+            closeRuns(sortDirectoryPath, runFileIterators);
+            throw exception;
+        }
+    }
+
+    private void closeRuns(Path sortDirectoryPath, List<RunFileIterator> runFileIterators) {
+        runFileIterators.forEach(RunFileIterator::close);
+        deleteSortDirectory(sortDirectoryPath);
+    }
+
+    private void deleteSortDirectory(Path sortDirectoryPath) {
+        if (sortDirectoryPath == null) {
+            return;
+        }
+        try (Stream<Path> runPathStream = Files.list(sortDirectoryPath)) {
+            runPathStream.forEach(this::deleteRunFile);
+            Files.deleteIfExists(sortDirectoryPath);
+        } catch (IOException exception) {
+            LOGGER.log(Level.FINE, "Could not delete sort directory " + sortDirectoryPath, exception);
+        }
+    }
+
+    private void deleteRunFile(Path runPath) {
+        try {
+            Files.deleteIfExists(runPath);
+        } catch (IOException exception) {
+            LOGGER.log(Level.FINE, "Could not delete sort run " + runPath, exception);
+        }
+    }
+
+    /**
+     * Merges the runs, deleting the sort directory once all are merged.
+     */
+    private class MergedRunsIterator implements Iterator<ATAccountingEntry> {
+        private final SortedRunsIterator<ATAccountingEntry> sortedRunsIterator;
+        private final Path sortDirectoryPath;
+        private final List<RunFileIterator> runFileIterators;
+        private boolean closed;
+
+        private MergedRunsIterator(SortedRunsIterator<ATAccountingEntry> sortedRunsIterator, Path sortDirectoryPath,
+                                   List<RunFileIterator> runFileIterators) {
+            this.sortedRunsIterator = sortedRunsIterator;
+            this.sortDirectoryPath = sortDirectoryPath;
+            this.runFileIterators = runFileIterators;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = sortedRunsIterator.hasNext();
+            if (!hasNext) {
+                close();
+            }
+            return hasNext;
+        }
+
+        @Override
+        public ATAccountingEntry next() {
+            return sortedRunsIterator.next();
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeRuns(sortDirectoryPath, runFileIterators);
+        }
+    }
+
+    /**
+     * Reads the rows of a run file, deleting it once read.
+     */
+    private class RunFileIterator implements Iterator<ATAccountingEntry> {
+        private final Path runPath;
+        private final DataInputStream dataInputStream;
+        private ATAccountingEntry nextEntry;
+        private boolean closed;
+
+        private RunFileIterator(Path runPath) {
+            this.runPath = runPath;
+            try {
+                this.dataInputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(runPath), STREAM_BUFFER_SIZE));
+            } catch (IOException exception) {
+                throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+            }
+            readNextEntry();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry != null;
+        }
+
+        @Override
+        public ATAccountingEntry next() {
+            if (nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+            ATAccountingEntry entry = nextEntry;
+            readNextEntry();
+            return entry;
+        }
+
+        private void readNextEntry() {
+            try {
+                nextEntry = rowCodec.readRow(dataInputStream);
+            } catch (EOFException exception) {
+                nextEntry = null;
+                close();
+            } catch (IOException exception) {
+                close();
+                throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                dataInputStream.close();
+            } catch (IOException exception) {
+                LOGGER.log(Level.FINE, "Could not close sort run " + runPath, exception);
+            }
+            deleteRunFile(runPath);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Lazily merges sorted runs into a single sorted sequence. A run is only merged once its first element is reached:
+ * runs that do not overlap are read one after the other, with a single run being merged at a time.
+ * <p>
+ * The merge is stable: equal elements are returned in the order of their runs.
+ */
+class SortedRunsIterator<T> implements Iterator<T> {
+
+    private final Comparator<RunCursor<T>> runCursorComparator;
+    // Cursors of the runs being merged, by their next element
+    private final PriorityQueue<RunCursor<T>> runCursorQueue;
+    // Runs not reached yet, by their first element
+    private final Deque<RunCursor<T>> pendingRunCursors;
+
+    /**
+     * @param runIterators Iterators over sorted runs. The first element of each run is read at once.
+     */
+    SortedRunsIterator(List<? extends Iterator<T>> runIterators, Comparator<? super T> comparator) {
+        // Ties are broken by run index, for a deterministic order
+        Comparator<RunCursor<T>> nextElementComparator = (cursor1, cursor2) -> comparator.compare(cursor1.getNextElement(), cursor2.getNextElement());
+        this.runCursorComparator = nextElementComparator.thenComparingInt(RunCursor::getRunIndex);
+        this.runCursorQueue = new PriorityQueue<>(Math.max(1, runIterators.size()), runCursorComparator);
+        this.pendingRunCursors = IntStream.range(0, runIterators.size())
+                .filter(runIndex -> runIterators.get(runIndex).hasNext())
+                .mapToObj(runIndex -> new RunCursor<T>(runIndex, runIterators.get(runIndex)))
+                .sorted(runCursorComparator)
+                .collect(Collectors.toCollection(ArrayDeque::new));
+    }
+
+    static <T> SortedRunsIterator<T> mergeLists(List<List<T>> runs, Comparator<? super T> comparator) {
+        List<Iterator<T>> runIterators = runs.stream()
+                .map(List::iterator)
+                .collect(Collectors.toList());
+        return new SortedRunsIterator<>(runIterators, comparator);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !runCursorQueue.isEmpty() || !pendingRunCursors.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        mergeReachedRuns();
+        RunCursor<T> runCursor = runCursorQueue.poll();
+        T element = runCursor.getNextElement();
+        if (runCursor.advance()) {
+            runCursorQueue.add(runCursor);
+        }
+        return element;
+    }
+
+    private void mergeReachedRuns() {
+        while (!pendingRunCursors.isEmpty() && isReached(pendingRunCursors.peekFirst())) {
+            RunCursor<T> runCursor = pendingRunCursors.pollFirst();
+            runCursorQueue.add(runCursor);
+        }
+    }
+
+    private boolean isReached(RunCursor<T> pendingRunCursor) {
+        RunCursor<T> nextRunCursor = runCursorQueue.peek();
+        if (nextRunCursor == null) {
+            return true;
+        }
+        return runCursorComparator.compare(pendingRunCursor, nextRunCursor) < 0;
+    }
+
+    private static class RunCursor<T> {
+        private final int runIndex;
+        private final Iterator<T> runIterator;
+        private T nextElement;
+
+        private RunCursor(int runIndex, Iterator<T> runIterator) {
+            this.runIndex = runIndex;
+            this.runIterator = runIterator;
+            this.nextElement = runIterator.next();
+        }
+
+        private int getRunIndex() {
+            return runIndex;
+        }
+
+        private T getNextElement() {
+            return nextElement;
+        }
+
+        private boolean advance() {
+            if (!runIterator.hasNext()) {
+                nextElement = null;
+                return false;
+            }
+            nextElement = runIterator.next();
+            return true;
+        }
+    }
+}
@@ -97,6 +97,34 @@ public class ATAccountingEntryConverter {
         return accountingEntry;
     }
 
+    /**
+     * Shallow copy, sharing the referenced account, third party, document and so on.
+     */
+    public ATAccountingEntry copyAccountingEntry(ATAccountingEntry accountingEntry) {
+        ATAccountingEntry entryCopy = new ATAccountingEntry();
+        entryCopy.setBookPeriod(accountingEntry.getBookPeriod());
+        entryCopy.setDate(accountingEntry.getDate());
+        entryCopy.setAmount(accountingEntry.getAmount());
+        entryCopy.setDbkCode(accountingEntry.getDbkCode());
+        entryCopy.setAccount(accountingEntry.getAccount());
+        entryCopy.setMatched(accountingEntry.isMatched());
+        entryCopy.setDocNumber(accountingEntry.getDocNumber());
+        entryCopy.setOrderingNumber(accountingEntry.getOrderingNumber());
+        entryCopy.setAccountingEntryType(accountingEntry.getAccountingEntryType());
+
+        accountingEntry.getDocNumberTypeOptional().ifPresent(entryCopy::setDocNumberType);
+        accountingEntry.getAccountingEntryDocumentTypeOptional().ifPresent(entryCopy::setAccountingEntryDocumentType);
+        accountingEntry.getTaxOptional().ifPresent(entryCopy::setTax);
+        accountingEntry.getThirdPartyOptional().ifPresent(entryCopy::setThirdParty);
+        accountingEntry.getDocumentDateOptional().ifPresent(entryCopy::setDocumentDate);
+        accountingEntry.getDueDateOptional().ifPresent(entryCopy::setDueDate);
+        accountingEntry.getCommentOptional().ifPresent(entryCopy::setComment);
+        accountingEntry.getDocumentOptional().ifPresent(entryCopy::setDocument);
+        accountingEntry.getMatchedEntryOptional().ifPresent(entryCopy::setMatchedEntry);
+
+        return entryCopy;
+    }
+
     private AccountingEntryType getEntryType(WbDbkType wbDbkType) {
         switch (wbDbkType) {
             case PURCHASE:
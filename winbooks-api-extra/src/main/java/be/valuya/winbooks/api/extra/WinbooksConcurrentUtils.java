@@ -0,0 +1,41 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class WinbooksConcurrentUtils {
+
+    /**
+     * @return a fixed pool of daemon threads. Callers must shut it down.
+     */
+    static ExecutorService createExecutorService(int threadCount, String threadName) {
+        return Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for the task result, rethrowing winbooks exceptions as-is.
+     */
+    static <T> T getTaskResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new WinbooksException(WinbooksError.UNKNOWN_ERROR, exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof WinbooksException) {
+                throw (WinbooksException) cause;
+            }
+            throw new WinbooksException(WinbooksError.UNKNOWN_ERROR, cause);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local disk cache for document contents, with a total size budget. Least recently used contents are evicted first.
+ * <p>
+ * Keys are expected to change whenever the content changes; the cache never checks whether cached contents are
+ * outdated. Contents present in the cache directory are indexed again when the cache is created.
+ */
+public class WinbooksDocumentContentCache {
+    private static Logger LOGGER = Logger.getLogger(WinbooksDocumentContentCache.class.getName());
+
+    private static final String CONTENT_FILE_EXTENSION = ".pdf";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private final Path cacheDirectoryPath;
+    private final long maxSize;
+
+    // Access-ordered: eldest entries are the least recently used ones
+    private final LinkedHashMap<String, Long> contentSizesByFileName = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    // Contents being written, by file name
+    private final Map<String, CompletableFuture<Void>> pendingWritesByFileName = new HashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param cacheDirectoryPath A local directory, dedicated to this cache.
+     * @param maxSize            The maximum total size of cached contents, in bytes.
+     */
+    public WinbooksDocumentContentCache(Path cacheDirectoryPath, long maxSize) {
+        this.cacheDirectoryPath = cacheDirectoryPath;
+        this.maxSize = maxSize;
+
+        try {
+            Files.createDirectories(cacheDirectoryPath);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+        loadIndex();
+    }
+
+    public Path getCacheDirectoryPath() {
+        return cacheDirectoryPath;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return contentSizesByFileName.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    /**
+     * Removes all cached contents.
+     */
+    public synchronized void clear() {
+        List<String> fileNames = List.copyOf(contentSizesByFileName.keySet());
+        fileNames.forEach(this::evict);
+    }
+
+    /**
+     * Opens the cached content for this key. When absent, the content is written by the provided writer and cached
+     * first. Concurrent callers for the same key wait on a single write.
+     * <p>
+     * The content is opened before it may be evicted, so that it can be read until the returned channel is closed.
+     *
+     * @return an open channel on the content, to be closed by the caller.
+     */
+    SeekableByteChannel openContent(String key, Consumer<OutputStream> contentWriter) {
+        String fileName = getContentFileName(key);
+        Path contentPath = cacheDirectoryPath.resolve(fileName);
+        while (true) {
+            CompletableFuture<Void> pendingWrite;
+            CompletableFuture<Void> ownWrite = new CompletableFuture<>();
+            synchronized (this) {
+                if (isCached(fileName, contentPath)) {
+                    hitCount.incrementAndGet();
+                    return openContentChannel(contentPath);
+                }
+                pendingWrite = pendingWritesByFileName.putIfAbsent(fileName, ownWrite);
+            }
+            if (pendingWrite == null) {
+                return writeAndOpenContent(fileName, contentPath, contentWriter, ownWrite);
+            }
+            awaitWrite(pendingWrite);
+        }
+    }
+
+    /**
+     * @return the path at which the content for this key is cached, whether it is cached or not.
+     */
+    Path resolveContentPath(String key) {
+        String fileName = getContentFileName(key);
+        return cacheDirectoryPath.resolve(fileName);
+    }
+
+    private SeekableByteChannel writeAndOpenContent(String fileName, Path contentPath, Consumer<OutputStream> contentWriter, CompletableFuture<Void> ownWrite) {
+        try {
+            missCount.incrementAndGet();
+            long contentSize = writeContent(contentPath, contentWriter);
+            synchronized (this) {
+                Long previousSize = contentSizesByFileName.put(fileName, contentSize);
+                size += contentSize - Optional.ofNullable(previousSize).orElse(0L);
+                evictLeastRecentlyUsed(fileName);
+                SeekableByteChannel contentChannel = openContentChannel(contentPath);
+                pendingWritesByFileName.remove(fileName);
+                ownWrite.complete(null);
+                return contentChannel;
+            }
+        } catch (RuntimeException exception) {
+            synchronized (this) {
+                pendingWritesByFileName.remove(fileName);
+            }
+            ownWrite.completeExceptionally(exception);
+            throw exception;
+        }
+    }
+
+    private void awaitWrite(CompletableFuture<Void> pendingWrite) {
+        try {
+            pendingWrite.join();
+        } catch (CompletionException | CancellationException exception) {
+            // Failed for another caller: write it ourselves, or get the same failure
+            LOGGER.log(Level.FINE, "Could not cache content written by another caller", exception);
+        }
+    }
+
+    private SeekableByteChannel openContentChannel(Path contentPath) {
+        try {
+            return Files.newByteChannel(contentPath);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    private synchronized boolean isCached(String fileName, Path contentPath) {
+        if (!contentSizesByFileName.containsKey(fileName)) {
+            return false;
+        }
+        if (Files.exists(contentPath)) {
+            // Refreshes the access order, and keeps it across restarts
+            contentSizesByFileName.get(fileName);
+            touchContent(contentPath);
+            return true;
+        }
+        // Removed behind our back
+        Long contentSize = contentSizesByFileName.remove(fileName);
+        size -= contentSize;
+        return false;
+    }
+
+    private long writeContent(Path contentPath, Consumer<OutputStream> contentWriter) {
+        try {
+            Path temporaryPath = Files.createTempFile(cacheDirectoryPath, "content-", TEMPORARY_FILE_EXTENSION);
+            try {
+                try (OutputStream outputStream = Files.newOutputStream(temporaryPath)) {
+                    contentWriter.accept(outputStream);
+                }
+                long contentSize = Files.size(temporaryPath);
+                WinbooksPathUtils.moveReplacing(temporaryPath, contentPath);
+                return contentSize;
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    private void touchContent(Path contentPath) {
+        try {
+            FileTime now = FileTime.from(Instant.now());
+            Files.setLastModifiedTime(contentPath, now);
+        } catch (IOException exception) {
+            LOGGER.log(Level.FINE, "Could not touch cached content " + contentPath, exception);
+        }
+    }
+
+    private void evictLeastRecentlyUsed(String retainedFileName) {
+        Iterator<Map.Entry<String, Long>> entryIterator = contentSizesByFileName.entrySet().iterator();
+        while (size > maxSize && entryIterator.hasNext()) {
+            Map.Entry<String, Long> entry = entryIterator.next();
+            String fileName = entry.getKey();
+            if (fileName.equals(retainedFileName)) {
+                continue;
+            }
+            long contentSize = entry.getValue();
+            entryIterator.remove();
+            size -= contentSize;
+            deleteContent(fileName);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void evict(String fileName) {
+        Long contentSize = contentSizesByFileName.remove(fileName);
+        if (contentSize != null) {
+            size -= contentSize;
+            deleteContent(fileName);
+        }
+    }
+
+    private void deleteContent(String fileName) {
+        Path contentPath = cacheDirectoryPath.resolve(fileName);
+        try {
+            Files.deleteIfExists(contentPath);
+        } catch (IOException exception) {
+            // Content may still be read from
+            LOGGER.log(Level.FINE, "Could not delete cached content " + contentPath, exception);
+        }
+    }
+
+    private synchronized void loadIndex() {
+        try (Stream<Path> pathStream = Files.list(cacheDirectoryPath)) {
+            List<Path> contentPaths = pathStream
+                    .filter(path -> path.getFileName().toString().endsWith(CONTENT_FILE_EXTENSION))
+                    .sorted(Comparator.comparing(this::getLastModifiedTimeMillis))
+                    .collect(Collectors.toList());
+            for (Path contentPath : contentPaths) {
+                String fileName = contentPath.getFileName().toString();
+                long contentSize = Files.size(contentPath);
+                contentSizesByFileName.put(fileName, contentSize);
+                size += contentSize;
+            }
+            evictLeastRecentlyUsed(null);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    private long getLastModifiedTimeMillis(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException exception) {
+            return 0;
+        }
+    }
+
+    private String getContentFileName(String key) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] digest = messageDigest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder fileNameBuilder = new StringBuilder();
+            for (byte digestByte : digest) {
+                fileNameBuilder.append(String.format("%02x", digestByte));
+            }
+            fileNameBuilder.append(CONTENT_FILE_EXTENSION);
+            return fileNameBuilder.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            throw new WinbooksException(WinbooksError.FATAL_ERRORS, exception);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WinbooksDocumentContentCache{" +
+                "cacheDirectoryPath=" + cacheDirectoryPath +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                ", entries=" + contentSizesByFileName.size() +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+package be.valuya.winbooks.api.extra;
+
+import java.util.Optional;
+
+/**
+ * Document part file name, parsed in a single pass from right to left.
+ * <p>
+ * Two formats are known:
+ * <ul>
+ * <li>'LEDGER_PERIODINDEX_DOCNUMBER_PAGETWODIGITS.pdf' (ACHATS_01_200084_00.pdf), legacy?</li>
+ * <li>'LEDGER_PERIODINDEX_DOCNUMBER___PAGEFIVEDIGITS_FLAG.pdf' (ACHATS_01_200083___00000_B.pdf), flag may be A or B
+ * at least</li>
+ * </ul>
+ * Ledger codes are made of ascii letters, digits and underscores; other tokens are ascii digits.
+ */
+class WinbooksDocumentFileName {
+
+    private static final String EXTENSION = ".pdf";
+    private static final int LEGACY_PART_DIGITS = 2;
+    private static final int PART_DIGITS = 5;
+
+    private final String dbkCode;
+    private final String periodName;
+    private final String documentNumber;
+    private final int partNumber;
+    private final String fileNameTemplate;
+
+    private WinbooksDocumentFileName(String dbkCode, String periodName, String documentNumber, int partNumber, String fileNameTemplate) {
+        this.dbkCode = dbkCode;
+        this.periodName = periodName;
+        this.documentNumber = documentNumber;
+        this.partNumber = partNumber;
+        this.fileNameTemplate = fileNameTemplate;
+    }
+
+    static Optional<WinbooksDocumentFileName> parse(String fileName) {
+        int extensionIndex = fileName.length() - EXTENSION.length();
+        if (extensionIndex <= 0 || !fileName.startsWith(EXTENSION, extensionIndex)) {
+            return Optional.empty();
+        }
+
+        // Part number and flag, if any
+        int partEnd;
+        String flag;
+        int partDigits;
+        char lastChar = fileName.charAt(extensionIndex - 1);
+        if (isUpperCaseLetter(lastChar)) {
+            flag = String.valueOf(lastChar);
+            partEnd = extensionIndex - 2;
+            partDigits = PART_DIGITS;
+            if (partEnd < 0 || fileName.charAt(partEnd) != '_') {
+                return Optional.empty();
+            }
+        } else {
+            flag = null;
+            partEnd = extensionIndex;
+            partDigits = LEGACY_PART_DIGITS;
+        }
+        int partStart = partEnd - partDigits;
+        if (partStart < 0 || getDigitsStart(fileName, partEnd) > partStart) {
+            return Optional.empty();
+        }
+        int partNumber = parseDigits(fileName, partStart, partEnd);
+
+        // Separator: 3 underscores with a flag, 1 otherwise
+        int separatorLength = flag == null ? 1 : 3;
+        int documentNumberEnd = partStart - separatorLength;
+        if (documentNumberEnd < 0 || !isUnderscores(fileName, documentNumberEnd, partStart)) {
+            return Optional.empty();
+        }
+
+        int documentNumberStart = getDigitsStart(fileName, documentNumberEnd);
+        int periodEnd = documentNumberStart - 1;
+        if (documentNumberStart == documentNumberEnd || periodEnd < 0 || fileName.charAt(periodEnd) != '_') {
+            return Optional.empty();
+        }
+
+        int periodStart = getDigitsStart(fileName, periodEnd);
+        int dbkCodeEnd = periodStart - 1;
+        if (periodStart == periodEnd || dbkCodeEnd <= 0 || fileName.charAt(dbkCodeEnd) != '_') {
+            return Optional.empty();
+        }
+        for (int charIndex = 0; charIndex < dbkCodeEnd; charIndex++) {
+            if (!isWordChar(fileName.charAt(charIndex))) {
+                return Optional.empty();
+            }
+        }
+
+        String dbkCode = fileName.substring(0, dbkCodeEnd);
+        String periodName = fileName.substring(periodStart, periodEnd);
+        String documentNumber = fileName.substring(documentNumberStart, documentNumberEnd);
+        String fileNameTemplate;
+        if (flag == null) {
+            fileNameTemplate = dbkCode + "_" + periodName + "_" + documentNumber + "_{0,number,00}" + EXTENSION;
+        } else {
+            fileNameTemplate = dbkCode + "_" + periodName + "_" + documentNumber + "___{0,number,00000}_" + flag + EXTENSION;
+        }
+        WinbooksDocumentFileName documentFileName = new WinbooksDocumentFileName(dbkCode, periodName, documentNumber, partNumber, fileNameTemplate);
+        return Optional.of(documentFileName);
+    }
+
+    /**
+     * @return the period index, if the period name is formatted as a two digits period index would be.
+     */
+    Optional<Integer> getPeriodIndexOptional() {
+        int periodNameLength = periodName.length();
+        if (periodNameLength > 9) {
+            return Optional.empty();
+        }
+        int periodIndex = parseDigits(periodName, 0, periodNameLength);
+        int expectedLength = Math.max(2, getDigitCount(periodIndex));
+        if (periodNameLength != expectedLength) {
+            return Optional.empty();
+        }
+        return Optional.of(periodIndex);
+    }
+
+    String getDbkCode() {
+        return dbkCode;
+    }
+
+    String getPeriodName() {
+        return periodName;
+    }
+
+    String getDocumentNumber() {
+        return documentNumber;
+    }
+
+    int getPartNumber() {
+        return partNumber;
+    }
+
+    String getFileNameTemplate() {
+        return fileNameTemplate;
+    }
+
+    private static int getDigitsStart(String fileName, int end) {
+        int start = end;
+        while (start > 0 && isDigit(fileName.charAt(start - 1))) {
+            start--;
+        }
+        return start;
+    }
+
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int charIndex = start; charIndex < end; charIndex++) {
+            value = value * 10 + (text.charAt(charIndex) - '0');
+        }
+        return value;
+    }
+
+    private static int getDigitCount(int value) {
+        int digitCount = 1;
+        while (value >= 10) {
+            value /= 10;
+            digitCount++;
+        }
+        return digitCount;
+    }
+
+    private static boolean isUnderscores(String fileName, int start, int end) {
+        for (int charIndex = start; charIndex < end; charIndex++) {
+            if (fileName.charAt(charIndex) != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpperCaseLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isWordChar(char c) {
+        return isDigit(c) || isUpperCaseLetter(c) || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    @Override
+    public String toString() {
+        return "WinbooksDocumentFileName{" +
+                "dbkCode='" + dbkCode + '\'' +
+                ", periodName='" + periodName + '\'' +
+                ", documentNumber='" + documentNumber + '\'' +
+                ", partNumber=" + partNumber +
+                '}';
+    }
+}
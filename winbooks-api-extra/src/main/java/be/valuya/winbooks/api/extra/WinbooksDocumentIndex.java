@@ -0,0 +1,316 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.jbooks.model.WbDocument;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local index of the documents found in the dbk folders of a dossier, persisted between runs.
+ * <p>
+ * Each folder is recorded along with its last modification time. Documents of a folder are listed again only once
+ * this time changes, which happens when files are added, removed or renamed. Parts overwritten in place keep their
+ * previously indexed times.
+ */
+public class WinbooksDocumentIndex {
+    private static Logger LOGGER = Logger.getLogger(WinbooksDocumentIndex.class.getName());
+
+    private static final String HEADER = "winbooks-document-index\t1";
+    private static final String FOLDER_RECORD = "F";
+    private static final String DOCUMENT_RECORD = "D";
+    private static final String SEPARATOR = "\t";
+    private static final String NO_VALUE = "-";
+
+    private final Path indexFilePath;
+
+    private final Map<String, IndexedFolder> foldersByKey = new HashMap<>();
+    private boolean modified;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param indexFilePath A local file, dedicated to a single dossier. It is created on first save.
+     */
+    public WinbooksDocumentIndex(Path indexFilePath) {
+        this.indexFilePath = indexFilePath;
+        load();
+    }
+
+    public Path getIndexFilePath() {
+        return indexFilePath;
+    }
+
+    public synchronized int getFolderCount() {
+        return foldersByKey.size();
+    }
+
+    /**
+     * @return the number of folders whose documents were read from the index.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of folders that had to be listed.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    public synchronized void clear() {
+        foldersByKey.clear();
+        modified = true;
+    }
+
+    /**
+     * Writes the index file, if anything changed since it was loaded or last saved.
+     */
+    public synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        long time0 = System.currentTimeMillis();
+        try {
+            Path parentPath = indexFilePath.toAbsolutePath().getParent();
+            Files.createDirectories(parentPath);
+            Path temporaryPath = Files.createTempFile(parentPath, "document-index-", ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+                    writeIndex(writer);
+                }
+                WinbooksPathUtils.moveReplacing(temporaryPath, indexFilePath);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+        modified = false;
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("SAVE document index (" + foldersByKey.size() + " folders): " + deltaTime);
+    }
+
+    /**
+     * @param periodsByIndex Book year periods, by index.
+     * @return the indexed documents of this folder, unless the folder changed or periods can not be resolved anymore.
+     */
+    Optional<List<WbDocument>> findFolderDocuments(String folderKey, FileTime folderLastModifiedTime, WbPeriod[] periodsByIndex, boolean resolveTimes) {
+        IndexedFolder indexedFolder;
+        synchronized (this) {
+            indexedFolder = foldersByKey.get(folderKey);
+        }
+        if (indexedFolder == null || indexedFolder.lastModifiedMillis != folderLastModifiedTime.toMillis()) {
+            missCount.incrementAndGet();
+            return Optional.empty();
+        }
+
+        List<WbDocument> documents = new ArrayList<>();
+        for (IndexedDocument indexedDocument : indexedFolder.documents) {
+            int periodIndex = indexedDocument.periodIndex;
+            if (periodIndex < 0 || periodIndex >= periodsByIndex.length || periodsByIndex[periodIndex] == null) {
+                missCount.incrementAndGet();
+                return Optional.empty();
+            }
+            WbDocument document = indexedDocument.toWbDocument(periodsByIndex[periodIndex], resolveTimes);
+            documents.add(document);
+        }
+        hitCount.incrementAndGet();
+        return Optional.of(documents);
+    }
+
+    void putFolderDocuments(String folderKey, FileTime folderLastModifiedTime, List<WbDocument> documents) {
+        List<IndexedDocument> indexedDocuments = new ArrayList<>();
+        for (WbDocument document : documents) {
+            IndexedDocument indexedDocument = IndexedDocument.of(document);
+            indexedDocuments.add(indexedDocument);
+        }
+        IndexedFolder indexedFolder = new IndexedFolder(folderLastModifiedTime.toMillis(), indexedDocuments);
+        synchronized (this) {
+            foldersByKey.put(folderKey, indexedFolder);
+            modified = true;
+        }
+    }
+
+    /**
+     * Removes the folders whose key starts with this prefix, unless retained. Folders that disappeared are
+     * otherwise kept in the index forever.
+     *
+     * @param folderKeyPrefix    The key prefix of all the folders found in a listed parent folder.
+     * @param retainedFolderKeys The keys of the folders that were listed.
+     */
+    synchronized void retainFolders(String folderKeyPrefix, Set<String> retainedFolderKeys) {
+        boolean removed = foldersByKey.keySet()
+                .removeIf(folderKey -> folderKey.startsWith(folderKeyPrefix) && !retainedFolderKeys.contains(folderKey));
+        if (removed) {
+            modified = true;
+        }
+    }
+
+    private void writeIndex(BufferedWriter writer) throws IOException {
+        writer.write(HEADER);
+        writer.newLine();
+        for (Map.Entry<String, IndexedFolder> folderEntry : foldersByKey.entrySet()) {
+            String folderKey = folderEntry.getKey();
+            IndexedFolder indexedFolder = folderEntry.getValue();
+            writer.write(String.join(SEPARATOR, FOLDER_RECORD, Long.toString(indexedFolder.lastModifiedMillis), folderKey));
+            writer.newLine();
+            for (IndexedDocument indexedDocument : indexedFolder.documents) {
+                writer.write(indexedDocument.toRecord());
+                writer.newLine();
+            }
+        }
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(indexFilePath)) {
+            return;
+        }
+        long time0 = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(indexFilePath, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (!HEADER.equals(header)) {
+                LOGGER.fine("Ignoring document index with unknown format " + indexFilePath);
+                return;
+            }
+            List<IndexedDocument> folderDocuments = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(SEPARATOR, -1);
+                String recordType = values[0];
+                if (recordType.equals(FOLDER_RECORD) && values.length == 3) {
+                    long lastModifiedMillis = Long.parseLong(values[1]);
+                    String folderKey = values[2];
+                    folderDocuments = new ArrayList<>();
+                    foldersByKey.put(folderKey, new IndexedFolder(lastModifiedMillis, folderDocuments));
+                } else if (recordType.equals(DOCUMENT_RECORD) && folderDocuments != null) {
+                    IndexedDocument indexedDocument = IndexedDocument.fromRecord(values);
+                    folderDocuments.add(indexedDocument);
+                } else {
+                    throw new IllegalArgumentException("Invalid record: " + line);
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            // The index only saves time: start over
+            LOGGER.log(Level.FINE, "Could not load document index " + indexFilePath, exception);
+            foldersByKey.clear();
+            return;
+        }
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("LOAD document index (" + foldersByKey.size() + " folders): " + deltaTime);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "WinbooksDocumentIndex{" +
+                "indexFilePath=" + indexFilePath +
+                ", folders=" + foldersByKey.size() +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                '}';
+    }
+
+    private static class IndexedFolder {
+        private final long lastModifiedMillis;
+        private final List<IndexedDocument> documents;
+
+        private IndexedFolder(long lastModifiedMillis, List<IndexedDocument> documents) {
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.documents = documents;
+        }
+    }
+
+    private static class IndexedDocument {
+        private final String dbkCode;
+        private final String documentNumber;
+        private final int periodIndex;
+        private final int partCount;
+        private final String fileNameTemplate;
+        private final LocalDateTime creationTime;
+        private final LocalDateTime updatedTime;
+
+        private IndexedDocument(String dbkCode, String documentNumber, int periodIndex, int partCount, String fileNameTemplate,
+                                LocalDateTime creationTime, LocalDateTime updatedTime) {
+            this.dbkCode = dbkCode;
+            this.documentNumber = documentNumber;
+            this.periodIndex = periodIndex;
+            this.partCount = partCount;
+            this.fileNameTemplate = fileNameTemplate;
+            this.creationTime = creationTime;
+            this.updatedTime = updatedTime;
+        }
+
+        private static IndexedDocument of(WbDocument document) {
+            return new IndexedDocument(document.getDbkCode(), document.getDocumentNumber(), document.getWbPeriod().getIndex(),
+                    document.getPartCount(), document.getFileNameTemplate(), document.getCreationTime(), document.getUpdatedTime());
+        }
+
+        private static IndexedDocument fromRecord(String[] values) {
+            if (values.length != 8) {
+                throw new IllegalArgumentException("Invalid document record");
+            }
+            return new IndexedDocument(values[1], values[2], Integer.parseInt(values[3]), Integer.parseInt(values[4]), values[5],
+                    parseTime(values[6]), parseTime(values[7]));
+        }
+
+        private String toRecord() {
+            return String.join(SEPARATOR, DOCUMENT_RECORD, dbkCode, documentNumber, Integer.toString(periodIndex),
+                    Integer.toString(partCount), fileNameTemplate, formatTime(creationTime), formatTime(updatedTime));
+        }
+
+        private WbDocument toWbDocument(WbPeriod wbPeriod, boolean resolveTimes) {
+            WbDocument document = new WbDocument();
+            document.setDbkCode(dbkCode);
+            document.setDocumentNumber(documentNumber);
+            document.setWbPeriod(wbPeriod);
+            document.setPartCount(partCount);
+            document.setFileNameTemplate(fileNameTemplate);
+            if (resolveTimes) {
+                document.setCreationTime(creationTime);
+                document.setUpdatedTime(updatedTime);
+            }
+            return document;
+        }
+
+        private static String formatTime(LocalDateTime time) {
+            return Optional.ofNullable(time)
+                    .map(LocalDateTime::toString)
+                    .orElse(NO_VALUE);
+        }
+
+        private static LocalDateTime parseTime(String value) {
+            if (value.equals(NO_VALUE)) {
+                return null;
+            }
+            return LocalDateTime.parse(value);
+        }
+    }
+}
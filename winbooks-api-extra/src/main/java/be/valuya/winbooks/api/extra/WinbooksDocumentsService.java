@@ -6,70 +6,448 @@ import be.valuya.jbooks.model.WbPeriod;
 import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
 import be.valuya.winbooks.domain.error.WinbooksError;
 import be.valuya.winbooks.domain.error.WinbooksException;
+import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
-import com.lowagie.text.pdf.PdfCopyFields;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfImportedPage;
 import com.lowagie.text.pdf.PdfReader;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 class WinbooksDocumentsService {
     private static Logger LOGGER = Logger.getLogger(WinbooksDocumentsService.class.getName());
 
-    // Documents path: /<book year>/<dbk>/<file_name>
-    // First (legacy?) file pattern: 'LEDGER_PERIODINDEX_DOCNUMBER_PAGETWODIGITS.pdf' (ACHATS_01_200084_00.pdf)
-    private static final Pattern BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_1 = Pattern.compile("^(\\w+)_(\\d+)_(\\d+)_(\\d{2}).pdf$");
-    // New file pattern: 'LEDGER_PERIODINDEX_DOCNUMBER___PAGEFOURDIGITS_FLAG.pdf' (ACHATS_01_200083___00000_B.pdf)
-    // Flag may be A or B at least
-    private static final Pattern BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_2 = Pattern.compile("^(\\w+)_(\\d+)_(\\d+)___(\\d{5})_([A-Z]).pdf$");
+    // Documents path: /<book year>/<dbk>/<file_name>, see WinbooksDocumentFileName for file names
+    // Documents folder names, by order of preference
+    static final List<String> DOCUMENTS_PATH_NAMES = List.of("Document", "document", "DOCUMENT");
 
 
     Stream<WbDocument> streamBookYearDocuments(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear) {
-        String bookYearName = bookYear.getShortName();
-        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
-        boolean resolveDocumentTimes = fileConfiguration.isResolveDocumentTimes();
+        return listBookYearDbkFolderEntries(fileConfiguration, bookYear).stream()
+                .flatMap(dbkFolderEntry -> streamDbkBookYearDocuments(fileConfiguration, dbkFolderEntry, bookYear));
+    }
 
-        // Stream documents at /${basePath}/${documentsPath}/${bookYearName}/<book year doc format>
-        return WinbooksPathUtils.getBookYearBasePath(fileConfiguration, bookYear)
-                .flatMap(this::resolveDocumentsPath)
-                .flatMap(documentsPath -> WinbooksPathUtils.resolvePath(documentsPath, bookYearName, resolveCaseInsensitiveSiblings))
-                .map(root -> this.streamBookYearDocuments(root, bookYear, resolveDocumentTimes))
-                .orElseGet(Stream::empty);
+    /**
+     * Streams the documents of several book years. Book year and dbk folders are listed concurrently, according to
+     * the configured document scan parallelism. The document index, if any, is saved once all folders are listed.
+     */
+    Stream<WbDocument> streamBookYearsDocuments(WinbooksFileConfiguration fileConfiguration, List<WbBookYearFull> bookYears) {
+        Optional<WinbooksDocumentIndex> documentIndexOptional = fileConfiguration.getDocumentIndexOptional();
+        int documentScanParallelism = fileConfiguration.getDocumentScanParallelism();
+        if (documentScanParallelism <= 1 && documentIndexOptional.isEmpty()) {
+            return bookYears.stream()
+                    .flatMap(bookYear -> streamBookYearDocuments(fileConfiguration, bookYear));
+        }
+        List<WbDocument> documents = listBookYearsDocuments(fileConfiguration, bookYears, documentScanParallelism);
+        documentIndexOptional.ifPresent(WinbooksDocumentIndex::save);
+        return documents.stream();
+    }
+
+    private List<WbDocument> listBookYearsDocuments(WinbooksFileConfiguration fileConfiguration, List<WbBookYearFull> bookYears, int documentScanParallelism) {
+        if (documentScanParallelism <= 1) {
+            return bookYears.stream()
+                    .flatMap(bookYear -> streamBookYearDocuments(fileConfiguration, bookYear))
+                    .collect(Collectors.toList());
+        }
+
+        long time0 = System.currentTimeMillis();
+        ExecutorService executorService = WinbooksConcurrentUtils.createExecutorService(documentScanParallelism, "winbooks-document-scan");
+        try {
+            List<Future<List<WinbooksFileEntry>>> dbkFolderEntriesFutures = bookYears.stream()
+                    .map(bookYear -> executorService.submit(() -> listBookYearDbkFolderEntries(fileConfiguration, bookYear)))
+                    .collect(Collectors.toList());
+
+            // Dbk folders are scanned as soon as their book year has been listed
+            List<Future<List<WbDocument>>> documentsFutures = new ArrayList<>();
+            for (int bookYearIndex = 0; bookYearIndex < bookYears.size(); bookYearIndex++) {
+                WbBookYearFull bookYear = bookYears.get(bookYearIndex);
+                List<WinbooksFileEntry> dbkFolderEntries = WinbooksConcurrentUtils.getTaskResult(dbkFolderEntriesFutures.get(bookYearIndex));
+                for (WinbooksFileEntry dbkFolderEntry : dbkFolderEntries) {
+                    Future<List<WbDocument>> documentsFuture = executorService.submit(() -> streamDbkBookYearDocuments(fileConfiguration, dbkFolderEntry, bookYear)
+                            .collect(Collectors.toList()));
+                    documentsFutures.add(documentsFuture);
+                }
+            }
+
+            List<WbDocument> documents = documentsFutures.stream()
+                    .map(WinbooksConcurrentUtils::getTaskResult)
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+
+            long time1 = System.currentTimeMillis();
+            long deltaTime = time1 - time0;
+            LOGGER.finer("SCAN documents (" + bookYears.size() + " book years, " + documentsFutures.size() + " dbk folders): " + deltaTime);
+
+            return documents;
+        } finally {
+            executorService.shutdownNow();
+        }
     }
 
     Optional<byte[]> getDocumentData(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
-        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
-        return getDocumentAbsolutePath(fileConfiguration, document)
-                .flatMap(docPath -> getDocumentAllPartsPdfContent(docPath, document, resolveCaseInsensitiveSiblings));
+        List<Path> partPaths = listDocumentPartsPaths(fileConfiguration, document);
+        if (partPaths.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<byte[]> cachedContentOptional = openCachedContent(fileConfiguration, document, partPaths)
+                .map(this::readAllBytes);
+        if (cachedContentOptional.isPresent()) {
+            return cachedContentOptional;
+        }
+        return getDocumentAllPartsPdfContent(partPaths);
     }
 
-    private Stream<WbDocument> streamBookYearDocuments(Path bookYearDocumentFolderPath, WbBookYearFull bookYear, boolean resolveAccessTimes) {
+    /**
+     * Writes the document content to the output stream, without holding it in memory.
+     *
+     * @return false if no part of the document could be found
+     */
+    boolean writeDocumentContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, OutputStream outputStream) {
+        List<Path> partPaths = listDocumentPartsPaths(fileConfiguration, document);
+        if (partPaths.isEmpty()) {
+            return false;
+        }
+        writeDocumentPartsContent(fileConfiguration, document, partPaths, outputStream);
+        return true;
+    }
+
+    private void writeDocumentPartsContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, List<Path> partPaths, OutputStream outputStream) {
+        Optional<SeekableByteChannel> cachedContentChannelOptional = openCachedContent(fileConfiguration, document, partPaths);
+        if (cachedContentChannelOptional.isPresent()) {
+            SeekableByteChannel cachedContentChannel = cachedContentChannelOptional.get();
+            transferChannel(cachedContentChannel, outputStream);
+        } else {
+            writePartsContent(partPaths, outputStream);
+        }
+    }
+
+    /**
+     * Writes all documents of a book year period as a zip archive, one document after another. Document folders
+     * are listed, but part contents are copied without being held in memory.
+     *
+     * @param dbkCodeOptional Only export documents of this dbk, when present.
+     * @return the number of exported documents
+     */
+    int writePeriodDocumentsZip(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear, WbPeriod period,
+                                Optional<String> dbkCodeOptional, OutputStream outputStream) {
+        long time0 = System.currentTimeMillis();
+        int periodIndex = period.getIndex();
+        List<WbDocument> documents = dbkCodeOptional
+                .map(dbkCode -> streamBookYearDbkDocuments(fileConfiguration, bookYear, dbkCode))
+                .orElseGet(() -> streamBookYearDocuments(fileConfiguration, bookYear))
+                .filter(document -> document.getWbPeriod().getIndex() == periodIndex)
+                .sorted(Comparator.comparing(WbDocument::getDbkCode)
+                        .thenComparing(WbDocument::getDocumentNumber))
+                .collect(Collectors.toList());
+
+        int documentCount = 0;
+        Set<String> entryNames = new HashSet<>();
         try {
-            return Files.list(bookYearDocumentFolderPath)
-                    .flatMap(bookYearDbkPath -> streamDbkBookYearDocuments(bookYearDbkPath, bookYear, resolveAccessTimes));
-        } catch (IOException e) {
-            return Stream.empty();
+            ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+            // Pdf files hardly compress any further
+            zipOutputStream.setLevel(Deflater.BEST_SPEED);
+            for (WbDocument document : documents) {
+                List<Path> partPaths = listDocumentPartsPaths(fileConfiguration, document);
+                if (partPaths.isEmpty()) {
+                    continue;
+                }
+                String entryName = getUniqueZipEntryName(document, entryNames);
+                zipOutputStream.putNextEntry(new ZipEntry(entryName));
+                writeDocumentPartsContent(fileConfiguration, document, partPaths, zipOutputStream);
+                zipOutputStream.closeEntry();
+                documentCount++;
+            }
+            // The output stream belongs to the caller
+            zipOutputStream.finish();
+            zipOutputStream.flush();
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("ZIP documents (" + documentCount + " documents): " + deltaTime);
+
+        return documentCount;
+    }
+
+    /**
+     * @param entryNames The entry names used so far. Updated.
+     * @return {dbk}/{number}.pdf, suffixed by a counter when the same number was already exported for this dbk.
+     */
+    private String getUniqueZipEntryName(WbDocument document, Set<String> entryNames) {
+        String entryNamePrefix = document.getDbkCode() + "/" + document.getDocumentNumber();
+        String entryName = entryNamePrefix + ".pdf";
+        for (int duplicateIndex = 2; !entryNames.add(entryName); duplicateIndex++) {
+            entryName = entryNamePrefix + "_" + duplicateIndex + ".pdf";
+        }
+        return entryName;
+    }
+
+    /**
+     * Opens the document content. Cached contents and single-part documents are read directly from their file,
+     * multi-part documents are merged to a temporary file which is deleted when the stream is closed.
+     */
+    Optional<InputStream> openDocumentContent(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
+        List<Path> partPaths = listDocumentPartsPaths(fileConfiguration, document);
+        if (partPaths.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Optional<SeekableByteChannel> cachedContentChannelOptional = openCachedContent(fileConfiguration, document, partPaths);
+            if (cachedContentChannelOptional.isPresent()) {
+                SeekableByteChannel cachedContentChannel = cachedContentChannelOptional.get();
+                InputStream cachedInputStream = Channels.newInputStream(cachedContentChannel);
+                return Optional.of(cachedInputStream);
+            } else if (partPaths.size() == 1) {
+                Path partPath = partPaths.get(0);
+                InputStream partInputStream = Files.newInputStream(partPath);
+                return Optional.of(partInputStream);
+            }
+            return openTemporaryContent(outputStream -> mergePdfParts(partPaths, outputStream));
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    /**
+     * Writes a single part of the document, as stored.
+     *
+     * @param partIndex The part index, starting from 0.
+     * @return false if the part could not be found
+     */
+    boolean writeDocumentPartContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, int partIndex, OutputStream outputStream) {
+        Optional<Path> partPathOptional = findDocumentPartPath(fileConfiguration, document, partIndex);
+        partPathOptional.ifPresent(partPath -> transferFile(partPath, outputStream));
+        return partPathOptional.isPresent();
+    }
+
+    Optional<InputStream> openDocumentPartContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, int partIndex) {
+        try {
+            Optional<Path> partPathOptional = findDocumentPartPath(fileConfiguration, document, partIndex);
+            if (partPathOptional.isEmpty()) {
+                return Optional.empty();
+            }
+            Path partPath = partPathOptional.get();
+            InputStream partInputStream = Files.newInputStream(partPath);
+            return Optional.of(partInputStream);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    /**
+     * Writes a range of pages of the document, numbered across all its parts. Parts are opened in order, and
+     * parts following the last requested page are never read.
+     *
+     * @param firstPageNumber The first page, starting from 1.
+     * @param lastPageNumber  The last page, inclusive.
+     * @return false if no page of the range could be found
+     */
+    boolean writeDocumentPagesContent(WinbooksFileConfiguration fileConfiguration, WbDocument document,
+                                      int firstPageNumber, int lastPageNumber, OutputStream outputStream) {
+        checkPageRange(firstPageNumber, lastPageNumber);
+        Iterator<Path> partPathIterator = getDocumentAbsolutePath(fileConfiguration, document)
+                .map(documentPath -> streamDocumentPartsPaths(fileConfiguration, documentPath, document))
+                .orElseGet(Stream::empty)
+                .iterator();
+        return copyPdfPages(partPathIterator, firstPageNumber, lastPageNumber, outputStream);
+    }
+
+    Optional<InputStream> openDocumentPagesContent(WinbooksFileConfiguration fileConfiguration, WbDocument document,
+                                                   int firstPageNumber, int lastPageNumber) {
+        checkPageRange(firstPageNumber, lastPageNumber);
+        try {
+            return openTemporaryContent(outputStream -> writeDocumentPagesContent(fileConfiguration, document, firstPageNumber, lastPageNumber, outputStream));
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    /**
+     * Writes content to a temporary file, deleted when the returned stream is closed.
+     *
+     * @param contentWriter Writes the content, returns false if there is no content.
+     */
+    private Optional<InputStream> openTemporaryContent(Predicate<OutputStream> contentWriter) throws IOException {
+        Path temporaryPath = Files.createTempFile("winbooks-document-", ".pdf");
+        boolean contentWritten;
+        try (OutputStream temporaryOutputStream = Files.newOutputStream(temporaryPath)) {
+            contentWritten = contentWriter.test(temporaryOutputStream);
+        } catch (IOException | WinbooksException exception) {
+            Files.deleteIfExists(temporaryPath);
+            throw exception;
+        }
+        if (!contentWritten) {
+            Files.deleteIfExists(temporaryPath);
+            return Optional.empty();
+        }
+        InputStream temporaryInputStream = Files.newInputStream(temporaryPath, StandardOpenOption.DELETE_ON_CLOSE);
+        return Optional.of(temporaryInputStream);
+    }
+
+    private Optional<Path> findDocumentPartPath(WinbooksFileConfiguration fileConfiguration, WbDocument document, int partIndex) {
+        int partCount = document.getPartCount();
+        if (partIndex < 0 || partIndex >= partCount) {
+            String message = MessageFormat.format("Invalid part index {0} for a document with {1} parts", partIndex, partCount);
+            throw new WinbooksException(WinbooksError.INVALID_PARAMETER, message);
+        }
+        String partPathName = getDocumentPartPathName(partIndex, document);
+        return getDocumentAbsolutePath(fileConfiguration, document)
+                .flatMap(documentPath -> WinbooksPathUtils.resolvePath(fileConfiguration, documentPath, partPathName));
+    }
+
+    private void checkPageRange(int firstPageNumber, int lastPageNumber) {
+        if (firstPageNumber < 1 || lastPageNumber < firstPageNumber) {
+            String message = MessageFormat.format("Invalid page range {0}-{1}", firstPageNumber, lastPageNumber);
+            throw new WinbooksException(WinbooksError.INVALID_PARAMETER, message);
         }
     }
 
-    private Stream<WbDocument> streamDbkBookYearDocuments(Path path, WbBookYearFull bookYear, boolean resolveAccessTime) {
+    /**
+     * Streams the documents of a single dbk folder of a book year.
+     */
+    Stream<WbDocument> streamBookYearDbkDocuments(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear, String dbkCode) {
+        return findBookYearDocumentFolderPath(fileConfiguration, bookYear)
+                .flatMap(bookYearDocumentFolderPath -> WinbooksPathUtils.resolvePath(fileConfiguration, bookYearDocumentFolderPath, dbkCode))
+                .map(dbkFolderPath -> WinbooksPathUtils.getFileEntry(fileConfiguration, dbkFolderPath))
+                .filter(WinbooksFileEntry::isDirectory)
+                .map(dbkFolderEntry -> streamDbkBookYearDocuments(fileConfiguration, dbkFolderEntry, bookYear))
+                .orElseGet(Stream::empty);
+    }
+
+    private Optional<Path> findBookYearDocumentFolderPath(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear) {
+        String bookYearName = bookYear.getShortName();
+
+        // Documents are found at /${basePath}/${documentsPath}/${bookYearName}/${dbk}/<book year doc format>
+        return WinbooksPathUtils.getBookYearBasePath(fileConfiguration, bookYear)
+                .flatMap(basePath -> resolveDocumentsPath(fileConfiguration, basePath))
+                .flatMap(documentsPath -> WinbooksPathUtils.resolvePath(fileConfiguration, documentsPath, bookYearName));
+    }
+
+    private List<WinbooksFileEntry> listBookYearDbkFolderEntries(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear) {
+        Optional<Path> bookYearDocumentFolderPathOptional = findBookYearDocumentFolderPath(fileConfiguration, bookYear);
+        List<WinbooksFileEntry> dbkFolderEntries = bookYearDocumentFolderPathOptional
+                .map(bookYearDocumentFolderPath -> WinbooksPathUtils.streamDirectoryEntries(fileConfiguration, bookYearDocumentFolderPath))
+                .orElseGet(Stream::empty)
+                .filter(WinbooksFileEntry::isDirectory)
+                .collect(Collectors.toList());
+        bookYearDocumentFolderPathOptional.ifPresent(bookYearDocumentFolderPath ->
+                retainIndexedDbkFolders(fileConfiguration, bookYearDocumentFolderPath, dbkFolderEntries));
+        return dbkFolderEntries;
+    }
+
+    /**
+     * Removes the dbk folders of this book year that are not listed anymore from the document index, if any.
+     */
+    private void retainIndexedDbkFolders(WinbooksFileConfiguration fileConfiguration, Path bookYearDocumentFolderPath, List<WinbooksFileEntry> dbkFolderEntries) {
+        Optional<WinbooksDocumentIndex> documentIndexOptional = fileConfiguration.getDocumentIndexOptional();
+        if (documentIndexOptional.isEmpty()) {
+            return;
+        }
+        String bookYearFolderKeyPrefix = getDocumentIndexFolderKeyPrefix(fileConfiguration, bookYearDocumentFolderPath);
+        Set<String> dbkFolderKeys = dbkFolderEntries.stream()
+                .map(WinbooksFileEntry::getPath)
+                .map(dbkFolderPath -> getDocumentIndexFolderKey(fileConfiguration, dbkFolderPath))
+                .collect(Collectors.toSet());
+        WinbooksDocumentIndex documentIndex = documentIndexOptional.get();
+        documentIndex.retainFolders(bookYearFolderKeyPrefix, dbkFolderKeys);
+    }
+
+    private Stream<WbDocument> streamDbkBookYearDocuments(WinbooksFileConfiguration fileConfiguration, WinbooksFileEntry dbkFolderEntry, WbBookYearFull bookYear) {
+        Path path = dbkFolderEntry.getPath();
+        boolean resolveAccessTime = fileConfiguration.isResolveDocumentTimes();
+        WbPeriod[] periodsByIndex = getPeriodsByIndex(bookYear);
+        Optional<WinbooksDocumentIndex> documentIndexOptional = fileConfiguration.getDocumentIndexOptional();
+        FileTime folderLastModifiedTime = dbkFolderEntry.getLastModifiedTime();
+        if (documentIndexOptional.isEmpty() || folderLastModifiedTime == null) {
+            return streamDbkFolderDocuments(fileConfiguration, path, periodsByIndex, resolveAccessTime);
+        }
+
+        // The folder time comes along the book year folder listing: unchanged folders are not listed
+        WinbooksDocumentIndex documentIndex = documentIndexOptional.get();
+        String folderKey = getDocumentIndexFolderKey(fileConfiguration, path);
+        Optional<List<WbDocument>> indexedDocumentsOptional = documentIndex.findFolderDocuments(folderKey, folderLastModifiedTime, periodsByIndex, resolveAccessTime);
+        if (indexedDocumentsOptional.isPresent()) {
+            return indexedDocumentsOptional.get().stream();
+        }
+        // Times are indexed anyway, they come along the listing
+        List<WbDocument> documents = streamDbkFolderDocuments(fileConfiguration, path, periodsByIndex, true)
+                .collect(Collectors.toList());
+        documentIndex.putFolderDocuments(folderKey, folderLastModifiedTime, documents);
+        if (!resolveAccessTime) {
+            documents.forEach(this::clearDocumentTimes);
+        }
+        return documents.stream();
+    }
+
+    private String getDocumentIndexFolderKey(WinbooksFileConfiguration fileConfiguration, Path path) {
+        Path basePath = WinbooksPathUtils.getDossierBasePath(fileConfiguration);
+        if (!path.startsWith(basePath)) {
+            // Archived book years may live elsewhere
+            return path.toAbsolutePath().toString();
+        }
+        Path relativePath = basePath.relativize(path);
+        return StreamSupport.stream(relativePath.spliterator(), false)
+                .map(Path::toString)
+                .collect(Collectors.joining("/"));
+    }
+
+    /**
+     * @return the prefix of the index keys of all folders found in this folder.
+     */
+    private String getDocumentIndexFolderKeyPrefix(WinbooksFileConfiguration fileConfiguration, Path path) {
+        String folderKey = getDocumentIndexFolderKey(fileConfiguration, path);
+        Path basePath = WinbooksPathUtils.getDossierBasePath(fileConfiguration);
+        if (!path.startsWith(basePath)) {
+            return folderKey + path.getFileSystem().getSeparator();
+        }
+        return folderKey + "/";
+    }
+
+    private void clearDocumentTimes(WbDocument document) {
+        document.setCreationTime(null);
+        document.setUpdatedTime(null);
+    }
+
+    private Stream<WbDocument> streamDbkFolderDocuments(WinbooksFileConfiguration fileConfiguration, Path path, WbPeriod[] periodsByIndex, boolean resolveAccessTime) {
         Collector<WbDocument, ?, Optional<WbDocument>> maxPartNumberCompoarator = Collectors.maxBy(Comparator.comparing(WbDocument::getPartCount));
-        return WinbooksPathUtils.streamDirectoryFiles(path, this::isDocument)
-                .map(documentPath -> getDocumentOptional(documentPath, bookYear, resolveAccessTime))
+        return WinbooksPathUtils.streamDirectoryEntries(fileConfiguration, path)
+                .filter(entry -> !entry.isDirectory())
+                .map(documentEntry -> getDocumentOptional(documentEntry, periodsByIndex, resolveAccessTime))
                 .flatMap(this::streamOptional)
                 .collect(Collectors.groupingBy(Function.identity(), maxPartNumberCompoarator))
                 .values()
@@ -101,16 +479,11 @@ class WinbooksDocumentsService {
     }
 
 
-    private Optional<Path> resolveDocumentsPath(Path basePath) {
-        String defaultDocumentPathName = "Document";
-        Path defaultDocumentsPath = basePath.resolve(defaultDocumentPathName);
-        return Stream.of(
-                defaultDocumentsPath,
-                basePath.resolve("document"),
-                basePath.resolve("DOCUMENT")
-        )
-                .filter(Files::exists)
-                .findAny();
+    private Optional<Path> resolveDocumentsPath(WinbooksFileConfiguration fileConfiguration, Path basePath) {
+        return DOCUMENTS_PATH_NAMES.stream()
+                .map(basePath::resolve)
+                .filter(documentsPath -> WinbooksPathUtils.exists(fileConfiguration, documentsPath))
+                .findFirst();
     }
 
     private <T> Stream<T> streamOptional(Optional<T> optional) {
@@ -118,60 +491,25 @@ class WinbooksDocumentsService {
                 .orElseGet(Stream::empty);
     }
 
-    private boolean isDocument(Path documentPath) {
-        String fileName = documentPath.getFileName().toString();
-        Matcher matcher1 = BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_1.matcher(fileName);
-        Matcher matcher2 = BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_2.matcher(fileName);
-        return matcher1.matches() || matcher2.matches();
-    }
-
-    private Optional<WbDocument> getDocumentOptional(Path documentPath, WbBookYearFull bookYear, boolean resolveAccessTimes) {
-        String fileName = documentPath.getFileName().toString();
-        Matcher matcher1 = BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_1.matcher(fileName);
-        Matcher matcher2 = BOOK_YEAR_DOCUMENT_FILENAME_PATTERN_2.matcher(fileName);
-
-        String actualDbkCode;
-        String periodName;
-        String documentNumber;
-        String partNrString;
-        String fileNameTemplate;
-        int partNumber;
-        if (matcher1.matches()) {
-            actualDbkCode = matcher1.group(1);
-            periodName = matcher1.group(2);
-            documentNumber = matcher1.group(3);
-            partNrString = matcher1.group(4);
-            partNumber = Integer.valueOf(partNrString);
-            fileNameTemplate = MessageFormat.format("{0}_{1}_{2}_{3}.pdf",
-                    actualDbkCode, periodName, documentNumber, "{0,number,00}");
-        } else if (matcher2.matches()) {
-            actualDbkCode = matcher2.group(1);
-            periodName = matcher2.group(2);
-            documentNumber = matcher2.group(3);
-            partNrString = matcher2.group(4);
-            // TODO
-            String unknownFlag = matcher2.group(5);
-            partNumber = Integer.valueOf(partNrString);
-            fileNameTemplate = MessageFormat.format("{0}_{1}_{2}___{3}_{4}.pdf",
-                    actualDbkCode, periodName, documentNumber, "{0,number,00000}", unknownFlag);
-        } else {
+    private Optional<WbDocument> getDocumentOptional(WinbooksFileEntry documentEntry, WbPeriod[] periodsByIndex, boolean resolveAccessTimes) {
+        String fileName = documentEntry.getName();
+        Optional<WinbooksDocumentFileName> documentFileNameOptional = WinbooksDocumentFileName.parse(fileName);
+        if (documentFileNameOptional.isEmpty()) {
             return Optional.empty();
         }
+        WinbooksDocumentFileName documentFileName = documentFileNameOptional.get();
 
         WbDocument wbDocument = new WbDocument();
-        wbDocument.setDbkCode(actualDbkCode);
-        wbDocument.setDocumentNumber(documentNumber);
-        wbDocument.setPartCount(partNumber);
-        wbDocument.setWbPeriod(getWbPeriod(bookYear, periodName));
-        wbDocument.setFileNameTemplate(fileNameTemplate);
+        wbDocument.setDbkCode(documentFileName.getDbkCode());
+        wbDocument.setDocumentNumber(documentFileName.getDocumentNumber());
+        wbDocument.setPartCount(documentFileName.getPartNumber());
+        wbDocument.setWbPeriod(getWbPeriod(periodsByIndex, documentFileName));
+        wbDocument.setFileNameTemplate(documentFileName.getFileNameTemplate());
 
         if (resolveAccessTimes) {
-            long time0 = System.currentTimeMillis();
-            LocalDateTime lastModifiedLocalTime = WinbooksPathUtils.getLastModifiedTime(documentPath);
-            LocalDateTime creationTime = WinbooksPathUtils.getCreationTime(documentPath);
-            long time1 = System.currentTimeMillis();
-            long totalTIme = time1 - time0;
-            LOGGER.finer("*** file times(" + documentPath.toString() + ": " + totalTIme + "ms");
+            // Times come along the directory listing
+            LocalDateTime lastModifiedLocalTime = WinbooksPathUtils.toLocalDateTime(documentEntry.getLastModifiedTime());
+            LocalDateTime creationTime = WinbooksPathUtils.toLocalDateTime(documentEntry.getCreationTime());
 
             wbDocument.setUpdatedTime(lastModifiedLocalTime);
             wbDocument.setCreationTime(creationTime);
@@ -180,51 +518,112 @@ class WinbooksDocumentsService {
         return Optional.of(wbDocument);
     }
 
-    private WbPeriod getWbPeriod(WbBookYearFull bookYear, String periodName) {
-        return bookYear.getPeriodList()
-                .stream()
-                .filter(wbPeriod -> isPeriodIndex(wbPeriod, periodName))
-                .findFirst()
-                .orElseThrow(() -> new WinbooksException(WinbooksError.NO_PERIOD, "Period not found: " + periodName));
+    private WbPeriod getWbPeriod(WbPeriod[] periodsByIndex, WinbooksDocumentFileName documentFileName) {
+        return documentFileName.getPeriodIndexOptional()
+                .filter(periodIndex -> periodIndex < periodsByIndex.length)
+                .map(periodIndex -> periodsByIndex[periodIndex])
+                .orElseThrow(() -> new WinbooksException(WinbooksError.NO_PERIOD, "Period not found: " + documentFileName.getPeriodName()));
     }
 
-    private boolean isPeriodIndex(WbPeriod wbPeriod, String expectedPeriodName) {
-        int periodIndex = wbPeriod.getIndex();
-        String periodIndexName = String.format("%02d", periodIndex);
-        return expectedPeriodName.equals(periodIndexName);
+    /**
+     * @return the book year periods, by index. The first period of the list wins for duplicate indexes.
+     */
+    private WbPeriod[] getPeriodsByIndex(WbBookYearFull bookYear) {
+        List<WbPeriod> periods = bookYear.getPeriodList();
+        int maxPeriodIndex = periods.stream()
+                .mapToInt(WbPeriod::getIndex)
+                .max()
+                .orElse(-1);
+        WbPeriod[] periodsByIndex = new WbPeriod[maxPeriodIndex + 1];
+        for (WbPeriod period : periods) {
+            int periodIndex = period.getIndex();
+            if (periodIndex >= 0 && periodsByIndex[periodIndex] == null) {
+                periodsByIndex[periodIndex] = period;
+            }
+        }
+        return periodsByIndex;
     }
 
 
     private Optional<Path> getDocumentAbsolutePath(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
-        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
         WbBookYearFull bookYearFull = document.getWbPeriod().getWbBookYearFull();
         return WinbooksPathUtils.getBookYearBasePath(fileConfiguration, bookYearFull)
-                .flatMap(this::resolveDocumentsPath)
-                .map(documentsPath -> resolveDocumentDirectoryPath(documentsPath, document, resolveCaseInsensitiveSiblings));
+                .flatMap(basePath -> resolveDocumentsPath(fileConfiguration, basePath))
+                .map(documentsPath -> resolveDocumentDirectoryPath(fileConfiguration, documentsPath, document));
     }
 
-    private Path resolveDocumentDirectoryPath(Path baseDocumentPath, WbDocument document, boolean resolveCaseInsensitiveSiblings) {
+    private Path resolveDocumentDirectoryPath(WinbooksFileConfiguration fileConfiguration, Path baseDocumentPath, WbDocument document) {
         WbBookYearFull wbBookYearFull = document.getWbPeriod().getWbBookYearFull();
         String bookYearShortName = wbBookYearFull.getShortName();
         String dbCode = document.getDbkCode();
-        return WinbooksPathUtils.resolvePath(baseDocumentPath, bookYearShortName, resolveCaseInsensitiveSiblings)
-                .flatMap(bookYearPath -> WinbooksPathUtils.resolvePath(bookYearPath, dbCode, resolveCaseInsensitiveSiblings))
+        return WinbooksPathUtils.resolvePath(fileConfiguration, baseDocumentPath, bookYearShortName)
+                .flatMap(bookYearPath -> WinbooksPathUtils.resolvePath(fileConfiguration, bookYearPath, dbCode))
                 .orElseGet(() -> baseDocumentPath.resolve(bookYearShortName).resolve(dbCode));
     }
 
 
-    private Optional<byte[]> getDocumentAllPartsPdfContent(Path documentPath, WbDocument document, boolean resolveCaseInsitiveSiblings) {
-        return streamDocumentPartsPaths(documentPath, document, resolveCaseInsitiveSiblings)
-                .map(this::readAllBytes)
-                .reduce(this::mergePdf);
+    private List<Path> listDocumentPartsPaths(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
+        return getDocumentAbsolutePath(fileConfiguration, document)
+                .map(documentPath -> streamDocumentPartsPaths(fileConfiguration, documentPath, document))
+                .orElseGet(Stream::empty)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return a channel on the cached content, to be closed by the caller, when a content cache is configured.
+     */
+    private Optional<SeekableByteChannel> openCachedContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, List<Path> partPaths) {
+        return fileConfiguration.getDocumentContentCacheOptional()
+                .map(contentCache -> {
+                    String contentCacheKey = getContentCacheKey(fileConfiguration, document, partPaths);
+                    return contentCache.openContent(contentCacheKey, outputStream -> writePartsContent(partPaths, outputStream));
+                });
+    }
+
+    private String getContentCacheKey(WinbooksFileConfiguration fileConfiguration, WbDocument document, List<Path> partPaths) {
+        // Any change to a part file should invalidate the cached content
+        StringBuilder keyBuilder = new StringBuilder();
+        keyBuilder.append(document.getDbkCode())
+                .append('|').append(document.getDocumentNumber())
+                .append('|').append(document.getFileNameTemplate());
+        for (Path partPath : partPaths) {
+            WinbooksFileEntry partEntry = WinbooksPathUtils.getFileEntry(fileConfiguration, partPath);
+            keyBuilder.append('|').append(partPath.toUri())
+                    .append('|').append(partEntry.getSize())
+                    .append('|').append(partEntry.getLastModifiedTime().toMillis());
+        }
+        return keyBuilder.toString();
     }
 
-    private Stream<Path> streamDocumentPartsPaths(Path basePath, WbDocument document, boolean resolveCaseInsensitiveSiblings) {
+    private void writePartsContent(List<Path> partPaths, OutputStream outputStream) {
+        if (partPaths.size() == 1) {
+            Path partPath = partPaths.get(0);
+            transferFile(partPath, outputStream);
+        } else {
+            mergePdfParts(partPaths, outputStream);
+        }
+    }
+
+    private Optional<byte[]> getDocumentAllPartsPdfContent(List<Path> partPaths) {
+        if (partPaths.isEmpty()) {
+            return Optional.empty();
+        } else if (partPaths.size() == 1) {
+            Path partPath = partPaths.get(0);
+            byte[] partContent = readAllBytes(partPath);
+            return Optional.of(partContent);
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        mergePdfParts(partPaths, byteArrayOutputStream);
+        return Optional.of(byteArrayOutputStream.toByteArray());
+    }
+
+    private Stream<Path> streamDocumentPartsPaths(WinbooksFileConfiguration fileConfiguration, Path basePath, WbDocument document) {
         int partCount = document.getPartCount();
 
         return IntStream.range(0, partCount)
                 .mapToObj(partIndex -> getDocumentPartPathName(partIndex, document))
-                .map(pagePathName -> WinbooksPathUtils.resolvePath(basePath, pagePathName, resolveCaseInsensitiveSiblings))
+                .map(pagePathName -> WinbooksPathUtils.resolvePath(fileConfiguration, basePath, pagePathName))
                 .flatMap(this::streamOptional);
     }
 
@@ -236,33 +635,131 @@ class WinbooksDocumentsService {
     }
 
 
-    private byte[] readAllBytes(Path path) {
+    private void transferFile(Path path, OutputStream outputStream) {
         try {
-            return Files.readAllBytes(path);
+            SeekableByteChannel byteChannel = Files.newByteChannel(path);
+            transferChannel(byteChannel, outputStream);
         } catch (IOException exception) {
             throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
         }
     }
 
-    private byte[] mergePdf(byte[] pdfData1, byte[] pdfData2) {
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            PdfCopyFields pdfCopyFields = new PdfCopyFields(byteArrayOutputStream);
+    /**
+     * Copies the channel content to the output stream, closing the channel.
+     */
+    private void transferChannel(SeekableByteChannel byteChannel, OutputStream outputStream) {
+        try (byteChannel) {
+            if (byteChannel instanceof FileChannel) {
+                // Let the platform copy from the file, possibly without going through user space
+                FileChannel fileChannel = (FileChannel) byteChannel;
+                WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+                long size = fileChannel.size();
+                long position = 0;
+                while (position < size) {
+                    position += fileChannel.transferTo(position, size - position, outputChannel);
+                }
+            } else {
+                InputStream inputStream = Channels.newInputStream(byteChannel);
+                inputStream.transferTo(outputStream);
+            }
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
 
-            PdfReader pdfReader1 = new PdfReader(pdfData1);
-            pdfCopyFields.addDocument(pdfReader1);
+    /**
+     * Reads the channel content, closing the channel.
+     */
+    private byte[] readAllBytes(SeekableByteChannel byteChannel) {
+        try (InputStream inputStream = Channels.newInputStream(byteChannel)) {
+            return inputStream.readAllBytes();
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
 
-            PdfReader pdfReader2 = new PdfReader(pdfData2);
-            pdfCopyFields.addDocument(pdfReader2);
+    private byte[] readAllBytes(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
 
-            pdfCopyFields.close();
-            pdfReader1.close();
-            pdfReader2.close();
+    /**
+     * Appends the pages of all parts to the output in a single pass. Each part is parsed once, and released as soon
+     * as its pages have been written.
+     */
+    private boolean mergePdfParts(List<Path> partPaths, OutputStream outputStream) {
+        long time0 = System.currentTimeMillis();
+        Iterator<Path> partPathIterator = partPaths.iterator();
+        boolean pagesCopied = copyPdfPages(partPathIterator, 1, Integer.MAX_VALUE, outputStream);
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("MERGE pdf parts (" + partPaths.size() + "): " + deltaTime);
+        return pagesCopied;
+    }
 
-            return byteArrayOutputStream.toByteArray();
+    /**
+     * Copies a range of pages, numbered across all parts, to the output. Parts are read as long as the last page has
+     * not been reached.
+     * <p>
+     * Pages are copied as they are read, without the interactive form (AcroForm) of their part: form fields are
+     * rendered as their appearances, but cannot be filled anymore. Merging forms would require all parts to be held
+     * until the output is complete.
+     *
+     * @return false if there is no page in the range, in which case nothing has been written.
+     */
+    private boolean copyPdfPages(Iterator<Path> partPathIterator, int firstPageNumber, int lastPageNumber, OutputStream outputStream) {
+        Document pdfDocument = new Document();
+        PdfCopy pdfCopy = null;
+        try {
+            int partFirstPageNumber = 1;
+            while (partPathIterator.hasNext() && partFirstPageNumber <= lastPageNumber) {
+                Path partPath = partPathIterator.next();
+                PdfReader pdfReader = readPdf(partPath);
+                try {
+                    int pageCount = pdfReader.getNumberOfPages();
+                    int partLastPageNumber = partFirstPageNumber + pageCount - 1;
+                    int copyFirstPageNumber = Math.max(firstPageNumber, partFirstPageNumber);
+                    int copyLastPageNumber = Math.min(lastPageNumber, partLastPageNumber);
+
+                    for (int pageNumber = copyFirstPageNumber; pageNumber <= copyLastPageNumber; pageNumber++) {
+                        if (pdfCopy == null) {
+                            pdfCopy = new PdfCopy(pdfDocument, outputStream);
+                            // The output stream belongs to the caller
+                            pdfCopy.setCloseStream(false);
+                            pdfDocument.open();
+                        }
+                        int partPageNumber = pageNumber - partFirstPageNumber + 1;
+                        PdfImportedPage importedPage = pdfCopy.getImportedPage(pdfReader, partPageNumber);
+                        pdfCopy.addPage(importedPage);
+                    }
+                    if (pdfCopy != null) {
+                        pdfCopy.freeReader(pdfReader);
+                    }
+
+                    partFirstPageNumber = partLastPageNumber + 1;
+                } finally {
+                    pdfReader.close();
+                }
+            }
+
+            if (pdfCopy == null) {
+                return false;
+            }
+            pdfDocument.close();
+            return true;
         } catch (IOException | DocumentException exception) {
             throw new WinbooksException(WinbooksError.USER_FILE_ERROR, "Error while processing pdf files", exception);
         }
     }
 
+    private PdfReader readPdf(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return new PdfReader(inputStream);
+        }
+    }
+
 
 }
@@ -0,0 +1,153 @@
+package be.valuya.winbooks.api.extra;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the directory listings of a dossier: the dossier folder with its tables, the archive folders
+ * of its book years, and their document trees.
+ * <p>
+ * Only directories which have been listed during the scan are covered. Resolutions against other directories
+ * must fall back to the filesystem.
+ */
+public class WinbooksDossierManifest {
+
+    private final Path dossierBasePath;
+    private final LocalDateTime scanTime;
+    private final Map<Path, List<WinbooksFileEntry>> directoryEntries;
+    private final Map<Path, Map<String, WinbooksFileEntry>> directoryEntriesByName;
+    private final Map<Path, Map<String, WinbooksFileEntry>> directoryEntriesByLowerCaseName;
+    private final Map<String, Optional<Path>> archivePaths;
+
+    WinbooksDossierManifest(Path dossierBasePath, LocalDateTime scanTime,
+                            Map<Path, List<WinbooksFileEntry>> directoryEntries, Map<String, Optional<Path>> archivePaths) {
+        this.dossierBasePath = dossierBasePath;
+        this.scanTime = scanTime;
+        this.directoryEntries = Collections.unmodifiableMap(copyDirectoryEntries(directoryEntries));
+        this.archivePaths = Collections.unmodifiableMap(new HashMap<>(archivePaths));
+        this.directoryEntriesByName = new HashMap<>();
+        this.directoryEntriesByLowerCaseName = new HashMap<>();
+
+        this.directoryEntries.forEach(this::indexDirectoryEntries);
+    }
+
+    public Path getDossierBasePath() {
+        return dossierBasePath;
+    }
+
+    public LocalDateTime getScanTime() {
+        return scanTime;
+    }
+
+    /**
+     * @return true if the directory content has been listed during the scan.
+     */
+    public boolean isScannedDirectory(Path directoryPath) {
+        return directoryEntries.containsKey(directoryPath);
+    }
+
+    public Optional<List<WinbooksFileEntry>> getDirectoryEntriesOptional(Path directoryPath) {
+        return Optional.ofNullable(directoryEntries.get(directoryPath));
+    }
+
+    public Optional<WinbooksFileEntry> getEntryOptional(Path path) {
+        Path parentPath = path.getParent();
+        Path fileName = path.getFileName();
+        if (parentPath == null || fileName == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(directoryEntriesByName.get(parentPath))
+                .map(entriesByName -> entriesByName.get(fileName.toString()));
+    }
+
+    /**
+     * @return true if the archive path has been considered during the scan, even if it could not be resolved.
+     */
+    public boolean isScannedArchivePath(String archivePathName) {
+        return archivePaths.containsKey(archivePathName);
+    }
+
+    public Optional<Path> getArchivePathOptional(String archivePathName) {
+        return archivePaths.getOrDefault(archivePathName, Optional.empty());
+    }
+
+    public Map<String, Optional<Path>> getArchivePaths() {
+        return archivePaths;
+    }
+
+    public Stream<WinbooksFileEntry> streamEntries() {
+        return directoryEntries.values().stream()
+                .flatMap(List::stream);
+    }
+
+    Map<Path, List<WinbooksFileEntry>> getDirectoryEntries() {
+        return directoryEntries;
+    }
+
+    /**
+     * @return a copy of this manifest in which these directories are not listed anymore, so that they are resolved
+     * from the filesystem.
+     */
+    WinbooksDossierManifest withoutDirectories(Set<Path> directoryPaths) {
+        Map<Path, List<WinbooksFileEntry>> remainingDirectoryEntries = new LinkedHashMap<>(directoryEntries);
+        remainingDirectoryEntries.keySet().removeAll(directoryPaths);
+        return new WinbooksDossierManifest(dossierBasePath, scanTime, remainingDirectoryEntries, archivePaths);
+    }
+
+    /**
+     * Resolves a child of a scanned directory, following the same rules as the filesystem resolution: exact name
+     * first, then the upper-case dbf extension, then any case-insensitive sibling if requested.
+     */
+    Optional<Path> resolvePath(Path parentPath, String fileName, boolean resolveCaseInsensitiveSiblings) {
+        Map<String, WinbooksFileEntry> entriesByName = directoryEntriesByName.getOrDefault(parentPath, Map.of());
+        Optional<WinbooksFileEntry> entryOptional = Optional.ofNullable(entriesByName.get(fileName));
+        if (fileName.endsWith(".dbf")) {
+            String capitalizedExtensionFileName = fileName.replace(".dbf", ".DBF");
+            entryOptional = entryOptional.or(() -> Optional.ofNullable(entriesByName.get(capitalizedExtensionFileName)));
+        }
+        if (resolveCaseInsensitiveSiblings) {
+            String lowerCaseFileName = fileName.toLowerCase(Locale.ROOT);
+            Map<String, WinbooksFileEntry> entriesByLowerCaseName = directoryEntriesByLowerCaseName.getOrDefault(parentPath, Map.of());
+            entryOptional = entryOptional.or(() -> Optional.ofNullable(entriesByLowerCaseName.get(lowerCaseFileName)));
+        }
+        return entryOptional.map(WinbooksFileEntry::getPath);
+    }
+
+    private void indexDirectoryEntries(Path directoryPath, List<WinbooksFileEntry> entries) {
+        Map<String, WinbooksFileEntry> entriesByName = new HashMap<>();
+        Map<String, WinbooksFileEntry> entriesByLowerCaseName = new HashMap<>();
+        for (WinbooksFileEntry entry : entries) {
+            String name = entry.getName();
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            entriesByName.put(name, entry);
+            entriesByLowerCaseName.putIfAbsent(lowerCaseName, entry);
+        }
+        directoryEntriesByName.put(directoryPath, entriesByName);
+        directoryEntriesByLowerCaseName.put(directoryPath, entriesByLowerCaseName);
+    }
+
+    private static Map<Path, List<WinbooksFileEntry>> copyDirectoryEntries(Map<Path, List<WinbooksFileEntry>> directoryEntries) {
+        Map<Path, List<WinbooksFileEntry>> entriesCopy = new LinkedHashMap<>();
+        directoryEntries.forEach((path, entries) -> entriesCopy.put(path, List.copyOf(entries)));
+        return entriesCopy;
+    }
+
+    @Override
+    public String toString() {
+        return "WinbooksDossierManifest{" +
+                "dossierBasePath=" + dossierBasePath +
+                ", scanTime=" + scanTime +
+                ", directories=" + directoryEntries.size() +
+                ", archives=" + archivePaths.size() +
+                '}';
+    }
+}
@@ -0,0 +1,67 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Dossier data parsed from the param table: the raw params, the book years with their periods, and the account
+ * number length.
+ * <p>
+ * Instances are shared by every caller of a configuration, until the param table changes. Book years are not
+ * copied, and must not be modified.
+ */
+public class WinbooksDossierMetadata {
+
+    private final String paramTableSignature;
+    private final Map<String, String> params;
+    private final List<WbBookYearFull> bookYears;
+    private final int accountNumberLength;
+
+    WinbooksDossierMetadata(String paramTableSignature, Map<String, String> params, List<WbBookYearFull> bookYears,
+                            int accountNumberLength) {
+        this.paramTableSignature = paramTableSignature;
+        this.params = Collections.unmodifiableMap(params);
+        this.bookYears = Collections.unmodifiableList(bookYears);
+        this.accountNumberLength = accountNumberLength;
+    }
+
+    /**
+     * @return the stamp (path, size and last modification time) of the param table this metadata was parsed from.
+     */
+    String getParamTableSignature() {
+        return paramTableSignature;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public Optional<String> getParamOptional(String id) {
+        return Optional.ofNullable(params.get(id));
+    }
+
+    /**
+     * @return all book years of the dossier, regardless of the configured book year start dates.
+     */
+    public List<WbBookYearFull> getBookYears() {
+        return bookYears;
+    }
+
+    public int getAccountNumberLength() {
+        return accountNumberLength;
+    }
+
+    @Override
+    public String toString() {
+        return "WinbooksDossierMetadata{" +
+                "paramTableSignature='" + paramTableSignature + '\'' +
+                ", params=" + params.size() +
+                ", bookYears=" + bookYears.size() +
+                ", accountNumberLength=" + accountNumberLength +
+                '}';
+    }
+}
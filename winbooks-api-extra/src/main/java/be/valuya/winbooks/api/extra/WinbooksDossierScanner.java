@@ -0,0 +1,139 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lists a dossier folder and its documents tree once, keeping the attributes returned by the directory listings.
+ */
+class WinbooksDossierScanner {
+    private static Logger LOGGER = Logger.getLogger(WinbooksDossierScanner.class.getName());
+
+    // <base path>/<table file name>
+    private static final int DOSSIER_SCAN_DEPTH = 1;
+    // <documents path>/<book year>/<dbk>/<file name>
+    private static final int DOCUMENTS_SCAN_DEPTH = 3;
+
+    WinbooksDossierManifest scanDossier(Path dossierBasePath) {
+        long time0 = System.currentTimeMillis();
+        LocalDateTime scanTime = LocalDateTime.now();
+
+        Map<Path, List<WinbooksFileEntry>> directoryEntries = new LinkedHashMap<>();
+        scanFolder(dossierBasePath, directoryEntries);
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("SCAN dossier (" + dossierBasePath + "): " + deltaTime);
+
+        return new WinbooksDossierManifest(dossierBasePath, scanTime, directoryEntries, Map.of());
+    }
+
+    /**
+     * @param archivePaths Resolved archive folders, by archive path name as found in the param table.
+     */
+    WinbooksDossierManifest scanArchives(WinbooksDossierManifest dossierManifest, Map<String, Optional<Path>> archivePaths) {
+        long time0 = System.currentTimeMillis();
+
+        Map<Path, List<WinbooksFileEntry>> directoryEntries = new LinkedHashMap<>(dossierManifest.getDirectoryEntries());
+        archivePaths.values().stream()
+                .flatMap(Optional::stream)
+                .distinct()
+                .filter(archivePath -> !directoryEntries.containsKey(archivePath))
+                .forEach(archivePath -> scanFolder(archivePath, directoryEntries));
+
+        Map<String, Optional<Path>> allArchivePaths = new HashMap<>(dossierManifest.getArchivePaths());
+        allArchivePaths.putAll(archivePaths);
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("SCAN archives (" + archivePaths.size() + "): " + deltaTime);
+
+        Path dossierBasePath = dossierManifest.getDossierBasePath();
+        LocalDateTime scanTime = dossierManifest.getScanTime();
+        return new WinbooksDossierManifest(dossierBasePath, scanTime, directoryEntries, allArchivePaths);
+    }
+
+    private void scanFolder(Path folderPath, Map<Path, List<WinbooksFileEntry>> directoryEntries) {
+        walkFolder(folderPath, DOSSIER_SCAN_DEPTH, directoryEntries);
+
+        List<WinbooksFileEntry> folderEntries = directoryEntries.getOrDefault(folderPath, List.of());
+        WinbooksDocumentsService.DOCUMENTS_PATH_NAMES.stream()
+                .map(folderPath::resolve)
+                .filter(documentsPath -> containsDirectory(folderEntries, documentsPath))
+                .findFirst()
+                .ifPresent(documentsPath -> walkFolder(documentsPath, DOCUMENTS_SCAN_DEPTH, directoryEntries));
+    }
+
+    private boolean containsDirectory(List<WinbooksFileEntry> entries, Path directoryPath) {
+        return entries.stream()
+                .filter(WinbooksFileEntry::isDirectory)
+                .map(WinbooksFileEntry::getPath)
+                .anyMatch(directoryPath::equals);
+    }
+
+    private void walkFolder(Path folderPath, int depth, Map<Path, List<WinbooksFileEntry>> directoryEntries) {
+        try {
+            Files.walkFileTree(folderPath, EnumSet.noneOf(FileVisitOption.class), depth, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directoryPath, BasicFileAttributes attributes) {
+                    // Directories which are listed are the ones covered by the manifest
+                    directoryEntries.putIfAbsent(directoryPath, new ArrayList<>());
+                    if (!directoryPath.equals(folderPath)) {
+                        addEntry(directoryPath, attributes, directoryEntries);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path filePath, BasicFileAttributes attributes) {
+                    // Also called for directories at the maximum depth, which are not listed
+                    addEntry(filePath, attributes, directoryEntries);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path filePath, IOException exception) {
+                    LOGGER.log(Level.FINE, "Could not scan " + filePath, exception);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directoryPath, IOException exception) {
+                    if (exception != null) {
+                        // Partial listing: leave this directory to the filesystem resolution
+                        LOGGER.log(Level.FINE, "Could not scan " + directoryPath, exception);
+                        directoryEntries.remove(directoryPath);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.UNKNOWN_ERROR, exception);
+        }
+    }
+
+    private void addEntry(Path path, BasicFileAttributes attributes, Map<Path, List<WinbooksFileEntry>> directoryEntries) {
+        Path parentPath = path.getParent();
+        WinbooksFileEntry fileEntry = WinbooksFileEntry.of(path, attributes);
+        directoryEntries.computeIfAbsent(parentPath, p -> new ArrayList<>())
+                .add(fileEntry);
+    }
+}
@@ -0,0 +1,33 @@
+package be.valuya.winbooks.api.extra;
+
+/**
+ * Dossier tables whose changes are tracked, found in the dossier folder.
+ */
+public enum WinbooksDossierTable {
+    /**
+     * Dossier params, including book years and their periods.
+     */
+    PARAM("param"),
+    /**
+     * Accounts.
+     */
+    ACCOUNT("ACF"),
+    /**
+     * Customers and suppliers.
+     */
+    CUSTOMER_SUPPLIER("CSF"),
+    /**
+     * Accounting entries of the book years that are not archived.
+     */
+    ACCOUNTING_ENTRY("ACT");
+
+    private final String tableName;
+
+    WinbooksDossierTable(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+}
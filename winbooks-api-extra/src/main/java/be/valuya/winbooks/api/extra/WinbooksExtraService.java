@@ -2,7 +2,6 @@ package be.valuya.winbooks.api.extra;
 
 import be.valuya.jbooks.model.WbAccount;
 import be.valuya.jbooks.model.WbBookYearFull;
-import be.valuya.jbooks.model.WbBookYearStatus;
 import be.valuya.jbooks.model.WbClientSupplier;
 import be.valuya.jbooks.model.WbDocument;
 import be.valuya.jbooks.model.WbEntry;
@@ -13,6 +12,7 @@ import be.valuya.winbooks.api.extra.reader.DbfUtils;
 import be.valuya.winbooks.api.extra.reader.PeriodResolver;
 import be.valuya.winbooks.api.extra.reader.WbAccountDbfReader;
 import be.valuya.winbooks.api.extra.reader.WbBookYearFullDbfReader;
+import be.valuya.winbooks.api.extra.reader.WbBookYearParamsParser;
 import be.valuya.winbooks.api.extra.reader.WbClientSupplierDbfReader;
 import be.valuya.winbooks.api.extra.reader.WbEntryDbfReader;
 import be.valuya.winbooks.api.extra.reader.WbParamDbfReader;
@@ -24,18 +24,32 @@ import net.iryndin.jdbf.core.DbfRecord;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.text.MessageFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -60,7 +74,7 @@ public class WinbooksExtraService {
     private static final Pattern DEFAULT_TABLE_FILE_NAME_PATTERN = Pattern.compile(DEFAULT_TABLE_FILE_NAME_REGEX, Pattern.CASE_INSENSITIVE);
     private static final String ACCOUNTING_ENTRY_TABLE_NAME = "ACT";
     private static final String DBF_EXTENSION = ".dbf";
-    private static final DateTimeFormatter PERIOD_FORMATTER = DateTimeFormatter.ofPattern("ddMMyyyy");
+    private static final int DBF_SIGNATURE_HEADER_LENGTH = 12;
 
 
     private final WinbooksDocumentsService documentService = new WinbooksDocumentsService();
@@ -124,19 +138,71 @@ public class WinbooksExtraService {
         return WinbooksPathUtils.getLastModifiedTime(actPath);
     }
 
+    /**
+     * A cheap change signal for each tracked dossier table. A table signature changes whenever the table is written,
+     * as its size, last modification time or header change.
+     *
+     * @return opaque signatures, to be compared with previously returned ones. Missing tables have a signature too.
+     */
+    public Map<WinbooksDossierTable, String> getDossierTableSignatures(WinbooksFileConfiguration winbooksFileConfiguration) {
+        Path baseFolderPath = WinbooksPathUtils.getDossierBasePath(winbooksFileConfiguration);
+        Map<WinbooksDossierTable, String> signaturesByTable = new EnumMap<>(WinbooksDossierTable.class);
+        for (WinbooksDossierTable dossierTable : WinbooksDossierTable.values()) {
+            String tableName = dossierTable.getTableName();
+            String tableSignature = resolveTablePathOptional(winbooksFileConfiguration, baseFolderPath, tableName)
+                    .map(this::getTableSignature)
+                    .orElse(tableName + ":-");
+            signaturesByTable.put(dossierTable, tableSignature);
+        }
+        return signaturesByTable;
+    }
+
+    /**
+     * Streams the accounting entries of a single book year, from its archive when it is archived.
+     */
+    public Stream<WbEntry> streamBookYearAct(WinbooksFileConfiguration winbooksFileConfiguration, WbBookYearFull bookYearFull) {
+        WbEntryDbfReader wbEntryDbfReader = createWbEntryDbfReader(winbooksFileConfiguration);
+        return streamBookYearAct(winbooksFileConfiguration, wbEntryDbfReader, bookYearFull);
+    }
+
     public Path getDossierBasePath(WinbooksFileConfiguration fileConfiguration) {
         return WinbooksPathUtils.getDossierBasePath(fileConfiguration);
     }
 
+    /**
+     * Lists the dossier folder, the archive folders of its book years and their documents trees once, and attaches
+     * the resulting manifest to the configuration. Later path resolutions will be served from this manifest rather
+     * than by probing the filesystem.
+     * <p>
+     * Calling this method again replaces the manifest with a fresh one.
+     *
+     * @see WinbooksFileConfiguration#setDossierManifestOptional(Optional)
+     */
+    public WinbooksDossierManifest scanDossierManifest(WinbooksFileConfiguration winbooksFileConfiguration) {
+        winbooksFileConfiguration.setDossierManifestOptional(Optional.empty());
+        Path baseFolderPath = WinbooksPathUtils.getDossierBasePath(winbooksFileConfiguration);
+
+        WinbooksDossierScanner dossierScanner = new WinbooksDossierScanner();
+        WinbooksDossierManifest dossierManifest = dossierScanner.scanDossier(baseFolderPath);
+        // The param table is read from the manifest, archive paths are resolved against the filesystem
+        winbooksFileConfiguration.setDossierManifestOptional(Optional.of(dossierManifest));
+
+        Map<String, Optional<Path>> archivePaths = new HashMap<>();
+        if (winbooksFileConfiguration.isResolveArchivedBookYears()) {
+            streamBookYears(winbooksFileConfiguration)
+                    .forEach(bookYear -> bookYear.getArchivePathNameOptional()
+                            .ifPresent(archivePathName -> archivePaths.put(archivePathName,
+                                    WinbooksPathUtils.resolveBookYearArchivePath(winbooksFileConfiguration, bookYear))));
+        }
+        WinbooksDossierManifest fullDossierManifest = dossierScanner.scanArchives(dossierManifest, archivePaths);
+        winbooksFileConfiguration.setDossierManifestOptional(Optional.of(fullDossierManifest));
+        return fullDossierManifest;
+    }
+
     public Stream<WbEntry> streamAct(WinbooksFileConfiguration winbooksFileConfiguration) {
         List<WbBookYearFull> wbBookYearFullList = streamBookYears(winbooksFileConfiguration)
                 .collect(Collectors.toList());
-        boolean resolveUnmappedPeriodFromEntryDate = winbooksFileConfiguration.isResolveUnmappedPeriodFromEntryDate();
-
-        PeriodResolver periodResolver = new PeriodResolver(resolveUnmappedPeriodFromEntryDate);
-        periodResolver.init(wbBookYearFullList);
-        WbEntryDbfReader wbEntryDbfReader = new WbEntryDbfReader(periodResolver);
-
+        WbEntryDbfReader wbEntryDbfReader = createWbEntryDbfReader(winbooksFileConfiguration, wbBookYearFullList);
 
         return wbBookYearFullList.stream()
                 .flatMap(year -> this.streamBookYearAct(winbooksFileConfiguration, wbEntryDbfReader, year));
@@ -160,16 +226,104 @@ public class WinbooksExtraService {
         return documentService.streamBookYearDocuments(fileConfiguration, bookYear);
     }
 
+    /**
+     * Streams the documents of a single dbk folder of a book year.
+     */
+    public Stream<WbDocument> streamBookYearDbkDocuments(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear, String dbkCode) {
+        return documentService.streamBookYearDbkDocuments(fileConfiguration, bookYear, dbkCode);
+    }
+
+    /**
+     * Streams the documents of all provided book years, listing their folders concurrently.
+     *
+     * @see WinbooksFileConfiguration#setDocumentScanParallelism(int)
+     */
+    public Stream<WbDocument> streamBookYearsDocuments(WinbooksFileConfiguration fileConfiguration, List<WbBookYearFull> bookYears) {
+        return documentService.streamBookYearsDocuments(fileConfiguration, bookYears);
+    }
+
+    /**
+     * Writes all documents of a book year period as a zip archive, with one entry per document: '{dbk}/{number}.pdf'.
+     * Contents are copied to the output stream as they are read, which is left open.
+     *
+     * @param dbkCodeOptional Only export documents of this dbk, when present.
+     * @return the number of exported documents
+     */
+    public int writePeriodDocumentsZip(WinbooksFileConfiguration fileConfiguration, WbBookYearFull bookYear, WbPeriod period,
+                                       Optional<String> dbkCodeOptional, OutputStream outputStream) {
+        return documentService.writePeriodDocumentsZip(fileConfiguration, bookYear, period, dbkCodeOptional, outputStream);
+    }
+
     public Optional<byte[]> getDocumentData(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
         return documentService.getDocumentData(fileConfiguration, document);
     }
 
+    /**
+     * Writes the document content to the output stream. Single-part documents are copied as-is, multi-part
+     * documents are merged while being written. Merged documents do not keep the interactive forms of their parts.
+     *
+     * @return false if the document could not be found
+     */
+    public boolean getDocumentContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, OutputStream outputStream) {
+        return documentService.writeDocumentContent(fileConfiguration, document, outputStream);
+    }
+
+    /**
+     * Opens the document content for reading. The returned stream must be closed.
+     */
+    public Optional<InputStream> openDocumentContent(WinbooksFileConfiguration fileConfiguration, WbDocument document) {
+        return documentService.openDocumentContent(fileConfiguration, document);
+    }
+
+    /**
+     * Writes a single part of the document, as stored, without reading the other parts.
+     *
+     * @param partIndex The part index, from 0 to the document part count, exclusive.
+     * @return false if the part could not be found
+     */
+    public boolean getDocumentPartContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, int partIndex, OutputStream outputStream) {
+        return documentService.writeDocumentPartContent(fileConfiguration, document, partIndex, outputStream);
+    }
+
+    /**
+     * Opens a single part of the document for reading. The returned stream must be closed.
+     *
+     * @param partIndex The part index, from 0 to the document part count, exclusive.
+     */
+    public Optional<InputStream> openDocumentPartContent(WinbooksFileConfiguration fileConfiguration, WbDocument document, int partIndex) {
+        return documentService.openDocumentPartContent(fileConfiguration, document, partIndex);
+    }
+
+    /**
+     * Writes a range of pages of the document, numbered across all its parts. Parts after the last page are not read.
+     * As for merged documents, the interactive forms of the parts are not kept.
+     *
+     * @param firstPageNumber The first page, starting from 1.
+     * @param lastPageNumber  The last page, inclusive.
+     * @return false if no page of the range could be found
+     */
+    public boolean getDocumentPagesContent(WinbooksFileConfiguration fileConfiguration, WbDocument document,
+                                           int firstPageNumber, int lastPageNumber, OutputStream outputStream) {
+        return documentService.writeDocumentPagesContent(fileConfiguration, document, firstPageNumber, lastPageNumber, outputStream);
+    }
+
+    /**
+     * Opens a range of pages of the document for reading. The returned stream must be closed.
+     *
+     * @see #getDocumentPagesContent(WinbooksFileConfiguration, WbDocument, int, int, OutputStream)
+     */
+    public Optional<InputStream> openDocumentPagesContent(WinbooksFileConfiguration fileConfiguration, WbDocument document,
+                                                          int firstPageNumber, int lastPageNumber) {
+        return documentService.openDocumentPagesContent(fileConfiguration, document, firstPageNumber, lastPageNumber);
+    }
+
 
     public Stream<WbBookYearFull> streamBookYears(WinbooksFileConfiguration winbooksFileConfiguration) {
         //TODO: currently, we can findWbBookYearFull more info out of the badly structured param table
 
         // fall-back: a lot of customers seem not to have table above
-        Stream<WbBookYearFull> bookYearsFromParamsTables = listBookYearsFromParamTable(winbooksFileConfiguration).stream();
+        Stream<WbBookYearFull> bookYearsFromParamsTables = getDossierMetadata(winbooksFileConfiguration).getBookYears().stream()
+                .filter(wbBookYearFull -> isBookYearStartAllowed(winbooksFileConfiguration, wbBookYearFull));
 //        if (tableExistsForCurrentBookYear(winbooksFileConfiguration, BOOKYEARS_TABLE_NAME)) {
 //            Stream<WbBookYearFull> bookyearStream = streamBookYearsFromBookYearsTable(winbooksFileConfiguration);
 //            return Stream.concat(bookYearsFromParamsTables, bookyearStream)
@@ -180,11 +334,36 @@ public class WinbooksExtraService {
     }
 
     public int getAccountNumberLengthFromParamsTable(WinbooksFileConfiguration winbooksFileConfiguration) {
-        Map<String, String> paramMap = getParamMap(winbooksFileConfiguration);
-        String accountPictureValueNullable = paramMap.get("AccountPicture");
-        return Optional.ofNullable(accountPictureValueNullable)
-                .flatMap(this::getAccountNumberLengthFromAccountPictureParamValue)
-                .orElse(ACCOUNT_NUMBER_DEFAULT_LENGTH);
+        return getDossierMetadata(winbooksFileConfiguration).getAccountNumberLength();
+    }
+
+    /**
+     * Parses the param table once per configuration. The parsed metadata is kept on the configuration, and parsed
+     * again only once the param table size or last modification time changes. Checking them does not open the table.
+     *
+     * @param winbooksFileConfiguration
+     * @return the metadata, shared with every other caller of this configuration.
+     */
+    public WinbooksDossierMetadata getDossierMetadata(WinbooksFileConfiguration winbooksFileConfiguration) {
+        Path baseFolderPath = WinbooksPathUtils.getDossierBasePath(winbooksFileConfiguration);
+        Path paramTablePath = resolveTablePathOrThrow(winbooksFileConfiguration, baseFolderPath, PARAM_TABLE_NAME);
+        String paramTableSignature = getTableFileStamp(paramTablePath);
+        Optional<WinbooksDossierMetadata> currentMetadataOptional = winbooksFileConfiguration.getDossierMetadataOptional()
+                .filter(metadata -> metadata.getParamTableSignature().equals(paramTableSignature));
+        if (currentMetadataOptional.isPresent()) {
+            return currentMetadataOptional.get();
+        }
+        synchronized (winbooksFileConfiguration) {
+            // Another caller may just have parsed it
+            Optional<WinbooksDossierMetadata> parsedMetadataOptional = winbooksFileConfiguration.getDossierMetadataOptional()
+                    .filter(metadata -> metadata.getParamTableSignature().equals(paramTableSignature));
+            if (parsedMetadataOptional.isPresent()) {
+                return parsedMetadataOptional.get();
+            }
+            WinbooksDossierMetadata dossierMetadata = readDossierMetadata(winbooksFileConfiguration, paramTablePath, paramTableSignature);
+            winbooksFileConfiguration.setDossierMetadataOptional(Optional.of(dossierMetadata));
+            return dossierMetadata;
+        }
     }
 
     /**
@@ -196,6 +375,239 @@ public class WinbooksExtraService {
      * @return the resolved path, which might just have been created
      */
     public Path createDirectories(WinbooksFileConfiguration fileConfiguration, Path path) {
+        return createDirectories(fileConfiguration, path, new HashMap<>());
+    }
+
+    /**
+     * Writes files concurrently, according to the configured document upload parallelism. Parent directories are
+     * created as by {@link #createDirectories(WinbooksFileConfiguration, Path)}, each of them once for the whole
+     * batch. Each file is written to a temporary file first, then moved to its name, so that readers never see
+     * partial files. Input streams are not closed.
+     * <p>
+     * When upload fingerprints are enabled, files whose content is already present at their path are not written.
+     * <p>
+     * Nothing is written when two paths resolve to the same file, for instance names differing only in case when
+     * case insensitive siblings are resolved.
+     *
+     * @param inputStreamsByPath File contents, by file path
+     * @return the written file paths, by requested file path
+     * @see WinbooksFileConfiguration#setDocumentUploadParallelism(int)
+     * @see WinbooksFileConfiguration#setDocumentUploadFingerprints(boolean)
+     */
+    public Map<Path, Path> writeFiles(WinbooksFileConfiguration fileConfiguration, Map<Path, InputStream> inputStreamsByPath) {
+        long time0 = System.currentTimeMillis();
+        boolean documentUploadFingerprints = fileConfiguration.isDocumentUploadFingerprints();
+
+        Map<Path, Path> knownDirectoryPaths = new HashMap<>();
+        Map<Path, WinbooksFingerprintSidecar> sidecarsByDirectoryPath = new HashMap<>();
+        Map<Path, Path> writtenPathsByPath = new LinkedHashMap<>();
+        // Requested paths by written file, to reject concurrent writes of a single file
+        Map<Path, Path> pathsByWrittenFileKey = new HashMap<>();
+        for (Path path : inputStreamsByPath.keySet()) {
+            Path directoryPath = createDirectories(fileConfiguration, path.getParent(), knownDirectoryPaths);
+            String fileName = path.getFileName().toString();
+            Path writtenPath = directoryPath.resolve(fileName);
+            Path writtenFileKey = getWrittenFileKey(fileConfiguration, writtenPath);
+            Path otherPathNullable = pathsByWrittenFileKey.putIfAbsent(writtenFileKey, path);
+            if (otherPathNullable != null) {
+                throw new WinbooksException(WinbooksError.INVALID_PARAMETER, "Paths " + otherPathNullable + " and " + path + " resolve to the same file " + writtenPath);
+            }
+            writtenPathsByPath.put(path, writtenPath);
+            if (documentUploadFingerprints) {
+                sidecarsByDirectoryPath.computeIfAbsent(directoryPath, WinbooksFingerprintSidecar::load);
+            }
+        }
+
+        int threadCount = Math.min(fileConfiguration.getDocumentUploadParallelism(), writtenPathsByPath.size());
+        ExecutorService executorService = WinbooksConcurrentUtils.createExecutorService(Math.max(1, threadCount), "winbooks-document-upload");
+        long skippedCount;
+        try {
+            List<Future<Boolean>> writeFutures = writtenPathsByPath.entrySet().stream()
+                    .map(pathEntry -> {
+                        InputStream inputStream = inputStreamsByPath.get(pathEntry.getKey());
+                        Path writtenPath = pathEntry.getValue();
+                        Optional<WinbooksFingerprintSidecar> sidecarOptional = Optional.ofNullable(sidecarsByDirectoryPath.get(writtenPath.getParent()));
+                        return executorService.submit(() -> writeFile(inputStream, writtenPath, sidecarOptional));
+                    })
+                    .collect(Collectors.toList());
+            skippedCount = writeFutures.stream()
+                    .map(WinbooksConcurrentUtils::getTaskResult)
+                    .filter(written -> !written)
+                    .count();
+        } finally {
+            executorService.shutdownNow();
+            // Keep fingerprints of the files written so far
+            sidecarsByDirectoryPath.values().forEach(WinbooksFingerprintSidecar::save);
+            dropChangedManifestDirectories(fileConfiguration, writtenPathsByPath.values());
+        }
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("WRITE files (" + writtenPathsByPath.size() + " files, " + skippedCount + " unchanged, " + knownDirectoryPaths.size() + " directories): " + deltaTime);
+
+        return writtenPathsByPath;
+    }
+
+    /**
+     * Drops the listings of the directories of written files from the dossier manifest, as well as those of their
+     * ancestors which did not list the created directories.
+     */
+    private void dropChangedManifestDirectories(WinbooksFileConfiguration fileConfiguration, Collection<Path> writtenPaths) {
+        synchronized (fileConfiguration) {
+            Optional<WinbooksDossierManifest> dossierManifestOptional = fileConfiguration.getDossierManifestOptional();
+            if (dossierManifestOptional.isEmpty()) {
+                return;
+            }
+            WinbooksDossierManifest dossierManifest = dossierManifestOptional.get();
+            Set<Path> changedDirectoryPaths = new HashSet<>();
+            for (Path writtenPath : writtenPaths) {
+                changedDirectoryPaths.add(writtenPath.getParent());
+                Path childPath = writtenPath.getParent();
+                Path parentPath = childPath.getParent();
+                while (parentPath != null && dossierManifest.getEntryOptional(childPath).isEmpty()) {
+                    changedDirectoryPaths.add(parentPath);
+                    childPath = parentPath;
+                    parentPath = parentPath.getParent();
+                }
+            }
+            boolean scannedDirectoryChanged = changedDirectoryPaths.stream()
+                    .anyMatch(dossierManifest::isScannedDirectory);
+            if (scannedDirectoryChanged) {
+                fileConfiguration.setDossierManifestOptional(Optional.of(dossierManifest.withoutDirectories(changedDirectoryPaths)));
+            }
+        }
+    }
+
+    private Path getWrittenFileKey(WinbooksFileConfiguration fileConfiguration, Path writtenPath) {
+        if (!fileConfiguration.isResolveCaseInsensitiveSiblings()) {
+            return writtenPath;
+        }
+        String fileName = writtenPath.getFileName().toString();
+        return writtenPath.resolveSibling(fileName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Writes a single file on the calling thread, as {@link #writeFiles(WinbooksFileConfiguration, Map)} would. The
+     * input stream is not closed.
+     *
+     * @return the written file path
+     */
+    public Path writeFile(WinbooksFileConfiguration fileConfiguration, Path path, InputStream inputStream) {
+        long time0 = System.currentTimeMillis();
+        Path directoryPath = createDirectories(fileConfiguration, path.getParent());
+        String fileName = path.getFileName().toString();
+        Path writtenPath = directoryPath.resolve(fileName);
+        Optional<WinbooksFingerprintSidecar> sidecarOptional = Optional.empty();
+        if (fileConfiguration.isDocumentUploadFingerprints()) {
+            sidecarOptional = Optional.of(WinbooksFingerprintSidecar.load(directoryPath));
+        }
+        boolean written;
+        try {
+            written = writeFile(inputStream, writtenPath, sidecarOptional);
+        } finally {
+            sidecarOptional.ifPresent(WinbooksFingerprintSidecar::save);
+            dropChangedManifestDirectories(fileConfiguration, List.of(writtenPath));
+        }
+
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("WRITE file (" + (written ? "written" : "unchanged") + "): " + deltaTime);
+
+        return writtenPath;
+    }
+
+    /**
+     * @return the fingerprints recorded by uploads for files of this directory, by file path. Files modified since
+     * they were uploaded are omitted.
+     */
+    public Map<Path, WinbooksFileFingerprint> getFileFingerprints(WinbooksFileConfiguration fileConfiguration, Path directoryPath) {
+        WinbooksFingerprintSidecar sidecar = WinbooksFingerprintSidecar.load(directoryPath);
+        Map<Path, WinbooksFileFingerprint> fingerprintsByPath = new LinkedHashMap<>();
+        WinbooksPathUtils.streamDirectoryFiles(fileConfiguration, directoryPath, path -> true)
+                .forEach(fileEntry -> sidecar.findFingerprint(fileEntry.getName(), fileEntry.getLastModifiedTime(), fileEntry.getSize())
+                        .ifPresent(fingerprint -> fingerprintsByPath.put(fileEntry.getPath(), fingerprint)));
+        return fingerprintsByPath;
+    }
+
+    /**
+     * @return false if the file content was already present
+     */
+    private boolean writeFile(InputStream inputStream, Path path, Optional<WinbooksFingerprintSidecar> sidecarOptional) {
+        try {
+            if (sidecarOptional.isEmpty()) {
+                writeFileContent(inputStream, path);
+                return true;
+            }
+            WinbooksFingerprintSidecar sidecar = sidecarOptional.get();
+            Optional<WinbooksFileFingerprint> existingFingerprintOptional = findExistingFingerprint(sidecar, path);
+            if (existingFingerprintOptional.isEmpty()) {
+                writeFingerprintedFileContent(inputStream, path, sidecar);
+                return true;
+            }
+
+            // Fingerprint a local copy first, not to transfer anything when unchanged
+            Path localCopyPath = Files.createTempFile("winbooks-upload-", ".tmp");
+            try {
+                WinbooksFileFingerprint fingerprint = copyFingerprinting(inputStream, localCopyPath);
+                if (existingFingerprintOptional.get().equals(fingerprint)) {
+                    return false;
+                }
+                try (InputStream localCopyInputStream = Files.newInputStream(localCopyPath)) {
+                    writeFingerprintedFileContent(localCopyInputStream, path, sidecar);
+                }
+                return true;
+            } finally {
+                Files.deleteIfExists(localCopyPath);
+            }
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
+
+    private Optional<WinbooksFileFingerprint> findExistingFingerprint(WinbooksFingerprintSidecar sidecar, Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String fileName = path.getFileName().toString();
+        return sidecar.findFingerprint(fileName, attributes.lastModifiedTime(), attributes.size());
+    }
+
+    private void writeFingerprintedFileContent(InputStream inputStream, Path path, WinbooksFingerprintSidecar sidecar) throws IOException {
+        Path temporaryPath = Files.createTempFile(path.getParent(), ".upload-", ".tmp");
+        try {
+            WinbooksFileFingerprint fingerprint = copyFingerprinting(inputStream, temporaryPath);
+            WinbooksPathUtils.moveReplacing(temporaryPath, path);
+            FileTime lastModifiedTime = Files.getLastModifiedTime(path);
+            String fileName = path.getFileName().toString();
+            sidecar.putFingerprint(fileName, lastModifiedTime, fingerprint);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private void writeFileContent(InputStream inputStream, Path path) throws IOException {
+        Path temporaryPath = Files.createTempFile(path.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(inputStream, temporaryPath, StandardCopyOption.REPLACE_EXISTING);
+            WinbooksPathUtils.moveReplacing(temporaryPath, path);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private WinbooksFileFingerprint copyFingerprinting(InputStream inputStream, Path path) throws IOException {
+        // The digest stream is not closed: the input stream belongs to the caller
+        MessageDigest messageDigest = WinbooksFileFingerprint.createMessageDigest();
+        DigestInputStream digestInputStream = new DigestInputStream(inputStream, messageDigest);
+        long size = Files.copy(digestInputStream, path, StandardCopyOption.REPLACE_EXISTING);
+        return WinbooksFileFingerprint.of(size, messageDigest);
+    }
+
+    /**
+     * @param knownDirectoryPaths Directories resolved or created so far, by requested path. Updated.
+     */
+    private Path createDirectories(WinbooksFileConfiguration fileConfiguration, Path path, Map<Path, Path> knownDirectoryPaths) {
         // To handle ftp errors, create directories at each level after checking it does not exist yet
         boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
         Path rootPath = fileConfiguration.getRootPath();
@@ -206,14 +618,22 @@ public class WinbooksExtraService {
         }
 
         Path curPath = rootPath;
+        Path curRequestedPath = rootPath;
         int pathNameCount = relativePath.getNameCount();
 
         for (int nameIndex = 0; nameIndex < pathNameCount; nameIndex++) {
             Path nextName = relativePath.getName(nameIndex);
+            curRequestedPath = curRequestedPath.resolve(nextName.toString());
+            Path knownPathNullable = knownDirectoryPaths.get(curRequestedPath);
+            if (knownPathNullable != null) {
+                curPath = knownPathNullable;
+                continue;
+            }
             final Path currentPathImmutable = curPath;
             curPath = WinbooksPathUtils.resolvePath(curPath, nextName.toString(), resolveCaseInsensitiveSiblings)
                     .map(this::ensurePathIsDirectory)
                     .orElseGet(() -> this.createDirectory(currentPathImmutable, nextName));
+            knownDirectoryPaths.put(curRequestedPath, curPath);
         }
         return curPath;
     }
@@ -244,8 +664,31 @@ public class WinbooksExtraService {
         return DbfUtils.streamDbf(tableInputStream, charset);
     }
 
-    private Stream<WbEntry> streamBookYearAct(WinbooksFileConfiguration winbooksFileConfiguration,
-                                              WbEntryDbfReader dbfReader, WbBookYearFull bookYearFull) {
+    private WbEntryDbfReader createWbEntryDbfReader(WinbooksFileConfiguration winbooksFileConfiguration) {
+        List<WbBookYearFull> wbBookYearFullList = streamBookYears(winbooksFileConfiguration)
+                .collect(Collectors.toList());
+        return createWbEntryDbfReader(winbooksFileConfiguration, wbBookYearFullList);
+    }
+
+    /**
+     * Creates a reader resolving the periods of these book years, to be shared by the streams of several book years.
+     *
+     * @see #streamBookYearAct(WinbooksFileConfiguration, WbEntryDbfReader, WbBookYearFull)
+     */
+    public WbEntryDbfReader createWbEntryDbfReader(WinbooksFileConfiguration winbooksFileConfiguration, List<WbBookYearFull> wbBookYearFullList) {
+        boolean resolveUnmappedPeriodFromEntryDate = winbooksFileConfiguration.isResolveUnmappedPeriodFromEntryDate();
+
+        PeriodResolver periodResolver = new PeriodResolver(resolveUnmappedPeriodFromEntryDate);
+        periodResolver.init(wbBookYearFullList);
+        return new WbEntryDbfReader(periodResolver);
+    }
+
+    /**
+     * Streams the accounting entries of a single book year, from its archive when it is archived, reading them with
+     * a reader shared with other book years.
+     */
+    public Stream<WbEntry> streamBookYearAct(WinbooksFileConfiguration winbooksFileConfiguration,
+                                             WbEntryDbfReader dbfReader, WbBookYearFull bookYearFull) {
         Optional<Path> bookYearBasePath = WinbooksPathUtils.getBookYearBasePath(winbooksFileConfiguration, bookYearFull);
         return streamOptional(bookYearBasePath)
                 .flatMap(basePath -> streamTable(winbooksFileConfiguration, basePath, ACCOUNTING_ENTRY_TABLE_NAME))
@@ -262,82 +705,67 @@ public class WinbooksExtraService {
                 .orElse(false);
     }
 
-    private List<WbBookYearFull> listBookYearsFromParamTable(WinbooksFileConfiguration winbooksFileConfiguration) {
-        Map<String, String> paramMap = getParamMap(winbooksFileConfiguration);
-
-        List<WbBookYearFull> wbBookYearFullList = new ArrayList<>();
+    private WinbooksDossierMetadata readDossierMetadata(WinbooksFileConfiguration winbooksFileConfiguration, Path paramTablePath,
+                                                        String paramTableSignature) {
+        long time0 = System.currentTimeMillis();
 
-        String bookYearCountStr = paramMap.get("BOOKYEARCOUNT");
-        int bookYearCount = Integer.parseInt(bookYearCountStr);
-        for (int i = 1; i <= bookYearCount; i++) {
-            String bookYearParamPrefix = "BOOKYEAR" + i;
-            // some book year data may not be present in archived dossiers
-            long bookyearKeysCount = paramMap.keySet().stream()
-                    .filter(k -> k.startsWith(bookYearParamPrefix))
-                    .count();
-            if (bookyearKeysCount == 0) {
-                continue;
-            }
-            String bookYearLongLabel = paramMap.get(bookYearParamPrefix + "." + "LONGLABEL");
-            String bookYearShortLabel = paramMap.get(bookYearParamPrefix + "." + "SHORTLABEL");
-            String archivePathName = paramMap.get(bookYearParamPrefix + "." + "PATHARCH");
-            Optional<String> archivePathNameOptional = Optional.ofNullable(archivePathName);
-
-            String perDatesStr = paramMap.get(bookYearParamPrefix + "." + "PERDATE");
-            List<LocalDate> periodDates = parsePeriodDates(perDatesStr);
-
-            int periodCount = periodDates.size() - 2;
-            int durationInMonths = 12 / periodCount;
-
-            String concatenatedPeriodNames = paramMap.get(bookYearParamPrefix + "." + "PERLIB1");
-            List<String> periodNames = parsePeriodNames(concatenatedPeriodNames);
-
-            List<WbPeriod> wbPeriodList = convertWinbooksPeriods(periodNames, periodDates, durationInMonths);
-
-            LocalDate startDate = periodDates.stream()
-                    .findFirst()
-                    .orElseThrow(IllegalArgumentException::new);
-            LocalDate endDate = periodDates.stream()
-                    .max(LocalDate::compareTo)
-                    .map(date -> date.plusDays(1)) // exclusive upper bound is day after
-                    .orElseThrow(IllegalArgumentException::new);
-            boolean bookYearMinStartViolated = winbooksFileConfiguration.getBookYearStartMinDateOptional()
-                    .map(minStartDate -> minStartDate.isAfter(startDate))
-                    .orElse(false);
-            boolean bookYearMaxStartViolated = winbooksFileConfiguration.getBookYearStartMaxDateOptional()
-                    .map(maxStartDate -> maxStartDate.isBefore(startDate))
-                    .orElse(false);
-            if (bookYearMinStartViolated || bookYearMaxStartViolated) {
-                continue;
-            }
-
-            int startYear = startDate.getYear();
-            int endYear = endDate.getYear();
-
-            String statusStrNullable = paramMap.get(bookYearParamPrefix + "." + "STATUS");
-
-            WbBookYearFull wbBookYearFull = new WbBookYearFull();
-            wbBookYearFull.setLongName(bookYearLongLabel);
-            wbBookYearFull.setShortName(bookYearShortLabel);
-            wbBookYearFull.setArchivePathNameOptional(archivePathNameOptional);
-            wbBookYearFull.setIndex(i);
-            wbBookYearFull.setStartDate(startDate);
-            wbBookYearFull.setEndDate(endDate);
-            wbBookYearFull.setYearBeginInt(startYear);
-            wbBookYearFull.setYearEndInt(endYear);
-            wbBookYearFull.setPeriods(periodCount);
-            wbBookYearFull.setPeriodList(wbPeriodList);
+        Map<String, String> paramMap = readParamMap(winbooksFileConfiguration, paramTablePath);
+        List<WbBookYearFull> bookYears = new WbBookYearParamsParser().parseBookYears(paramMap);
+        int accountNumberLength = Optional.ofNullable(paramMap.get("AccountPicture"))
+                .flatMap(this::getAccountNumberLengthFromAccountPictureParamValue)
+                .orElse(ACCOUNT_NUMBER_DEFAULT_LENGTH);
+        WinbooksDossierMetadata dossierMetadata = new WinbooksDossierMetadata(paramTableSignature, paramMap, bookYears, accountNumberLength);
 
-            wbPeriodList.forEach(wbPeriod -> wbPeriod.setWbBookYearFull(wbBookYearFull));
+        long time1 = System.currentTimeMillis();
+        long deltaTime = time1 - time0;
+        LOGGER.finer("PARSE dossier metadata (" + paramTablePath + "): " + deltaTime);
+        return dossierMetadata;
+    }
 
-            Optional.ofNullable(statusStrNullable)
-                    .flatMap(WbBookYearStatus::fromValueStr)
-                    .ifPresent(wbBookYearFull::setWbBookYearStatus);
+    /**
+     * @return the table path, size and last modification time.
+     */
+    private String getTableFileStamp(Path tablePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(tablePath, BasicFileAttributes.class);
+            return tablePath + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+    }
 
-            wbBookYearFullList.add(wbBookYearFull);
+    /**
+     * @return the table file stamp, along with its dbf header.
+     */
+    private String getTableSignature(Path tablePath) {
+        try {
+            String tableFileStamp = getTableFileStamp(tablePath);
+            byte[] headerBytes;
+            try (InputStream inputStream = Files.newInputStream(tablePath)) {
+                headerBytes = inputStream.readNBytes(DBF_SIGNATURE_HEADER_LENGTH);
+            }
+            StringBuilder signatureBuilder = new StringBuilder()
+                    .append(tableFileStamp)
+                    .append(':');
+            for (byte headerByte : headerBytes) {
+                signatureBuilder.append(Character.forDigit((headerByte >> 4) & 0xF, 16));
+                signatureBuilder.append(Character.forDigit(headerByte & 0xF, 16));
+            }
+            return signatureBuilder.toString();
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
         }
+    }
 
-        return wbBookYearFullList;
+    private boolean isBookYearStartAllowed(WinbooksFileConfiguration winbooksFileConfiguration, WbBookYearFull wbBookYearFull) {
+        LocalDate startDate = wbBookYearFull.getStartDate();
+        boolean bookYearMinStartViolated = winbooksFileConfiguration.getBookYearStartMinDateOptional()
+                .map(minStartDate -> minStartDate.isAfter(startDate))
+                .orElse(false);
+        boolean bookYearMaxStartViolated = winbooksFileConfiguration.getBookYearStartMaxDateOptional()
+                .map(maxStartDate -> maxStartDate.isBefore(startDate))
+                .orElse(false);
+        return !bookYearMinStartViolated && !bookYearMaxStartViolated;
     }
 
     private Optional<Integer> getAccountNumberLengthFromAccountPictureParamValue(String accountPictureValue) {
@@ -370,9 +798,10 @@ public class WinbooksExtraService {
                 .orElseGet(Stream::empty);
     }
 
-    private Map<String, String> getParamMap(WinbooksFileConfiguration winbooksFileConfiguration) {
-        Path baseFolderPath = WinbooksPathUtils.getDossierBasePath(winbooksFileConfiguration);
-        return streamTable(winbooksFileConfiguration, baseFolderPath, PARAM_TABLE_NAME)
+    private Map<String, String> readParamMap(WinbooksFileConfiguration winbooksFileConfiguration, Path paramTablePath) {
+        InputStream tableInputStream = getFastInputStream(winbooksFileConfiguration, paramTablePath);
+        Charset charset = winbooksFileConfiguration.getCharset();
+        return DbfUtils.streamDbf(tableInputStream, charset)
                 .map(new WbParamDbfReader()::readWbParamFromDbfRecord)
                 .filter(wbParam -> wbParam.getValue() != null)
                 .collect(Collectors.toMap(WbParam::getId, WbParam::getValue, (id1, id2) -> id2));
@@ -390,70 +819,6 @@ public class WinbooksExtraService {
     }
 
 
-    private List<WbPeriod> convertWinbooksPeriods(List<String> periodNames, List<LocalDate> periodDates, int durationInMonths) {
-        int periodCount = periodNames.size();
-        if (periodDates.size() != periodCount) {
-            throw new WinbooksException(WinbooksError.PERIOD_DATE_MISMATCH, "Different sizes for period names and period dates.");
-        }
-
-        List<WbPeriod> periods = new ArrayList<>();
-        for (int i = 0; i < periodCount; i++) {
-            String periodName = periodNames.get(i);
-            LocalDate periodStartDate = periodDates.get(i);
-            LocalDate periodEndDate = periodStartDate.plusMonths(durationInMonths);
-
-            WbPeriod period = new WbPeriod();
-            period.setStartDate(periodStartDate);
-            period.setEndDate(periodEndDate);
-            period.setShortName(periodName);
-            period.setIndex(i);
-
-            periods.add(period);
-        }
-
-        WbPeriod lasterWbPeriod = periods.get(periodCount - 1);
-        lasterWbPeriod.setIndex(99);
-
-        return periods;
-    }
-
-    private List<String> parsePeriodNames(String concatenatedPeriodNames) {
-        List<String> periodNames = new ArrayList<>();
-
-        int length = concatenatedPeriodNames.length();
-        for (int i = 0; i + 8 <= length; i += 8) {
-            String periodName = concatenatedPeriodNames.substring(i, i + 8);
-            periodNames.add(periodName);
-        }
-
-        return periodNames;
-    }
-
-    private List<LocalDate> parsePeriodDates(String allPeriodDatesStr) {
-        List<LocalDate> periodDates = new ArrayList<>();
-        int allPeriodLength = allPeriodDatesStr.length();
-        int i = 0;
-        while (i < allPeriodLength) {
-            char currentChar = allPeriodDatesStr.charAt(i);
-            if (currentChar == ' ') {
-                i++;
-                continue;
-            }
-            String periodDateStr = allPeriodDatesStr.substring(i, i + 8);
-            LocalDate periodDate = LocalDate.parse(periodDateStr, PERIOD_FORMATTER);
-
-            if (i == allPeriodLength - 1) {
-                periodDate = periodDate.plusDays(1);
-            }
-
-            periodDates.add(periodDate);
-            i += 8;
-        }
-
-        return periodDates;
-    }
-
-
     private String getPathFileNameString(Path archiveFolderPath) {
         return Optional.ofNullable(archiveFolderPath.getFileName())
                 .map(Path::toString)
@@ -488,16 +853,14 @@ public class WinbooksExtraService {
         String baseName = winbooksFileConfiguration.getWinbooksCompanyName();
         String tableFileName = getTableFileName(baseName, tableName);
         Path baseFolderPath = WinbooksPathUtils.getDossierBasePath(winbooksFileConfiguration);
-        boolean resolveCaseInsensitiveSiblings = winbooksFileConfiguration.isResolveCaseInsensitiveSiblings();
-        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(baseFolderPath, tableFileName, resolveCaseInsensitiveSiblings);
+        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(winbooksFileConfiguration, baseFolderPath, tableFileName);
         return tablePathOptional.isPresent();
     }
 
     private Optional<Path> resolveTablePathWithCompanyBaseNameOptional(WinbooksFileConfiguration winbooksFileConfiguration, Path basePath, String tableName) {
         String baseName = winbooksFileConfiguration.getWinbooksCompanyName();
         String tableFileName = getTableFileName(baseName, tableName);
-        boolean resolveCaseInsensitiveSiblings = winbooksFileConfiguration.isResolveCaseInsensitiveSiblings();
-        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(basePath, tableFileName, resolveCaseInsensitiveSiblings);
+        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(winbooksFileConfiguration, basePath, tableFileName);
         return tablePathOptional;
     }
 
@@ -510,8 +873,7 @@ public class WinbooksExtraService {
             String yearPart = matcher.group(1);
             String baseNameWithYearSufix = baseName + "-" + yearPart;
             String tableFileName = getTableFileName(baseNameWithYearSufix, tableName);
-            boolean resolveCaseInsensitiveSiblings = winbooksFileConfiguration.isResolveCaseInsensitiveSiblings();
-            Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(basePath, tableFileName, resolveCaseInsensitiveSiblings);
+            Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(winbooksFileConfiguration, basePath, tableFileName);
             return tablePathOptional;
         } else {
             return Optional.empty();
@@ -521,20 +883,23 @@ public class WinbooksExtraService {
     private Optional<Path> resolveTablePathWithPathFilenameAsBaseNameOptional(WinbooksFileConfiguration winbooksFileConfiguration, Path basePath, String tableName) {
         String baseName = basePath.getFileName().toString();
         String tableFileName = getTableFileName(baseName, tableName);
-        boolean resolveCaseInsensitiveSiblings = winbooksFileConfiguration.isResolveCaseInsensitiveSiblings();
-        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(basePath, tableFileName, resolveCaseInsensitiveSiblings);
+        Optional<Path> tablePathOptional = WinbooksPathUtils.resolvePath(winbooksFileConfiguration, basePath, tableFileName);
         return tablePathOptional;
     }
 
+    private Optional<Path> resolveTablePathOptional(WinbooksFileConfiguration winbooksFileConfiguration, Path basePath, String tableName) {
+        return resolveTablePathWithPathFilenameAsBaseNameOptional(winbooksFileConfiguration, basePath, tableName)
+                .or(() -> resolveTablePathWithCompanyBaseNameOptional(winbooksFileConfiguration, basePath, tableName))
+                .or(() -> resolveTablePathWithCompanyBaseNameButKeepingYearSuffixOptional(winbooksFileConfiguration, basePath, tableName));
+    }
+
     private Path resolveTablePathOrThrow(WinbooksFileConfiguration winbooksFileConfiguration, Path basePath, String tableName) {
         // With a basePath COMPANY-SOMETHING-2013, a company base name COMPANY, and a table name 'table',
         // try to resolve /COMPANY-SOMETHING-2013/COMPANY-SOMETHING-2013_table.dbf,
         // then try to resolve /COMPANY-SOMETHING-2013/COMPANY_table.dbf,
         // then try to resolve /COMPANY-SOMETHING-2013/COMPANY-2013_table.dbf, (Seems like a workaround for dossier not properly named)
         // otherwise throw.
-        return resolveTablePathWithPathFilenameAsBaseNameOptional(winbooksFileConfiguration, basePath, tableName)
-                .or(() -> resolveTablePathWithCompanyBaseNameOptional(winbooksFileConfiguration, basePath, tableName))
-                .or(() -> resolveTablePathWithCompanyBaseNameButKeepingYearSuffixOptional(winbooksFileConfiguration, basePath, tableName))
+        return resolveTablePathOptional(winbooksFileConfiguration, basePath, tableName)
                 .orElseThrow(() -> {
                     String baseFolderPathName = getPathFileNameString(basePath);
 
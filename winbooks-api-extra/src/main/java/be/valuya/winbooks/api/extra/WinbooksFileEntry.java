@@ -0,0 +1,72 @@
+package be.valuya.winbooks.api.extra;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+/**
+ * A file or directory, along with the attributes returned when listing its parent directory.
+ */
+public class WinbooksFileEntry {
+
+    private final Path path;
+    private final String name;
+    private final boolean directory;
+    private final long size;
+    private final FileTime lastModifiedTime;
+    private final FileTime creationTime;
+
+    public WinbooksFileEntry(Path path, boolean directory, long size, FileTime lastModifiedTime, FileTime creationTime) {
+        this.path = path;
+        this.name = Optional.ofNullable(path.getFileName())
+                .map(Path::toString)
+                .orElse("");
+        this.directory = directory;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+        this.creationTime = creationTime;
+    }
+
+    public static WinbooksFileEntry of(Path path, BasicFileAttributes attributes) {
+        boolean directory = attributes.isDirectory();
+        long size = attributes.size();
+        FileTime lastModifiedTime = attributes.lastModifiedTime();
+        FileTime creationTime = attributes.creationTime();
+        return new WinbooksFileEntry(path, directory, size, lastModifiedTime, creationTime);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    public FileTime getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "WinbooksFileEntry{" +
+                "path=" + path +
+                ", directory=" + directory +
+                ", size=" + size +
+                ", lastModifiedTime=" + lastModifiedTime +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * File content fingerprint: its size, and the SHA-256 hash of its content.
+ */
+public class WinbooksFileFingerprint {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final long size;
+    private final String sha256;
+
+    public WinbooksFileFingerprint(long size, String sha256) {
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new WinbooksException(WinbooksError.FATAL_ERRORS, exception);
+        }
+    }
+
+    static WinbooksFileFingerprint of(long size, MessageDigest messageDigest) {
+        byte[] digest = messageDigest.digest();
+        StringBuilder hashBuilder = new StringBuilder();
+        for (byte digestByte : digest) {
+            hashBuilder.append(Character.forDigit((digestByte >> 4) & 0xF, 16));
+            hashBuilder.append(Character.forDigit(digestByte & 0xF, 16));
+        }
+        String sha256 = hashBuilder.toString();
+        return new WinbooksFileFingerprint(size, sha256);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the lower-case hexadecimal SHA-256 hash.
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WinbooksFileFingerprint that = (WinbooksFileFingerprint) o;
+        return size == that.size &&
+                Objects.equals(sha256, that.sha256);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, sha256);
+    }
+
+    @Override
+    public String toString() {
+        return "WinbooksFileFingerprint{" +
+                "size=" + size +
+                ", sha256='" + sha256 + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fingerprints of the files of a directory, kept in a hidden file in that same directory.
+ * <p>
+ * Each fingerprint is recorded along with the file size and last modification time at the time it was computed. A
+ * fingerprint is only trusted as long as the file still has those.
+ */
+class WinbooksFingerprintSidecar {
+    private static Logger LOGGER = Logger.getLogger(WinbooksFingerprintSidecar.class.getName());
+
+    static final String SIDECAR_FILE_NAME = ".winbooks-fingerprints";
+    private static final String SEPARATOR = "\t";
+
+    private final Path directoryPath;
+    private final Map<String, FingerprintRecord> recordsByFileName = new HashMap<>();
+    private boolean modified;
+
+    private WinbooksFingerprintSidecar(Path directoryPath) {
+        this.directoryPath = directoryPath;
+    }
+
+    static WinbooksFingerprintSidecar load(Path directoryPath) {
+        WinbooksFingerprintSidecar sidecar = new WinbooksFingerprintSidecar(directoryPath);
+        Path sidecarPath = directoryPath.resolve(SIDECAR_FILE_NAME);
+        if (!Files.exists(sidecarPath)) {
+            return sidecar;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(sidecarPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // File name comes last, whatever it contains
+                String[] values = line.split(SEPARATOR, 4);
+                long size = Long.parseLong(values[0]);
+                long lastModifiedMillis = Long.parseLong(values[1]);
+                String sha256 = values[2];
+                String fileName = values[3];
+                WinbooksFileFingerprint fingerprint = new WinbooksFileFingerprint(size, sha256);
+                sidecar.recordsByFileName.put(fileName, new FingerprintRecord(lastModifiedMillis, fingerprint));
+            }
+        } catch (IOException | RuntimeException exception) {
+            // Fingerprints only save transfers: start over
+            LOGGER.log(Level.FINE, "Could not load fingerprints " + sidecarPath, exception);
+            sidecar.recordsByFileName.clear();
+        }
+        return sidecar;
+    }
+
+    Path getDirectoryPath() {
+        return directoryPath;
+    }
+
+    /**
+     * @return the recorded fingerprint, if the file did not change since.
+     */
+    synchronized Optional<WinbooksFileFingerprint> findFingerprint(String fileName, FileTime lastModifiedTime, long size) {
+        return Optional.ofNullable(recordsByFileName.get(fileName))
+                .filter(record -> record.lastModifiedMillis == lastModifiedTime.toMillis())
+                .map(record -> record.fingerprint)
+                .filter(fingerprint -> fingerprint.getSize() == size);
+    }
+
+    synchronized void putFingerprint(String fileName, FileTime lastModifiedTime, WinbooksFileFingerprint fingerprint) {
+        FingerprintRecord record = new FingerprintRecord(lastModifiedTime.toMillis(), fingerprint);
+        recordsByFileName.put(fileName, record);
+        modified = true;
+    }
+
+    /**
+     * Writes the sidecar file, if any fingerprint was recorded since it was loaded.
+     */
+    synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        Path sidecarPath = directoryPath.resolve(SIDECAR_FILE_NAME);
+        try {
+            Path temporaryPath = Files.createTempFile(directoryPath, ".fingerprints-", ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, FingerprintRecord> recordEntry : recordsByFileName.entrySet()) {
+                        String fileName = recordEntry.getKey();
+                        FingerprintRecord record = recordEntry.getValue();
+                        WinbooksFileFingerprint fingerprint = record.fingerprint;
+                        writer.write(String.join(SEPARATOR, Long.toString(fingerprint.getSize()), Long.toString(record.lastModifiedMillis),
+                                fingerprint.getSha256(), fileName));
+                        writer.newLine();
+                    }
+                }
+                WinbooksPathUtils.moveReplacing(temporaryPath, sidecarPath);
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.USER_FILE_ERROR, exception);
+        }
+        modified = false;
+    }
+
+    private static class FingerprintRecord {
+        private final long lastModifiedMillis;
+        private final WinbooksFileFingerprint fingerprint;
+
+        private FingerprintRecord(long lastModifiedMillis, WinbooksFileFingerprint fingerprint) {
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -7,14 +7,21 @@ import be.valuya.winbooks.domain.error.WinbooksError;
 import be.valuya.winbooks.domain.error.WinbooksException;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -23,7 +30,6 @@ import java.util.Optional;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 class WinbooksPathUtils {
@@ -33,15 +39,13 @@ class WinbooksPathUtils {
     static Optional<Path> getBookYearBasePath(WinbooksFileConfiguration fileConfiguration, WbBookYearFull wbBookYearFull) {
         boolean resolveArchivedBookYears = fileConfiguration.isResolveArchivedBookYears();
         boolean ignoreMissingArchives = fileConfiguration.isIgnoreMissingArchives();
-        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
-        Map<String, Path> pathMappings = getPathMappingsIncludingRootPath(fileConfiguration);
         Path baseFolderPath = getDossierBasePath(fileConfiguration);
 
         try {
             boolean archivedBookYear = isArchivedBookYear(wbBookYearFull);
             if (archivedBookYear) {
                 if (resolveArchivedBookYears) {
-                    Path archivePath = resolveArchivePathOrThrow(wbBookYearFull, resolveCaseInsensitiveSiblings, pathMappings);
+                    Path archivePath = resolveArchivePathOrThrow(fileConfiguration, wbBookYearFull);
                     return Optional.of(archivePath);
                 } else {
                     return Optional.empty();
@@ -70,6 +74,10 @@ class WinbooksPathUtils {
     }
 
     static Path getDossierBasePath(WinbooksFileConfiguration fileConfiguration) {
+        Optional<WinbooksDossierManifest> dossierManifestOptional = fileConfiguration.getDossierManifestOptional();
+        if (dossierManifestOptional.isPresent()) {
+            return dossierManifestOptional.get().getDossierBasePath();
+        }
         Path configurationRootPath = fileConfiguration.getRootPath();
         String baseName = fileConfiguration.getBasePathName();
         String winbooksCompanyName = fileConfiguration.getWinbooksCompanyName();
@@ -88,6 +96,41 @@ class WinbooksPathUtils {
         return resolvedPath;
     }
 
+    /**
+     * Resolves a child path from the configuration dossier manifest when its parent has been scanned, from the
+     * filesystem otherwise.
+     */
+    static Optional<Path> resolvePath(WinbooksFileConfiguration fileConfiguration, Path parentPath, String fileName) {
+        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
+        return findManifestScanningDirectory(fileConfiguration, parentPath)
+                .map(dossierManifest -> dossierManifest.resolvePath(parentPath, fileName, resolveCaseInsensitiveSiblings))
+                .orElseGet(() -> resolvePath(parentPath, fileName, resolveCaseInsensitiveSiblings));
+    }
+
+    static boolean exists(WinbooksFileConfiguration fileConfiguration, Path path) {
+        Path parentPath = path.getParent();
+        return findManifestScanningDirectory(fileConfiguration, parentPath)
+                .map(dossierManifest -> dossierManifest.getEntryOptional(path).isPresent())
+                .orElseGet(() -> Files.exists(path));
+    }
+
+    /**
+     * @return the file attributes, from the configuration dossier manifest when its parent has been scanned.
+     */
+    static WinbooksFileEntry getFileEntry(WinbooksFileConfiguration fileConfiguration, Path path) {
+        Optional<WinbooksFileEntry> scannedEntryOptional = findManifestScanningDirectory(fileConfiguration, path.getParent())
+                .flatMap(dossierManifest -> dossierManifest.getEntryOptional(path));
+        if (scannedEntryOptional.isPresent()) {
+            return scannedEntryOptional.get();
+        }
+        try {
+            BasicFileAttributes basicFileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return WinbooksFileEntry.of(path, basicFileAttributes);
+        } catch (IOException exception) {
+            throw new WinbooksException(WinbooksError.UNKNOWN_ERROR, exception);
+        }
+    }
+
     static Optional<Path> resolvePath(Path parentPath, String fileName, boolean resolveCaseInsensitiveSiblings) {
         if (parentPath == null) {
             return Optional.empty();
@@ -114,22 +157,53 @@ class WinbooksPathUtils {
         }
     }
 
-    static Stream<Path> streamDirectoryFiles(Path path, Predicate<Path> acceptFilePredicate) {
+    /**
+     * Lists the direct children of a directory, from the configuration dossier manifest when it has been scanned.
+     */
+    static Stream<WinbooksFileEntry> streamDirectoryEntries(WinbooksFileConfiguration fileConfiguration, Path path) {
+        Optional<List<WinbooksFileEntry>> scannedEntriesOptional = fileConfiguration.getDossierManifestOptional()
+                .flatMap(dossierManifest -> dossierManifest.getDirectoryEntriesOptional(path));
+        if (scannedEntriesOptional.isPresent()) {
+            return scannedEntriesOptional.get().stream();
+        }
         try {
             long time0 = System.currentTimeMillis();
-            List<Path> filesContent = Files.find(path, 1,
-                    (visitedPath, attr) -> checkAcceptFilePredicate(acceptFilePredicate, visitedPath, attr))
-                    .collect(Collectors.toList());
+            List<WinbooksFileEntry> entries = new ArrayList<>();
+            Files.walkFileTree(path, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path visitedPath, BasicFileAttributes attributes) {
+                    WinbooksFileEntry entry = WinbooksFileEntry.of(visitedPath, attributes);
+                    entries.add(entry);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
             long time1 = System.currentTimeMillis();
             long deltaTimeWalk = time1 - time0;
             LOGGER.finer("**** FIND dir files(" + path.toString() + ") " + deltaTimeWalk);
 
-            return filesContent.stream();
+            return entries.stream();
         } catch (IOException exception) {
             throw new WinbooksException(WinbooksError.UNKNOWN_ERROR, exception);
         }
     }
 
+    static Stream<WinbooksFileEntry> streamDirectoryFiles(WinbooksFileConfiguration fileConfiguration, Path path, Predicate<Path> acceptFilePredicate) {
+        return streamDirectoryEntries(fileConfiguration, path)
+                .filter(entry -> !entry.isDirectory())
+                .filter(entry -> acceptFilePredicate.test(entry.getPath()));
+    }
+
+
+    /**
+     * Moves a file, atomically when supported, replacing any existing target.
+     */
+    static void moveReplacing(Path sourcePath, Path targetPath) throws IOException {
+        try {
+            Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException exception) {
+            Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
     static LocalDateTime getLastModifiedTime(Path path) {
         try {
@@ -180,16 +254,7 @@ class WinbooksPathUtils {
     }
 
 
-    private static boolean checkAcceptFilePredicate(Predicate<Path> acceptPredicate, Path visitedPath, BasicFileAttributes attr) {
-        boolean directory = attr.isDirectory();
-        if (!directory) {
-            return acceptPredicate.test(visitedPath);
-        } else {
-            return false;
-        }
-    }
-
-    private static LocalDateTime toLocalDateTime(FileTime fileTime) {
+    static LocalDateTime toLocalDateTime(FileTime fileTime) {
         Instant lastModifiedInstant = fileTime.toInstant();
         return LocalDateTime.ofInstant(lastModifiedInstant, ZoneId.systemDefault());
     }
@@ -200,17 +265,32 @@ class WinbooksPathUtils {
         return archivePathNameOptional.isPresent();
     }
 
-    private static Path resolveArchivePathOrThrow(WbBookYearFull wbBookYearFull, boolean resolveCaseInsitiveSiblings, Map<String, Path> pathMappings) throws ArchivePathNotFoundException {
-        return resolveBookYearArchivePath(wbBookYearFull, resolveCaseInsitiveSiblings, pathMappings)
+    private static Path resolveArchivePathOrThrow(WinbooksFileConfiguration fileConfiguration, WbBookYearFull wbBookYearFull) throws ArchivePathNotFoundException {
+        return resolveBookYearArchivePath(fileConfiguration, wbBookYearFull)
                 .orElseThrow(() -> new ArchivePathNotFoundException(wbBookYearFull));
     }
 
-    private static Optional<Path> resolveBookYearArchivePath(WbBookYearFull wbBookYearFull, boolean resolveCaseInsitiveSiblings, Map<String, Path> pathMappings) {
+    static Optional<Path> resolveBookYearArchivePath(WinbooksFileConfiguration fileConfiguration, WbBookYearFull wbBookYearFull) {
         if (!isArchivedBookYear(wbBookYearFull)) {
             return Optional.empty();
         }
         String archivePathName = wbBookYearFull.getArchivePathNameOptional().orElseThrow(IllegalStateException::new);
-        return resolvePathNameWithMappings(archivePathName, pathMappings, resolveCaseInsitiveSiblings);
+        Optional<WinbooksDossierManifest> dossierManifestOptional = fileConfiguration.getDossierManifestOptional()
+                .filter(dossierManifest -> dossierManifest.isScannedArchivePath(archivePathName));
+        if (dossierManifestOptional.isPresent()) {
+            return dossierManifestOptional.get().getArchivePathOptional(archivePathName);
+        }
+        boolean resolveCaseInsensitiveSiblings = fileConfiguration.isResolveCaseInsensitiveSiblings();
+        Map<String, Path> pathMappings = getPathMappingsIncludingRootPath(fileConfiguration);
+        return resolvePathNameWithMappings(archivePathName, pathMappings, resolveCaseInsensitiveSiblings);
+    }
+
+    private static Optional<WinbooksDossierManifest> findManifestScanningDirectory(WinbooksFileConfiguration fileConfiguration, Path directoryPath) {
+        if (directoryPath == null) {
+            return Optional.empty();
+        }
+        return fileConfiguration.getDossierManifestOptional()
+                .filter(dossierManifest -> dossierManifest.isScannedDirectory(directoryPath));
     }
 
     private static Path convertToUnixPath(String absolutePathName) {
@@ -8,6 +8,11 @@ public enum DocumentMatchingMode {
      * Stream and cache all documents, and query the cache to find a match.
      */
     EAGERLY_CACHE_ALL_DOCUMENTS,
+    /**
+     * Scan and cache the documents of a book year dbk folder the first time an entry of that book year and dbk is
+     * linked.
+     */
+    LAZY_INDEXED,
     /**
      * Do not attempt to find a document for each entry.
      */
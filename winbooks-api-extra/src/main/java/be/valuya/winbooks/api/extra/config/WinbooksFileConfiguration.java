@@ -1,8 +1,14 @@
 package be.valuya.winbooks.api.extra.config;
 
+import be.valuya.winbooks.api.extra.WinbooksDocumentContentCache;
+import be.valuya.winbooks.api.extra.WinbooksDocumentIndex;
+import be.valuya.winbooks.api.extra.WinbooksDossierManifest;
+import be.valuya.winbooks.api.extra.WinbooksDossierMetadata;
+
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,9 +32,19 @@ public class WinbooksFileConfiguration {
     private boolean resolveCaseInsensitiveSiblings = true;
     private boolean resolveUnmappedPeriodFromEntryDate = true;
     private boolean resolveDocumentTimes = true;
+    private int documentScanParallelism = 4;
+    private int documentUploadParallelism = 4;
+    private boolean documentUploadFingerprints = false;
     private DocumentMatchingMode documentMatchingMode = DocumentMatchingMode.EAGERLY_CACHE_ALL_DOCUMENTS;
     private Optional<LocalDate> bookYearStartMinDateOptional = Optional.empty();
     private Optional<LocalDate> bookYearStartMaxDateOptional = Optional.empty();
+    private volatile Optional<WinbooksDossierManifest> dossierManifestOptional = Optional.empty();
+    private Optional<WinbooksDocumentContentCache> documentContentCacheOptional = Optional.empty();
+    private Optional<WinbooksDocumentIndex> documentIndexOptional = Optional.empty();
+    private volatile Optional<WinbooksDossierMetadata> dossierMetadataOptional = Optional.empty();
+    private Optional<Duration> cacheRefreshIntervalOptional = Optional.empty();
+    private Optional<Path> entrySortSpillPathOptional = Optional.empty();
+    private int entrySortRunSize = 200_000;
 
     public String getUsername() {
         return username;
@@ -153,6 +169,51 @@ public class WinbooksFileConfiguration {
         this.resolveDocumentTimes = resolveDocumentTimes;
     }
 
+    public int getDocumentScanParallelism() {
+        return documentScanParallelism;
+    }
+
+    /**
+     * The number of threads listing document folders concurrently when scanning documents of several book years.
+     * Listing is mostly waiting on the filesystem, which benefits remote dossiers.
+     *
+     * @param documentScanParallelism The thread count, 1 to scan folders one after another.
+     */
+    public void setDocumentScanParallelism(int documentScanParallelism) {
+        this.documentScanParallelism = documentScanParallelism;
+    }
+
+    public int getDocumentUploadParallelism() {
+        return documentUploadParallelism;
+    }
+
+    /**
+     * The number of files written concurrently by batch uploads.
+     *
+     * @param documentUploadParallelism The thread count, 1 to write files one after another.
+     */
+    public void setDocumentUploadParallelism(int documentUploadParallelism) {
+        this.documentUploadParallelism = documentUploadParallelism;
+    }
+
+    public boolean isDocumentUploadFingerprints() {
+        return documentUploadFingerprints;
+    }
+
+    /**
+     * Whether uploads record content fingerprints. An upload whose content is already present at its path is then not
+     * transferred again.
+     * <p>
+     * When enabled, uploads write a hidden <code>.winbooks-fingerprints</code> sidecar file into each directory they
+     * write to, which are the Winbooks Document/Scans folders of the dossier.
+     *
+     * @param documentUploadFingerprints true to record fingerprints and skip unchanged uploads, false to always write
+     *                                   uploaded files.
+     */
+    public void setDocumentUploadFingerprints(boolean documentUploadFingerprints) {
+        this.documentUploadFingerprints = documentUploadFingerprints;
+    }
+
     public Optional<LocalDate> getBookYearStartMinDateOptional() {
         return bookYearStartMinDateOptional;
     }
@@ -210,4 +271,101 @@ public class WinbooksFileConfiguration {
     public void setPathMappings(Map<String, Path> pathMappings) {
         this.pathMappings = pathMappings;
     }
+
+    public Optional<WinbooksDossierManifest> getDossierManifestOptional() {
+        return dossierManifestOptional;
+    }
+
+    /**
+     * When a dossier manifest is set, paths are resolved from its directory listings rather than by probing the
+     * filesystem. Files created after the scan will not be found until the manifest is refreshed or cleared, except
+     * for files written through this configuration by
+     * {@link be.valuya.winbooks.api.extra.WinbooksExtraService#writeFiles(WinbooksFileConfiguration, Map)}: the
+     * listings of the directories they change are dropped from the manifest.
+     *
+     * @param dossierManifestOptional The manifest, or empty to resolve paths from the filesystem.
+     * @see be.valuya.winbooks.api.extra.WinbooksExtraService#scanDossierManifest(WinbooksFileConfiguration)
+     */
+    public void setDossierManifestOptional(Optional<WinbooksDossierManifest> dossierManifestOptional) {
+        this.dossierManifestOptional = dossierManifestOptional;
+    }
+
+    public Optional<WinbooksDocumentContentCache> getDocumentContentCacheOptional() {
+        return documentContentCacheOptional;
+    }
+
+    /**
+     * Document contents are served from this cache when set. It may be shared between configurations.
+     *
+     * @param documentContentCacheOptional The cache, or empty to always read document parts.
+     */
+    public void setDocumentContentCacheOptional(Optional<WinbooksDocumentContentCache> documentContentCacheOptional) {
+        this.documentContentCacheOptional = documentContentCacheOptional;
+    }
+
+    public Optional<WinbooksDocumentIndex> getDocumentIndexOptional() {
+        return documentIndexOptional;
+    }
+
+    /**
+     * Documents of unchanged dbk folders are read from this index when set. It must be dedicated to this dossier.
+     *
+     * @param documentIndexOptional The index, or empty to always list document folders.
+     */
+    public void setDocumentIndexOptional(Optional<WinbooksDocumentIndex> documentIndexOptional) {
+        this.documentIndexOptional = documentIndexOptional;
+    }
+
+    public Optional<WinbooksDossierMetadata> getDossierMetadataOptional() {
+        return dossierMetadataOptional;
+    }
+
+    /**
+     * Set when the param table is first parsed, and replaced once it changes. Clear it to force parsing again.
+     *
+     * @param dossierMetadataOptional The metadata, or empty.
+     */
+    public void setDossierMetadataOptional(Optional<WinbooksDossierMetadata> dossierMetadataOptional) {
+        this.dossierMetadataOptional = dossierMetadataOptional;
+    }
+
+    public Optional<Duration> getCacheRefreshIntervalOptional() {
+        return cacheRefreshIntervalOptional;
+    }
+
+    /**
+     * Accounting managers poll the dossier tables for changes at this interval, in the background. Once they changed,
+     * a new cache is built and replaces the current one, while requests keep being served from the current one.
+     *
+     * @param cacheRefreshIntervalOptional The polling interval, or empty to keep the cache as first loaded.
+     */
+    public void setCacheRefreshIntervalOptional(Optional<Duration> cacheRefreshIntervalOptional) {
+        this.cacheRefreshIntervalOptional = cacheRefreshIntervalOptional;
+    }
+
+    public Optional<Path> getEntrySortSpillPathOptional() {
+        return entrySortSpillPathOptional;
+    }
+
+    /**
+     * When set, accounting entries are not kept in the cache. They are read again and sorted for each call instead,
+     * with sorted runs of at most {@link #getEntrySortRunSize()} entries written to this directory, then merged.
+     * Documents, accounts and third parties are still cached.
+     *
+     * @param entrySortSpillPathOptional A local directory, or empty to sort and cache entries in memory.
+     */
+    public void setEntrySortSpillPathOptional(Optional<Path> entrySortSpillPathOptional) {
+        this.entrySortSpillPathOptional = entrySortSpillPathOptional;
+    }
+
+    public int getEntrySortRunSize() {
+        return entrySortRunSize;
+    }
+
+    /**
+     * @param entrySortRunSize The maximum number of entries held in memory while sorting them to disk.
+     */
+    public void setEntrySortRunSize(int entrySortRunSize) {
+        this.entrySortRunSize = entrySortRunSize;
+    }
 }
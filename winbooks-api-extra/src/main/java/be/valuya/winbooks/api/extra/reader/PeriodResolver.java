@@ -3,112 +3,163 @@ package be.valuya.winbooks.api.extra.reader;
 import be.valuya.jbooks.model.WbBookYearFull;
 import be.valuya.jbooks.model.WbPeriod;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Calendar;
+import java.time.ZoneId;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class PeriodResolver {
 
-    private Map<Integer, WbBookYearFull> wbBookYearFullMap;
-    private Map<WbBookYearFull, Map<Integer, WbPeriod>> wbBookYearPeriodFullMap;
+    // By book year index, then period index
+    private WbBookYearFull[] bookYearsByIndex;
+    private WbPeriod[][] periodsByBookYearIndex;
 
     private boolean resolveUnmappedPeriodsFromDates;
 
+    // Periods by month, from the first month of the earliest book year
+    private int firstEpochMonth;
+    private WbPeriod[] periodsByMonth;
+    private Optional<WbPeriod> firstPeriodOptional;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
     public PeriodResolver(boolean resolveUnmappedPeriodsFromDates) {
         this.resolveUnmappedPeriodsFromDates = resolveUnmappedPeriodsFromDates;
     }
 
     public void init(List<WbBookYearFull> wbBookYearFullList) {
-        wbBookYearFullMap = wbBookYearFullList.stream()
-                .collect(Collectors.toMap(WbBookYearFull::getIndex, Function.identity()));
-
-        wbBookYearPeriodFullMap = new HashMap<>();
+        int maxBookYearIndex = wbBookYearFullList.stream()
+                .mapToInt(WbBookYearFull::getIndex)
+                .max()
+                .orElse(-1);
+        bookYearsByIndex = new WbBookYearFull[maxBookYearIndex + 1];
+        periodsByBookYearIndex = new WbPeriod[maxBookYearIndex + 1][];
         for (WbBookYearFull wbBookYearFull : wbBookYearFullList) {
+            int bookYearIndex = wbBookYearFull.getIndex();
             List<WbPeriod> periodList = wbBookYearFull.getPeriodList();
+            int maxPeriodIndex = periodList.stream()
+                    .mapToInt(WbPeriod::getIndex)
+                    .max()
+                    .orElse(-1);
+            WbPeriod[] periodsByIndex = new WbPeriod[maxPeriodIndex + 1];
             for (WbPeriod wbPeriod : periodList) {
-                Map<Integer, WbPeriod> wbPeriodMap = wbBookYearPeriodFullMap.computeIfAbsent(wbBookYearFull, missingWbBookYearFullKey -> new HashMap<>());
-                int periodIndex = wbPeriod.getIndex();
-                wbPeriodMap.put(periodIndex, wbPeriod);
+                periodsByIndex[wbPeriod.getIndex()] = wbPeriod;
             }
+            bookYearsByIndex[bookYearIndex] = wbBookYearFull;
+            periodsByBookYearIndex[bookYearIndex] = periodsByIndex;
         }
+        initPeriodsByMonth(wbBookYearFullList);
     }
 
     public WbBookYearFull findWbBookYearFull(int bookYearInt) {
-        return wbBookYearFullMap.get(bookYearInt);
+        if (bookYearInt < 0 || bookYearInt >= bookYearsByIndex.length) {
+            return null;
+        }
+        return bookYearsByIndex[bookYearInt];
     }
 
     public WbPeriod findWbPeriod(WbBookYearFull wbBookYearFull, int periodIndex, Optional<Date> dateOptional) {
+        return findWbPeriod(wbBookYearFull, periodIndex, dateOptional.orElse(null));
+    }
+
+    /**
+     * @param wbBookYearFull A book year returned by {@link #findWbBookYearFull(int)}, or null if it is unknown.
+     * @param dateNullable   Entry date, to resolve the period of entries whose book year is unknown.
+     */
+    public WbPeriod findWbPeriod(WbBookYearFull wbBookYearFull, int periodIndex, Date dateNullable) {
         if (wbBookYearFull == null) {
-            if (resolveUnmappedPeriodsFromDates && dateOptional.isPresent()) {
-                Date date = dateOptional.get();
-                return this.findPeriodFromDate(date)
+            if (resolveUnmappedPeriodsFromDates && dateNullable != null) {
+                return this.findPeriodFromDate(dateNullable)
                         .orElse(null);
             } else {
                 return null;
             }
         } else {
-            Map<Integer, WbPeriod> periodMap = wbBookYearPeriodFullMap.get(wbBookYearFull);
-            return periodMap.get(periodIndex);
+            int bookYearIndex = wbBookYearFull.getIndex();
+            if (bookYearIndex < 0 || bookYearIndex >= periodsByBookYearIndex.length || periodsByBookYearIndex[bookYearIndex] == null) {
+                return null;
+            }
+            WbPeriod[] periodsByIndex = periodsByBookYearIndex[bookYearIndex];
+            if (periodIndex < 0 || periodIndex >= periodsByIndex.length) {
+                return null;
+            }
+            return periodsByIndex[periodIndex];
         }
     }
 
     private Optional<WbPeriod> findPeriodFromDate(Date date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-
-        int year = calendar.get(Calendar.YEAR);
-        int month = calendar.get(Calendar.MONTH) + 1;
+        LocalDate localDate = Instant.ofEpochMilli(date.getTime())
+                .atZone(zoneId)
+                .toLocalDate();
+        int epochMonth = getEpochMonth(localDate.getYear(), localDate.getMonthValue());
+        int monthIndex = epochMonth - firstEpochMonth;
+        if (monthIndex >= 0 && monthIndex < periodsByMonth.length && periodsByMonth[monthIndex] != null) {
+            return Optional.of(periodsByMonth[monthIndex]);
+        }
+        return firstPeriodOptional;
+    }
 
-        Optional<WbPeriod> firstPeriodOptional = wbBookYearFullMap.values().stream()
+    /**
+     * Resolves, for every month spanned by book years, the first period starting in that month, from the first book
+     * year (by index) spanning it.
+     */
+    private void initPeriodsByMonth(List<WbBookYearFull> wbBookYearFullList) {
+        List<WbBookYearFull> sortedBookYears = wbBookYearFullList.stream()
+                .sorted(Comparator.comparing(WbBookYearFull::getIndex))
+                .collect(Collectors.toList());
+        firstPeriodOptional = sortedBookYears.stream()
                 .findFirst()
                 .flatMap(bookYear -> bookYear.getPeriodList().stream().findFirst());
-        Optional<WbPeriod> foundPeriodOptionlal = wbBookYearFullMap.values()
-                .stream()
-                .filter(bookYear -> this.dateMatchBookYear(bookYear, year, month))
-                .map(bookyear -> this.findBookYearPeriodOptional(bookyear, year, month))
-                .flatMap(this::streamOptional)
-                .findAny();
-        if (foundPeriodOptionlal.isPresent()) {
-            return foundPeriodOptionlal;
-        } else {
-            return firstPeriodOptional;
+
+        // Months whose first day is within the book year
+        int minEpochMonth = Integer.MAX_VALUE;
+        int maxEpochMonth = Integer.MIN_VALUE;
+        for (WbBookYearFull bookYear : sortedBookYears) {
+            minEpochMonth = Math.min(minEpochMonth, getFirstEpochMonth(bookYear));
+            maxEpochMonth = Math.max(maxEpochMonth, getLastEpochMonth(bookYear));
+        }
+        if (minEpochMonth > maxEpochMonth) {
+            firstEpochMonth = 0;
+            periodsByMonth = new WbPeriod[0];
+            return;
+        }
+        firstEpochMonth = minEpochMonth;
+        periodsByMonth = new WbPeriod[maxEpochMonth - minEpochMonth + 1];
+        for (WbBookYearFull bookYear : sortedBookYears) {
+            int bookYearFirstEpochMonth = getFirstEpochMonth(bookYear);
+            int bookYearLastEpochMonth = getLastEpochMonth(bookYear);
+            for (WbPeriod wbPeriod : bookYear.getPeriodList()) {
+                LocalDate periodStartDate = wbPeriod.getStartDate();
+                int epochMonth = getEpochMonth(periodStartDate.getYear(), periodStartDate.getMonthValue());
+                if (epochMonth < bookYearFirstEpochMonth || epochMonth > bookYearLastEpochMonth) {
+                    continue;
+                }
+                int monthIndex = epochMonth - firstEpochMonth;
+                if (periodsByMonth[monthIndex] == null) {
+                    periodsByMonth[monthIndex] = wbPeriod;
+                }
+            }
         }
     }
 
-
-    private boolean dateMatchBookYear(WbBookYearFull bookYear, int year, int month) {
-        LocalDate testDate = LocalDate.of(year, month, 1);
+    private int getFirstEpochMonth(WbBookYearFull bookYear) {
         LocalDate startDate = bookYear.getStartDate();
-        LocalDate endDate = bookYear.getEndDate();
-        return !testDate.isBefore(startDate) && testDate.isBefore(endDate);
-    }
-
-
-    private Optional<WbPeriod> findBookYearPeriodOptional(WbBookYearFull bookyear, int year, int month) {
-        return bookyear.getPeriodList().stream()
-                .filter(wbPeriod -> this.dateMatchPeriod(wbPeriod, year, month))
-                .findAny();
+        int startEpochMonth = getEpochMonth(startDate.getYear(), startDate.getMonthValue());
+        return startDate.getDayOfMonth() == 1 ? startEpochMonth : startEpochMonth + 1;
     }
 
-    private boolean dateMatchPeriod(WbPeriod wbPeriod, int year, int month) {
-        LocalDate periodStartDate = wbPeriod.getStartDate();
-        int periodMonth = periodStartDate.getMonthValue();
-        int periodYear = periodStartDate.getYear();
-        return periodMonth == month && periodYear == year;
+    private int getLastEpochMonth(WbBookYearFull bookYear) {
+        // exclusive end date
+        LocalDate endDate = bookYear.getEndDate();
+        int endEpochMonth = getEpochMonth(endDate.getYear(), endDate.getMonthValue());
+        return endDate.getDayOfMonth() == 1 ? endEpochMonth - 1 : endEpochMonth;
     }
 
-
-    private <T> Stream<T> streamOptional(Optional<T> optionalValue) {
-        return Stream.of(optionalValue.orElse(null))
-                .filter(Objects::nonNull);
+    private int getEpochMonth(int year, int month) {
+        return year * 12 + month - 1;
     }
 
 }
@@ -0,0 +1,223 @@
+package be.valuya.winbooks.api.extra.reader;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.jbooks.model.WbBookYearStatus;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds book years and their periods from the param table, whose BOOKYEARn.* params describe book year n.
+ */
+public class WbBookYearParamsParser {
+
+    private static final String BOOKYEAR_COUNT_PARAM = "BOOKYEARCOUNT";
+    private static final String BOOKYEAR_PARAM_PREFIX = "BOOKYEAR";
+    private static final int MAX_BOOKYEAR_INDEX_DIGITS = 9;
+    private static final DateTimeFormatter PERIOD_FORMATTER = DateTimeFormatter.ofPattern("ddMMyyyy");
+
+    /**
+     * Walks the params once, grouping book year params by index.
+     *
+     * @param paramMap param values, by id.
+     * @return the book years, by index. Indexes without any param, as in some archived dossiers, are skipped.
+     */
+    public List<WbBookYearFull> parseBookYears(Map<String, String> paramMap) {
+        String bookYearCountStr = paramMap.get(BOOKYEAR_COUNT_PARAM);
+        int bookYearCount = Integer.parseInt(bookYearCountStr);
+
+        BookYearParams[] bookYearParamsByIndex = new BookYearParams[bookYearCount + 1];
+        for (Map.Entry<String, String> paramEntry : paramMap.entrySet()) {
+            String id = paramEntry.getKey();
+            int bookYearIndex = parseBookYearIndex(id);
+            if (bookYearIndex < 1 || bookYearIndex > bookYearCount) {
+                continue;
+            }
+            BookYearParams bookYearParams = bookYearParamsByIndex[bookYearIndex];
+            if (bookYearParams == null) {
+                bookYearParams = new BookYearParams();
+                bookYearParamsByIndex[bookYearIndex] = bookYearParams;
+            }
+            int nameStart = id.indexOf('.') + 1;
+            String paramName = nameStart == 0 ? "" : id.substring(nameStart);
+            bookYearParams.put(paramName, paramEntry.getValue());
+        }
+
+        List<WbBookYearFull> wbBookYearFullList = new ArrayList<>();
+        for (int i = 1; i <= bookYearCount; i++) {
+            BookYearParams bookYearParams = bookYearParamsByIndex[i];
+            if (bookYearParams == null) {
+                continue;
+            }
+            WbBookYearFull wbBookYearFull = createBookYear(i, bookYearParams);
+            wbBookYearFullList.add(wbBookYearFull);
+        }
+        return wbBookYearFullList;
+    }
+
+    /**
+     * @return n for BOOKYEARn and BOOKYEARn.*, -1 otherwise.
+     */
+    private int parseBookYearIndex(String id) {
+        if (!id.startsWith(BOOKYEAR_PARAM_PREFIX)) {
+            return -1;
+        }
+        int digitsStart = BOOKYEAR_PARAM_PREFIX.length();
+        int digitsEnd = id.indexOf('.', digitsStart);
+        if (digitsEnd < 0) {
+            digitsEnd = id.length();
+        }
+        if (digitsEnd == digitsStart || digitsEnd - digitsStart > MAX_BOOKYEAR_INDEX_DIGITS) {
+            return -1;
+        }
+        int index = 0;
+        for (int position = digitsStart; position < digitsEnd; position++) {
+            char idChar = id.charAt(position);
+            if (idChar < '0' || idChar > '9') {
+                return -1;
+            }
+            index = index * 10 + (idChar - '0');
+        }
+        return index;
+    }
+
+    private WbBookYearFull createBookYear(int index, BookYearParams bookYearParams) {
+        List<LocalDate> periodDates = parsePeriodDates(bookYearParams.perDate);
+
+        int periodCount = periodDates.size() - 2;
+        int durationInMonths = 12 / periodCount;
+
+        List<String> periodNames = parsePeriodNames(bookYearParams.perLib1);
+
+        List<WbPeriod> wbPeriodList = convertWinbooksPeriods(periodNames, periodDates, durationInMonths);
+
+        LocalDate startDate = periodDates.stream()
+                .findFirst()
+                .orElseThrow(IllegalArgumentException::new);
+        LocalDate endDate = periodDates.stream()
+                .max(LocalDate::compareTo)
+                .map(date -> date.plusDays(1)) // exclusive upper bound is day after
+                .orElseThrow(IllegalArgumentException::new);
+        int startYear = startDate.getYear();
+        int endYear = endDate.getYear();
+
+        WbBookYearFull wbBookYearFull = new WbBookYearFull();
+        wbBookYearFull.setLongName(bookYearParams.longLabel);
+        wbBookYearFull.setShortName(bookYearParams.shortLabel);
+        wbBookYearFull.setArchivePathNameOptional(Optional.ofNullable(bookYearParams.archivePathName));
+        wbBookYearFull.setIndex(index);
+        wbBookYearFull.setStartDate(startDate);
+        wbBookYearFull.setEndDate(endDate);
+        wbBookYearFull.setYearBeginInt(startYear);
+        wbBookYearFull.setYearEndInt(endYear);
+        wbBookYearFull.setPeriods(periodCount);
+        wbBookYearFull.setPeriodList(wbPeriodList);
+
+        wbPeriodList.forEach(wbPeriod -> wbPeriod.setWbBookYearFull(wbBookYearFull));
+
+        Optional.ofNullable(bookYearParams.status)
+                .flatMap(WbBookYearStatus::fromValueStr)
+                .ifPresent(wbBookYearFull::setWbBookYearStatus);
+
+        return wbBookYearFull;
+    }
+
+    private List<WbPeriod> convertWinbooksPeriods(List<String> periodNames, List<LocalDate> periodDates, int durationInMonths) {
+        int periodCount = periodNames.size();
+        if (periodDates.size() != periodCount) {
+            throw new WinbooksException(WinbooksError.PERIOD_DATE_MISMATCH, "Different sizes for period names and period dates.");
+        }
+
+        List<WbPeriod> periods = new ArrayList<>(periodCount);
+        for (int i = 0; i < periodCount; i++) {
+            String periodName = periodNames.get(i);
+            LocalDate periodStartDate = periodDates.get(i);
+            LocalDate periodEndDate = periodStartDate.plusMonths(durationInMonths);
+
+            WbPeriod period = new WbPeriod();
+            period.setStartDate(periodStartDate);
+            period.setEndDate(periodEndDate);
+            period.setShortName(periodName);
+            period.setIndex(i);
+
+            periods.add(period);
+        }
+
+        WbPeriod lasterWbPeriod = periods.get(periodCount - 1);
+        lasterWbPeriod.setIndex(99);
+
+        return periods;
+    }
+
+    private List<String> parsePeriodNames(String concatenatedPeriodNames) {
+        int length = concatenatedPeriodNames.length();
+        List<String> periodNames = new ArrayList<>(length / 8);
+        for (int i = 0; i + 8 <= length; i += 8) {
+            String periodName = concatenatedPeriodNames.substring(i, i + 8);
+            periodNames.add(periodName);
+        }
+
+        return periodNames;
+    }
+
+    private List<LocalDate> parsePeriodDates(String allPeriodDatesStr) {
+        int allPeriodLength = allPeriodDatesStr.length();
+        List<LocalDate> periodDates = new ArrayList<>(allPeriodLength / 8);
+        int i = 0;
+        while (i < allPeriodLength) {
+            char currentChar = allPeriodDatesStr.charAt(i);
+            if (currentChar == ' ') {
+                i++;
+                continue;
+            }
+            String periodDateStr = allPeriodDatesStr.substring(i, i + 8);
+            LocalDate periodDate = LocalDate.parse(periodDateStr, PERIOD_FORMATTER);
+
+            periodDates.add(periodDate);
+            i += 8;
+        }
+
+        return periodDates;
+    }
+
+    private static class BookYearParams {
+        private String longLabel;
+        private String shortLabel;
+        private String archivePathName;
+        private String perDate;
+        private String perLib1;
+        private String status;
+
+        private void put(String paramName, String value) {
+            switch (paramName) {
+                case "LONGLABEL":
+                    longLabel = value;
+                    break;
+                case "SHORTLABEL":
+                    shortLabel = value;
+                    break;
+                case "PATHARCH":
+                    archivePathName = value;
+                    break;
+                case "PERDATE":
+                    perDate = value;
+                    break;
+                case "PERLIB1":
+                    perLib1 = value;
+                    break;
+                case "STATUS":
+                    status = value;
+                    break;
+                default:
+                    // Not needed
+            }
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class WbEntryDbfReader {
                 return Optional.empty();
             }
             int periodIndex = Integer.parseInt(period);
-            WbPeriod wbPeriod = periodResolver.findWbPeriod(wbBookYearFull, periodIndex, Optional.ofNullable(date));
+            WbPeriod wbPeriod = periodResolver.findWbPeriod(wbBookYearFull, periodIndex, date);
 
             WbDocOrderType docOrderType = Optional.ofNullable(docOrderNullable)
                     .map(WbDocOrderType::fromStringOptional)
@@ -0,0 +1,4 @@
+package be.valuya.winbooks.api;
+
+public interface LatencyWinbooksDossierCategory {
+}
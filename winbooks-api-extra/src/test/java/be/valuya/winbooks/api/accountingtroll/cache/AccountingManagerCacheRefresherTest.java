@@ -0,0 +1,117 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.WinbooksDossierTable;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class AccountingManagerCacheRefresherTest {
+
+    @Test
+    public void testRefreshIfChanged() {
+        WinbooksFileConfiguration fileConfiguration = new WinbooksFileConfiguration();
+        AtomicReference<String> changeSignatureReference = new AtomicReference<>("v1");
+        AtomicBoolean failingReference = new AtomicBoolean();
+        AccountingManagerCacheRefresher cacheRefresher = new AccountingManagerCacheRefresher(() -> createTableSignatures(changeSignatureReference.get()), () -> {
+            if (failingReference.get()) {
+                throw new IllegalStateException("dossier being written");
+            }
+            return new AccountingManagerCache(fileConfiguration);
+        });
+        cacheRefresher.start(Duration.ofHours(1));
+        try {
+            AccountingManagerCache initialCache = cacheRefresher.getCache();
+            Assert.assertFalse(cacheRefresher.refreshIfChanged());
+            Assert.assertSame(initialCache, cacheRefresher.getCache());
+
+            // Failed refresh keeps the current cache, and is attempted again
+            changeSignatureReference.set("v2");
+            failingReference.set(true);
+            try {
+                cacheRefresher.refreshIfChanged();
+                Assert.fail();
+            } catch (IllegalStateException exception) {
+                // expected
+            }
+            Assert.assertSame(initialCache, cacheRefresher.getCache());
+
+            failingReference.set(false);
+            Assert.assertTrue(cacheRefresher.refreshIfChanged());
+            AccountingManagerCache refreshedCache = cacheRefresher.getCache();
+            Assert.assertNotSame(initialCache, refreshedCache);
+            Assert.assertFalse(cacheRefresher.refreshIfChanged());
+            Assert.assertSame(refreshedCache, cacheRefresher.getCache());
+        } finally {
+            cacheRefresher.stop();
+        }
+    }
+
+    @Test
+    public void testRefreshOnlyChangedTables() {
+        WinbooksFileConfiguration fileConfiguration = new WinbooksFileConfiguration();
+        Map<WinbooksDossierTable, String> tableSignatures = createTableSignatures("v1");
+        AtomicInteger cacheCreationCount = new AtomicInteger();
+        AccountingManagerCacheRefresher cacheRefresher = new AccountingManagerCacheRefresher(() -> new EnumMap<>(tableSignatures), () -> {
+            cacheCreationCount.incrementAndGet();
+            return new AccountingManagerCache(fileConfiguration);
+        });
+        cacheRefresher.start(Duration.ofHours(1));
+        try {
+            AccountingManagerCache initialCache = cacheRefresher.getCache();
+
+            // Other tables are reused from the current cache
+            tableSignatures.put(WinbooksDossierTable.CUSTOMER_SUPPLIER, "v2");
+            Assert.assertTrue(cacheRefresher.refreshIfChanged());
+            Assert.assertNotSame(initialCache, cacheRefresher.getCache());
+            Assert.assertEquals(1, cacheCreationCount.get());
+
+            // Book years changed, everything is loaded again
+            tableSignatures.put(WinbooksDossierTable.PARAM, "v2");
+            Assert.assertTrue(cacheRefresher.refreshIfChanged());
+            Assert.assertEquals(2, cacheCreationCount.get());
+            Assert.assertFalse(cacheRefresher.refreshIfChanged());
+        } finally {
+            cacheRefresher.stop();
+        }
+    }
+
+    @Test
+    public void testRefreshIfChangedWithoutStart() {
+        WinbooksFileConfiguration fileConfiguration = new WinbooksFileConfiguration();
+        Map<WinbooksDossierTable, String> tableSignatures = createTableSignatures("v1");
+        AtomicInteger cacheCreationCount = new AtomicInteger();
+        AccountingManagerCacheRefresher cacheRefresher = new AccountingManagerCacheRefresher(() -> new EnumMap<>(tableSignatures), () -> {
+            cacheCreationCount.incrementAndGet();
+            return new AccountingManagerCache(fileConfiguration);
+        });
+
+        // Signatures were read along with the first cache
+        Assert.assertFalse(cacheRefresher.refreshIfChanged());
+        Assert.assertEquals(1, cacheCreationCount.get());
+
+        tableSignatures.put(WinbooksDossierTable.PARAM, "v2");
+        Assert.assertTrue(cacheRefresher.refreshIfChanged());
+        Assert.assertEquals(2, cacheCreationCount.get());
+    }
+
+    private Map<WinbooksDossierTable, String> createTableSignatures(String signature) {
+        Map<WinbooksDossierTable, String> tableSignatures = new EnumMap<>(WinbooksDossierTable.class);
+        for (WinbooksDossierTable dossierTable : WinbooksDossierTable.values()) {
+            tableSignatures.put(dossierTable, signature);
+        }
+        return tableSignatures;
+    }
+}
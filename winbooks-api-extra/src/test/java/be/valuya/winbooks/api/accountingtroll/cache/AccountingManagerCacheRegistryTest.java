@@ -0,0 +1,133 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class AccountingManagerCacheRegistryTest {
+
+    @Test
+    public void testSharedDossierCachesWithEviction() {
+        AtomicInteger refresherCreationCount = new AtomicInteger();
+        // Room for two empty dossier caches
+        long maxSize = new AccountingManagerCache(new WinbooksFileConfiguration()).estimateRetainedSize() * 2;
+        AccountingManagerCacheRegistry cacheRegistry = new AccountingManagerCacheRegistry(maxSize, fileConfiguration -> {
+            refresherCreationCount.incrementAndGet();
+            return new AccountingManagerCacheRefresher(Map::of, () -> new AccountingManagerCache(fileConfiguration));
+        });
+        Path dossierPathA = Paths.get("dossiers", "A");
+        Path dossierPathB = Paths.get("dossiers", "B");
+        Path dossierPathC = Paths.get("dossiers", "C");
+
+        // Managers of the same dossier share its cache
+        AccountingManagerCacheRefresher cacheRefresherA = cacheRegistry.getCacheRefresher(dossierPathA, new WinbooksFileConfiguration());
+        Assert.assertSame(cacheRefresherA, cacheRegistry.getCacheRefresher(dossierPathA, new WinbooksFileConfiguration()));
+        Assert.assertEquals(1, refresherCreationCount.get());
+        Assert.assertEquals(1, cacheRegistry.getMissCount());
+        Assert.assertEquals(1, cacheRegistry.getHitCount());
+
+        // Least recently used dossier B is evicted
+        cacheRegistry.getCacheRefresher(dossierPathB, new WinbooksFileConfiguration());
+        cacheRegistry.getCacheRefresher(dossierPathA, new WinbooksFileConfiguration());
+        cacheRegistry.getCacheRefresher(dossierPathC, new WinbooksFileConfiguration());
+        Assert.assertEquals(1, cacheRegistry.getEvictionCount());
+        Assert.assertEquals(2, cacheRegistry.getEntryCount());
+        Assert.assertEquals(maxSize, cacheRegistry.getSize());
+        Assert.assertSame(cacheRefresherA, cacheRegistry.getCacheRefresher(dossierPathA, new WinbooksFileConfiguration()));
+
+        cacheRegistry.getCacheRefresher(dossierPathB, new WinbooksFileConfiguration());
+        Assert.assertEquals(4, refresherCreationCount.get());
+
+        cacheRegistry.clear();
+        Assert.assertEquals(0, cacheRegistry.getEntryCount());
+        Assert.assertEquals(0, cacheRegistry.getSize());
+    }
+
+    @Test
+    public void testEvictDossierGrownAfterAccess() {
+        long emptySize = new AccountingManagerCache(new WinbooksFileConfiguration()).estimateRetainedSize();
+        Map<String, AtomicLong> sizesByBasePathName = new ConcurrentHashMap<>();
+        AccountingManagerCacheRegistry cacheRegistry = new AccountingManagerCacheRegistry(emptySize * 3, fileConfiguration -> {
+            AtomicLong sizeReference = sizesByBasePathName.computeIfAbsent(fileConfiguration.getBasePathName(), name -> new AtomicLong(emptySize));
+            return new AccountingManagerCacheRefresher(Map::of, () -> new AccountingManagerCache(fileConfiguration) {
+                @Override
+                long estimateRetainedSize() {
+                    return sizeReference.get();
+                }
+            });
+        });
+        Path dossierPathA = Paths.get("dossiers", "A");
+        Path dossierPathB = Paths.get("dossiers", "B");
+        Path dossierPathC = Paths.get("dossiers", "C");
+
+        cacheRegistry.getCacheRefresher(dossierPathA, createFileConfiguration(dossierPathA));
+        cacheRegistry.getCacheRefresher(dossierPathB, createFileConfiguration(dossierPathB));
+        Assert.assertEquals(emptySize * 2, cacheRegistry.getSize());
+
+        // Sections of dossier A are loaded once it was returned
+        sizesByBasePathName.get("A").set(emptySize * 3);
+        Assert.assertEquals(emptySize * 4, cacheRegistry.getSize());
+
+        cacheRegistry.getCacheRefresher(dossierPathC, createFileConfiguration(dossierPathC));
+        Assert.assertEquals(1, cacheRegistry.getEvictionCount());
+        Assert.assertEquals(2, cacheRegistry.getEntryCount());
+        Assert.assertEquals(emptySize * 2, cacheRegistry.getSize());
+    }
+
+    @Test
+    public void testEstimateOnlyAccessedDossierOnHit() {
+        long emptySize = new AccountingManagerCache(new WinbooksFileConfiguration()).estimateRetainedSize();
+        Map<String, AtomicLong> sizesByBasePathName = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> estimateCountsByBasePathName = new ConcurrentHashMap<>();
+        AccountingManagerCacheRegistry cacheRegistry = new AccountingManagerCacheRegistry(emptySize * 3, fileConfiguration -> {
+            String basePathName = fileConfiguration.getBasePathName();
+            AtomicLong sizeReference = sizesByBasePathName.computeIfAbsent(basePathName, name -> new AtomicLong(emptySize));
+            AtomicInteger estimateCount = estimateCountsByBasePathName.computeIfAbsent(basePathName, name -> new AtomicInteger());
+            return new AccountingManagerCacheRefresher(Map::of, () -> new AccountingManagerCache(fileConfiguration) {
+                @Override
+                long estimateRetainedSize() {
+                    estimateCount.incrementAndGet();
+                    return sizeReference.get();
+                }
+            });
+        });
+        Path dossierPathA = Paths.get("dossiers", "A");
+        Path dossierPathB = Paths.get("dossiers", "B");
+        cacheRegistry.getCacheRefresher(dossierPathA, createFileConfiguration(dossierPathA));
+        cacheRegistry.getCacheRefresher(dossierPathB, createFileConfiguration(dossierPathB));
+        int estimateCountB = estimateCountsByBasePathName.get("B").get();
+
+        // Within budget, hits only estimate the accessed dossier
+        cacheRegistry.getCacheRefresher(dossierPathA, createFileConfiguration(dossierPathA));
+        cacheRegistry.getCacheRefresher(dossierPathA, createFileConfiguration(dossierPathA));
+        Assert.assertEquals(estimateCountB, estimateCountsByBasePathName.get("B").get());
+
+        // Over budget, all dossiers are estimated again before evicting
+        sizesByBasePathName.get("B").set(emptySize * 2);
+        sizesByBasePathName.get("A").set(emptySize * 3);
+        cacheRegistry.getCacheRefresher(dossierPathA, createFileConfiguration(dossierPathA));
+        Assert.assertTrue(estimateCountsByBasePathName.get("B").get() > estimateCountB);
+        Assert.assertEquals(1, cacheRegistry.getEvictionCount());
+        Assert.assertEquals(1, cacheRegistry.getEntryCount());
+        Assert.assertEquals(emptySize * 3, cacheRegistry.getSize());
+    }
+
+    private WinbooksFileConfiguration createFileConfiguration(Path dossierPath) {
+        WinbooksFileConfiguration fileConfiguration = new WinbooksFileConfiguration();
+        fileConfiguration.setBasePathName(dossierPath.getFileName().toString());
+        return fileConfiguration;
+    }
+}
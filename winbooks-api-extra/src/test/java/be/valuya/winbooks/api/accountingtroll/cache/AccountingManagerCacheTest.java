@@ -0,0 +1,359 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.accountingtroll.domain.ATAccountingEntry;
+import be.valuya.accountingtroll.domain.ATBookPeriod;
+import be.valuya.accountingtroll.domain.ATDocument;
+import be.valuya.accountingtroll.domain.ATThirdParty;
+import be.valuya.jbooks.model.WbAccount;
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.jbooks.model.WbClientSupplier;
+import be.valuya.jbooks.model.WbClientSupplierType;
+import be.valuya.jbooks.model.WbDbkType;
+import be.valuya.jbooks.model.WbDocOrderType;
+import be.valuya.jbooks.model.WbDocType;
+import be.valuya.jbooks.model.WbDocument;
+import be.valuya.jbooks.model.WbEntry;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.WinbooksDossierTable;
+import be.valuya.winbooks.api.extra.WinbooksExtraService;
+import be.valuya.winbooks.api.extra.config.DocumentMatchingMode;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import be.valuya.winbooks.api.extra.reader.WbEntryDbfReader;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class AccountingManagerCacheTest {
+
+    private static final String ARCHIVED_ACCOUNT_NUMBER = "600000";
+    private static final String CURRENT_ACCOUNT_NUMBER = "700000";
+    private static final String CUSTOMER_NUMBER = "C1";
+
+    private WinbooksFileConfiguration fileConfiguration;
+    private TestExtraService extraService;
+
+    @Before
+    public void setUp() {
+        fileConfiguration = new WinbooksFileConfiguration();
+        fileConfiguration.setDocumentMatchingMode(DocumentMatchingMode.SKIP);
+        WbBookYearFull archivedBookYear = createBookYear(0, "2019", Optional.of("ARCH2019"));
+        WbBookYearFull currentBookYear = createBookYear(1, "2020", Optional.empty());
+        extraService = new TestExtraService(List.of(archivedBookYear, currentBookYear));
+        extraService.setAccounts(List.of(
+                createAccount(ARCHIVED_ACCOUNT_NUMBER, "Purchases"),
+                createAccount(CURRENT_ACCOUNT_NUMBER, "Sales")));
+        extraService.setCustomers(List.of(createCustomer("Customer")));
+    }
+
+    @Test
+    public void testReuseUnchangedBookYearsEntries() {
+        AccountingManagerCache initialCache = new AccountingManagerCache(fileConfiguration, extraService);
+        List<ATAccountingEntry> initialEntries = streamEntryList(initialCache);
+        Assert.assertEquals(2, initialEntries.size());
+        Assert.assertEquals(1, extraService.getReaderCreationCount());
+        Assert.assertEquals(1, extraService.getReadCount(0));
+        Assert.assertEquals(1, extraService.getReadCount(1));
+
+        // Only the current book year is read again, the archived one is left alone
+        AccountingManagerCache refreshedCache = new AccountingManagerCache(initialCache, Set.of(WinbooksDossierTable.ACCOUNTING_ENTRY));
+        List<ATAccountingEntry> refreshedEntries = streamEntryList(refreshedCache);
+        Assert.assertEquals(2, refreshedEntries.size());
+        Assert.assertEquals(2, extraService.getReaderCreationCount());
+        Assert.assertEquals(1, extraService.getReadCount(0));
+        Assert.assertEquals(2, extraService.getReadCount(1));
+        Assert.assertSame(initialEntries.get(0), refreshedEntries.get(0));
+        Assert.assertNotSame(initialEntries.get(1), refreshedEntries.get(1));
+
+        // No entries table change: all entries are shared
+        AccountingManagerCache unchangedCache = new AccountingManagerCache(refreshedCache, Set.of());
+        List<ATAccountingEntry> unchangedEntries = streamEntryList(unchangedCache);
+        Assert.assertSame(refreshedEntries.get(0), unchangedEntries.get(0));
+        Assert.assertSame(refreshedEntries.get(1), unchangedEntries.get(1));
+        Assert.assertEquals(2, extraService.getReaderCreationCount());
+        Assert.assertEquals(1, extraService.getReadCount(0));
+        Assert.assertEquals(2, extraService.getReadCount(1));
+    }
+
+    @Test
+    public void testResolveChangedAccountsAndThirdPartiesOnReusedEntries() {
+        AccountingManagerCache initialCache = new AccountingManagerCache(fileConfiguration, extraService);
+        List<ATAccountingEntry> initialEntries = streamEntryList(initialCache);
+
+        extraService.setAccounts(List.of(
+                createAccount(ARCHIVED_ACCOUNT_NUMBER, "Purchases renamed"),
+                createAccount(CURRENT_ACCOUNT_NUMBER, "Sales renamed")));
+        extraService.setCustomers(List.of(createCustomer("Customer renamed")));
+        Set<WinbooksDossierTable> changedTables = Set.of(WinbooksDossierTable.ACCOUNT, WinbooksDossierTable.CUSTOMER_SUPPLIER);
+        AccountingManagerCache refreshedCache = new AccountingManagerCache(initialCache, changedTables);
+        List<ATAccountingEntry> refreshedEntries = streamEntryList(refreshedCache);
+
+        Assert.assertEquals(2, refreshedEntries.size());
+        for (int entryIndex = 0; entryIndex < refreshedEntries.size(); entryIndex++) {
+            ATAccountingEntry initialEntry = initialEntries.get(entryIndex);
+            ATAccountingEntry refreshedEntry = refreshedEntries.get(entryIndex);
+            Assert.assertNotSame(initialEntry, refreshedEntry);
+            Assert.assertSame(initialEntry.getBookPeriod(), refreshedEntry.getBookPeriod());
+            Assert.assertTrue(refreshedEntry.getAccount().getName().endsWith(" renamed"));
+            Assert.assertEquals("Customer renamed", refreshedEntry.getThirdPartyOptional().flatMap(ATThirdParty::getFullNameOptional).orElseThrow());
+            // The previous cache is left untouched
+            Assert.assertFalse(initialEntry.getAccount().getName().endsWith(" renamed"));
+            Assert.assertEquals("Customer", initialEntry.getThirdPartyOptional().flatMap(ATThirdParty::getFullNameOptional).orElseThrow());
+        }
+        // Resolved again without reading
+        Assert.assertEquals(1, extraService.getReaderCreationCount());
+        Assert.assertEquals(1, extraService.getReadCount(0));
+        Assert.assertEquals(1, extraService.getReadCount(1));
+    }
+
+    @Test
+    public void testReloadRejectingArchivedBookYearOnAccountsChange() {
+        fileConfiguration.setIgnoreConversionErrors(true);
+        extraService.setAccounts(List.of(createAccount(CURRENT_ACCOUNT_NUMBER, "Sales")));
+        AccountingManagerCache initialCache = new AccountingManagerCache(fileConfiguration, extraService);
+        Assert.assertEquals(1, streamEntryList(initialCache).size());
+
+        // Rejected entries are kept out until accounts change
+        AccountingManagerCache unchangedCache = new AccountingManagerCache(initialCache, Set.of(WinbooksDossierTable.CUSTOMER_SUPPLIER));
+        Assert.assertEquals(1, streamEntryList(unchangedCache).size());
+        Assert.assertEquals(1, extraService.getReadCount(0));
+
+        extraService.setAccounts(List.of(
+                createAccount(ARCHIVED_ACCOUNT_NUMBER, "Purchases"),
+                createAccount(CURRENT_ACCOUNT_NUMBER, "Sales")));
+        AccountingManagerCache refreshedCache = new AccountingManagerCache(unchangedCache, Set.of(WinbooksDossierTable.ACCOUNT));
+        List<ATAccountingEntry> refreshedEntries = streamEntryList(refreshedCache);
+        Assert.assertEquals(2, refreshedEntries.size());
+        Assert.assertEquals(ARCHIVED_ACCOUNT_NUMBER, refreshedEntries.get(0).getAccount().getCode());
+        Assert.assertEquals(2, extraService.getReadCount(0));
+        Assert.assertEquals(1, extraService.getReadCount(1));
+
+        // Nothing rejected anymore: the archived book year is not read again
+        AccountingManagerCache nextCache = new AccountingManagerCache(refreshedCache, Set.of(WinbooksDossierTable.ACCOUNT));
+        Assert.assertEquals(2, streamEntryList(nextCache).size());
+        Assert.assertEquals(2, extraService.getReadCount(0));
+    }
+
+    @Test
+    public void testLinkNewDocumentsOnEntriesChange() {
+        fileConfiguration.setDocumentMatchingMode(DocumentMatchingMode.EAGERLY_CACHE_ALL_DOCUMENTS);
+        AccountingManagerCache initialCache = new AccountingManagerCache(fileConfiguration, extraService);
+        List<ATAccountingEntry> initialEntries = streamEntryList(initialCache);
+        ATDocument archivedDocument = initialEntries.get(0).getDocumentOptional().orElseThrow();
+        Assert.assertEquals("1", initialEntries.get(1).getDocumentOptional().map(ATDocument::getDocumentNumber).orElseThrow());
+        Assert.assertEquals(1, extraService.getDocumentScanCount(0));
+        Assert.assertEquals(1, extraService.getDocumentScanCount(1));
+
+        // Documents are reused when only third parties changed
+        AccountingManagerCache thirdPartiesCache = new AccountingManagerCache(initialCache, Set.of(WinbooksDossierTable.CUSTOMER_SUPPLIER));
+        Assert.assertEquals(2, streamEntryList(thirdPartiesCache).size());
+        Assert.assertEquals(1, extraService.getDocumentScanCount(1));
+
+        // A new entry, with its new document
+        extraService.setCurrentDocNumber("2");
+        AccountingManagerCache refreshedCache = new AccountingManagerCache(thirdPartiesCache, Set.of(WinbooksDossierTable.ACCOUNTING_ENTRY));
+        List<ATAccountingEntry> refreshedEntries = streamEntryList(refreshedCache);
+        Assert.assertEquals("2", refreshedEntries.get(1).getDocumentOptional().map(ATDocument::getDocumentNumber).orElseThrow());
+        Assert.assertSame(archivedDocument, refreshedEntries.get(0).getDocumentOptional().orElseThrow());
+        List<String> documentNumbers = refreshedCache.streamDocuments()
+                .map(ATDocument::getDocumentNumber)
+                .sorted()
+                .collect(Collectors.toList());
+        Assert.assertEquals(List.of("1", "2"), documentNumbers);
+        // Documents of the archived book year are not scanned again
+        Assert.assertEquals(1, extraService.getDocumentScanCount(0));
+        Assert.assertEquals(2, extraService.getDocumentScanCount(1));
+    }
+
+    @Test
+    public void testGetCachedBookPeriod() {
+        AccountingManagerCache cache = new AccountingManagerCache(fileConfiguration, extraService);
+        WbBookYearFull wbBookYearFull = cache.streamWbBookYearFulls()
+                .findFirst()
+                .orElseThrow();
+        WbPeriod wbPeriod = wbBookYearFull.getPeriodList().get(0);
+        ATBookPeriod bookPeriod = cache.getCachedBookPeriodOrThrow(wbPeriod);
+        Assert.assertEquals("01", bookPeriod.getName());
+        Assert.assertEquals("2019", bookPeriod.getBookYear().getName());
+
+        // Another instance of the same period is matched by name
+        WbPeriod otherWbPeriod = new WbPeriod();
+        otherWbPeriod.setWbBookYearFull(wbBookYearFull);
+        otherWbPeriod.setIndex(wbPeriod.getIndex());
+        otherWbPeriod.setShortName(wbPeriod.getShortName());
+        Assert.assertSame(bookPeriod, cache.getCachedBookPeriodOrThrow(otherWbPeriod));
+    }
+
+    private List<ATAccountingEntry> streamEntryList(AccountingManagerCache cache) {
+        return cache.streamAccountingEntries()
+                .collect(Collectors.toList());
+    }
+
+    private WbBookYearFull createBookYear(int index, String shortName, Optional<String> archivePathNameOptional) {
+        int year = Integer.parseInt(shortName);
+        WbBookYearFull wbBookYearFull = new WbBookYearFull();
+        wbBookYearFull.setIndex(index);
+        wbBookYearFull.setShortName(shortName);
+        wbBookYearFull.setStartDate(LocalDate.of(year, 1, 1));
+        wbBookYearFull.setEndDate(LocalDate.of(year, 12, 31));
+        wbBookYearFull.setArchivePathNameOptional(archivePathNameOptional);
+
+        WbPeriod wbPeriod = new WbPeriod();
+        wbPeriod.setWbBookYearFull(wbBookYearFull);
+        wbPeriod.setIndex(1);
+        wbPeriod.setShortName("01");
+        wbPeriod.setStartDate(LocalDate.of(year, 1, 1));
+        wbPeriod.setEndDate(LocalDate.of(year, 12, 31));
+        wbBookYearFull.setPeriodList(List.of(wbPeriod));
+        return wbBookYearFull;
+    }
+
+    private WbAccount createAccount(String accountNumber, String name) {
+        WbAccount wbAccount = new WbAccount();
+        wbAccount.setAccountNumber(accountNumber);
+        wbAccount.setName11(name);
+        return wbAccount;
+    }
+
+    private WbClientSupplier createCustomer(String name) {
+        WbClientSupplier wbClientSupplier = new WbClientSupplier();
+        wbClientSupplier.setNumber(CUSTOMER_NUMBER);
+        wbClientSupplier.setWbClientSupplierType(WbClientSupplierType.CLIENT);
+        wbClientSupplier.setName1(name);
+        return wbClientSupplier;
+    }
+
+    /**
+     * Serves a dossier from memory, an entry and a document per book year, counting the book years read.
+     */
+    private static class TestExtraService extends WinbooksExtraService {
+        private final List<WbBookYearFull> bookYears;
+        private final Map<Integer, AtomicInteger> readCountsByBookYearIndex = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicInteger> documentScanCountsByBookYearIndex = new ConcurrentHashMap<>();
+        private final AtomicInteger readerCreationCount = new AtomicInteger();
+        private volatile List<WbAccount> accounts = List.of();
+        private volatile List<WbClientSupplier> customers = List.of();
+        // Document number of the entry and document of the book year that is not archived
+        private volatile String currentDocNumber = "1";
+
+        private TestExtraService(List<WbBookYearFull> bookYears) {
+            this.bookYears = bookYears;
+        }
+
+        private void setAccounts(List<WbAccount> accounts) {
+            this.accounts = accounts;
+        }
+
+        private void setCustomers(List<WbClientSupplier> customers) {
+            this.customers = customers;
+        }
+
+        private void setCurrentDocNumber(String currentDocNumber) {
+            this.currentDocNumber = currentDocNumber;
+        }
+
+        private int getDocumentScanCount(int bookYearIndex) {
+            return documentScanCountsByBookYearIndex.getOrDefault(bookYearIndex, new AtomicInteger()).get();
+        }
+
+        private int getReadCount(int bookYearIndex) {
+            return readCountsByBookYearIndex.getOrDefault(bookYearIndex, new AtomicInteger()).get();
+        }
+
+        private int getReaderCreationCount() {
+            return readerCreationCount.get();
+        }
+
+        @Override
+        public Stream<WbBookYearFull> streamBookYears(WinbooksFileConfiguration winbooksFileConfiguration) {
+            return bookYears.stream();
+        }
+
+        @Override
+        public int getAccountNumberLengthFromParamsTable(WinbooksFileConfiguration winbooksFileConfiguration) {
+            return 6;
+        }
+
+        @Override
+        public Stream<WbAccount> streamAcf(WinbooksFileConfiguration winbooksFileConfiguration) {
+            return accounts.stream();
+        }
+
+        @Override
+        public Stream<WbClientSupplier> streamCsf(WinbooksFileConfiguration winbooksFileConfiguration) {
+            return customers.stream();
+        }
+
+        @Override
+        public WbEntryDbfReader createWbEntryDbfReader(WinbooksFileConfiguration winbooksFileConfiguration, List<WbBookYearFull> wbBookYearFullList) {
+            readerCreationCount.incrementAndGet();
+            return super.createWbEntryDbfReader(winbooksFileConfiguration, wbBookYearFullList);
+        }
+
+        @Override
+        public Stream<WbEntry> streamBookYearAct(WinbooksFileConfiguration winbooksFileConfiguration,
+                                                 WbEntryDbfReader dbfReader, WbBookYearFull bookYearFull) {
+            readCountsByBookYearIndex.computeIfAbsent(bookYearFull.getIndex(), index -> new AtomicInteger())
+                    .incrementAndGet();
+            String accountNumber = bookYearFull.getArchivePathNameOptional().isPresent() ? ARCHIVED_ACCOUNT_NUMBER : CURRENT_ACCOUNT_NUMBER;
+            return Stream.of(createEntry(bookYearFull, accountNumber));
+        }
+
+        @Override
+        public Stream<WbDocument> streamBookYearsDocuments(WinbooksFileConfiguration fileConfiguration, List<WbBookYearFull> bookYears) {
+            return bookYears.stream()
+                    .peek(bookYear -> documentScanCountsByBookYearIndex.computeIfAbsent(bookYear.getIndex(), index -> new AtomicInteger())
+                            .incrementAndGet())
+                    .map(this::createDocument);
+        }
+
+        private String getDocNumber(WbBookYearFull bookYearFull) {
+            return bookYearFull.getArchivePathNameOptional().isPresent() ? "1" : currentDocNumber;
+        }
+
+        private WbDocument createDocument(WbBookYearFull bookYearFull) {
+            WbDocument wbDocument = new WbDocument();
+            wbDocument.setDocumentNumber(getDocNumber(bookYearFull));
+            wbDocument.setDbkCode("VENTES");
+            wbDocument.setWbPeriod(bookYearFull.getPeriodList().get(0));
+            wbDocument.setPartCount(1);
+            return wbDocument;
+        }
+
+        private WbEntry createEntry(WbBookYearFull bookYearFull, String accountNumber) {
+            LocalDate entryDate = bookYearFull.getStartDate().plusDays(1);
+            WbEntry wbEntry = new WbEntry();
+            wbEntry.setWbBookYearFull(bookYearFull);
+            wbEntry.setWbPeriod(bookYearFull.getPeriodList().get(0));
+            wbEntry.setWbDocType(WbDocType.IMPUT_CLIENT);
+            wbEntry.setDbkCode("VENTES");
+            wbEntry.setWbDbkType(WbDbkType.SALE);
+            wbEntry.setWbDocOrderType(WbDocOrderType.NUMBER);
+            wbEntry.setDocNumber(getDocNumber(bookYearFull));
+            wbEntry.setDocOrder(1);
+            wbEntry.setAccountGl(accountNumber);
+            wbEntry.setAccountRp(CUSTOMER_NUMBER);
+            wbEntry.setDate(Date.from(entryDate.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+            wbEntry.setAmountEur(BigDecimal.TEN);
+            return wbEntry;
+        }
+    }
+}
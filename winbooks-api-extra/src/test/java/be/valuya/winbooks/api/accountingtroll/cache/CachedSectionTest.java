@@ -0,0 +1,84 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class CachedSectionTest {
+
+    @Test
+    public void testConcurrentCallersShareLoad() throws Exception {
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loadStartedLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        CachedSection<String> cachedSection = new CachedSection<>(() -> {
+            loadCount.incrementAndGet();
+            loadStartedLatch.countDown();
+            await(releaseLatch);
+            return "loaded";
+        });
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(executorService.submit(cachedSection::get));
+            await(loadStartedLatch);
+            for (int callerIndex = 0; callerIndex < 3; callerIndex++) {
+                futures.add(executorService.submit(cachedSection::get));
+            }
+            Assert.assertFalse(cachedSection.getLoadedOptional().isPresent());
+            releaseLatch.countDown();
+
+            for (Future<String> future : futures) {
+                Assert.assertEquals("loaded", future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(1, loadCount.get());
+        Assert.assertEquals("loaded", cachedSection.getLoadedOptional().orElse(null));
+    }
+
+    @Test
+    public void testFailedLoadIsRetried() {
+        AtomicInteger loadCount = new AtomicInteger();
+        CachedSection<String> cachedSection = new CachedSection<>(() -> {
+            if (loadCount.incrementAndGet() == 1) {
+                throw new IllegalStateException("first load fails");
+            }
+            return "loaded";
+        });
+
+        try {
+            cachedSection.get();
+            Assert.fail();
+        } catch (IllegalStateException exception) {
+            // expected
+        }
+        Assert.assertEquals("loaded", cachedSection.get());
+        Assert.assertEquals(2, loadCount.get());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+}
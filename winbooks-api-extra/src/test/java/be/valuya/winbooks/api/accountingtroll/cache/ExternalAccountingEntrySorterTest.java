@@ -0,0 +1,144 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.accountingtroll.domain.ATAccount;
+import be.valuya.accountingtroll.domain.ATAccountingEntry;
+import be.valuya.accountingtroll.domain.ATBookPeriod;
+import be.valuya.accountingtroll.domain.ATBookYear;
+import be.valuya.accountingtroll.domain.ATPeriodType;
+import be.valuya.accountingtroll.domain.ATThirdParty;
+import be.valuya.accountingtroll.domain.AccountingEntryType;
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class ExternalAccountingEntrySorterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSortWithRunsOnDisk() throws Exception {
+        ATBookYear bookYear = new ATBookYear();
+        bookYear.setName("2019");
+        bookYear.setStartDate(LocalDate.of(2019, 1, 1));
+        bookYear.setEndDate(LocalDate.of(2019, 12, 31));
+        ATBookPeriod januaryPeriod = createBookPeriod(bookYear, 1);
+        ATBookPeriod februaryPeriod = createBookPeriod(bookYear, 2);
+        ATAccount account = new ATAccount();
+        account.setCode("400000");
+        ATThirdParty thirdParty = new ATThirdParty();
+        thirdParty.setId("C-ACME");
+
+        AccountingEntryRowCodec rowCodec = new AccountingEntryRowCodec(List.of(januaryPeriod, februaryPeriod),
+                code -> Optional.of(account).filter(a -> a.getCode().equals(code)),
+                id -> Optional.of(thirdParty).filter(t -> t.getId().equals(id)));
+        Path spillPath = temporaryFolder.newFolder("spill").toPath();
+        ExternalAccountingEntrySorter entrySorter = new ExternalAccountingEntrySorter(spillPath, 2, rowCodec);
+
+        List<ATAccountingEntry> unsortedEntries = List.of(
+                createEntry(februaryPeriod, 14, "12.50", account),
+                createEntry(januaryPeriod, 20, "-3.1", account),
+                createEntry(februaryPeriod, 2, "0", account),
+                createEntry(januaryPeriod, 5, "1000000000000.0001", account),
+                createEntry(januaryPeriod, 31, "7", account)
+        );
+        unsortedEntries.get(0).setThirdParty(thirdParty);
+        unsortedEntries.get(0).setComment("comment");
+
+        List<ATAccountingEntry> sortedEntries;
+        try (Stream<ATAccountingEntry> sortedEntryStream = entrySorter.sort(unsortedEntries.stream())) {
+            sortedEntries = sortedEntryStream.collect(Collectors.toList());
+        }
+
+        List<LocalDate> sortedDates = sortedEntries.stream()
+                .map(ATAccountingEntry::getDate)
+                .collect(Collectors.toList());
+        List<LocalDate> expectedDates = List.of(LocalDate.of(2019, 1, 5), LocalDate.of(2019, 1, 20),
+                LocalDate.of(2019, 1, 31), LocalDate.of(2019, 2, 2), LocalDate.of(2019, 2, 14));
+        Assert.assertEquals(expectedDates, sortedDates);
+
+        ATAccountingEntry readEntry = sortedEntries.get(0);
+        Assert.assertSame(januaryPeriod, readEntry.getBookPeriod());
+        Assert.assertSame(account, readEntry.getAccount());
+        Assert.assertEquals(new BigDecimal("1000000000000.0001"), readEntry.getAmount());
+        Assert.assertEquals(AccountingEntryType.MISC, readEntry.getAccountingEntryType());
+        ATAccountingEntry thirdPartyEntry = sortedEntries.get(4);
+        Assert.assertSame(thirdParty, thirdPartyEntry.getThirdPartyOptional().orElse(null));
+        Assert.assertEquals("comment", thirdPartyEntry.getCommentOptional().orElse(null));
+        Assert.assertFalse(thirdPartyEntry.getDueDateOptional().isPresent());
+
+        // Run files are removed once read
+        try (Stream<Path> spillPathStream = Files.list(spillPath)) {
+            Assert.assertEquals(0, spillPathStream.count());
+        }
+    }
+
+    @Test
+    public void testDeleteSortDirectoryOnceMerged() throws Exception {
+        ATBookYear bookYear = new ATBookYear();
+        bookYear.setName("2019");
+        bookYear.setStartDate(LocalDate.of(2019, 1, 1));
+        bookYear.setEndDate(LocalDate.of(2019, 12, 31));
+        ATBookPeriod januaryPeriod = createBookPeriod(bookYear, 1);
+        ATAccount account = new ATAccount();
+        account.setCode("400000");
+
+        AccountingEntryRowCodec rowCodec = new AccountingEntryRowCodec(List.of(januaryPeriod),
+                code -> Optional.of(account), id -> Optional.empty());
+        Path spillPath = temporaryFolder.newFolder("spill").toPath();
+        ExternalAccountingEntrySorter entrySorter = new ExternalAccountingEntrySorter(spillPath, 2, rowCodec);
+
+        List<ATAccountingEntry> unsortedEntries = List.of(
+                createEntry(januaryPeriod, 3, "1", account),
+                createEntry(januaryPeriod, 1, "2", account),
+                createEntry(januaryPeriod, 2, "3", account)
+        );
+        // Consumed without closing the stream
+        List<ATAccountingEntry> sortedEntries = entrySorter.sort(unsortedEntries.stream())
+                .collect(Collectors.toList());
+        Assert.assertEquals(3, sortedEntries.size());
+
+        try (Stream<Path> spillPathStream = Files.list(spillPath)) {
+            Assert.assertEquals(0, spillPathStream.count());
+        }
+    }
+
+    private ATBookPeriod createBookPeriod(ATBookYear bookYear, int month) {
+        ATBookPeriod bookPeriod = new ATBookPeriod();
+        bookPeriod.setBookYear(bookYear);
+        bookPeriod.setName(String.format("%02d", month));
+        LocalDate startDate = LocalDate.of(2019, month, 1);
+        bookPeriod.setStartDate(startDate);
+        bookPeriod.setEndDate(startDate.plusMonths(1).minusDays(1));
+        bookPeriod.setPeriodType(ATPeriodType.GENERAL);
+        return bookPeriod;
+    }
+
+    private ATAccountingEntry createEntry(ATBookPeriod bookPeriod, int dayOfMonth, String amount, ATAccount account) {
+        ATAccountingEntry accountingEntry = new ATAccountingEntry();
+        accountingEntry.setBookPeriod(bookPeriod);
+        accountingEntry.setDate(bookPeriod.getStartDate().withDayOfMonth(dayOfMonth));
+        accountingEntry.setAmount(new BigDecimal(amount));
+        accountingEntry.setDbkCode("VEN");
+        accountingEntry.setAccountingEntryType(AccountingEntryType.MISC);
+        accountingEntry.setDocNumber("1");
+        accountingEntry.setAccount(account);
+        return accountingEntry;
+    }
+}
@@ -0,0 +1,58 @@
+package be.valuya.winbooks.api.accountingtroll.cache;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class SortedRunsIteratorTest {
+
+    @Test
+    public void testMergeRuns() {
+        // Overlapping, empty, and out of order runs
+        List<List<Integer>> runs = List.of(
+                List.of(10, 11, 12),
+                List.of(1, 4, 7),
+                List.of(),
+                List.of(2, 3, 11, 20),
+                List.of(30, 31)
+        );
+        SortedRunsIterator<Integer> runsIterator = SortedRunsIterator.mergeLists(runs, Comparator.naturalOrder());
+
+        List<Integer> mergedElements = new ArrayList<>();
+        runsIterator.forEachRemaining(mergedElements::add);
+        Assert.assertEquals(List.of(1, 2, 3, 4, 7, 10, 11, 11, 12, 20, 30, 31), mergedElements);
+        Assert.assertFalse(runsIterator.hasNext());
+        try {
+            runsIterator.next();
+            Assert.fail();
+        } catch (NoSuchElementException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMergeEqualElementsInRunOrder() {
+        // Compared by letter only: equal elements come in the order of their runs
+        List<List<String>> runs = List.of(
+                List.of("b0", "c0", "c0'"),
+                List.of("a1", "b1", "c1"),
+                List.of("a2", "b2", "c2"),
+                List.of("c3")
+        );
+        SortedRunsIterator<String> runsIterator = SortedRunsIterator.mergeLists(runs, Comparator.comparing(element -> element.charAt(0)));
+
+        List<String> mergedElements = new ArrayList<>();
+        runsIterator.forEachRemaining(mergedElements::add);
+        Assert.assertEquals(List.of("a1", "a2", "b0", "b1", "b2", "c0", "c0'", "c1", "c2", "c3"), mergedElements);
+    }
+}
@@ -0,0 +1,170 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WinbooksDocumentContentCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path cacheDirectoryPath;
+
+    @Before
+    public void setup() {
+        cacheDirectoryPath = temporaryFolder.getRoot().toPath().resolve("cache");
+    }
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+
+        readContentSize(contentCache, "a", writeBytes(10));
+        long cachedContentSize = readContentSize(contentCache, "a", outputStream -> Assert.fail("Content should be cached"));
+
+        Assert.assertEquals(10, cachedContentSize);
+        Assert.assertEquals(10, Files.size(contentCache.resolveContentPath("a")));
+        Assert.assertEquals(1, contentCache.getHitCount());
+        Assert.assertEquals(1, contentCache.getMissCount());
+        Assert.assertEquals(10, contentCache.getSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+
+        readContentSize(contentCache, "a", writeBytes(40));
+        readContentSize(contentCache, "b", writeBytes(40));
+        readContentSize(contentCache, "a", writeBytes(40));
+        readContentSize(contentCache, "c", writeBytes(40));
+
+        Assert.assertTrue(Files.exists(contentCache.resolveContentPath("a")));
+        Assert.assertFalse(Files.exists(contentCache.resolveContentPath("b")));
+        Assert.assertTrue(Files.exists(contentCache.resolveContentPath("c")));
+        Assert.assertEquals(1, contentCache.getEvictionCount());
+        Assert.assertEquals(80, contentCache.getSize());
+    }
+
+    @Test
+    public void testReadEvictedOpenContent() throws IOException {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 50);
+
+        try (SeekableByteChannel contentChannel = contentCache.openContent("a", writeBytes(40))) {
+            readContentSize(contentCache, "b", writeBytes(40));
+
+            Assert.assertFalse(Files.exists(contentCache.resolveContentPath("a")));
+            Assert.assertEquals(40, contentChannel.size());
+        }
+    }
+
+    @Test
+    public void testWriteConcurrentMissesOnce() throws Exception {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+        AtomicInteger writeCount = new AtomicInteger();
+        CountDownLatch writeStartedLatch = new CountDownLatch(1);
+        CountDownLatch writeReleasedLatch = new CountDownLatch(1);
+        Consumer<OutputStream> blockingWriter = outputStream -> {
+            writeCount.incrementAndGet();
+            writeStartedLatch.countDown();
+            awaitLatch(writeReleasedLatch);
+            writeBytes(10).accept(outputStream);
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> contentSizeFutures = new ArrayList<>();
+            contentSizeFutures.add(executorService.submit(() -> readContentSize(contentCache, "a", blockingWriter)));
+            Assert.assertTrue(writeStartedLatch.await(10, TimeUnit.SECONDS));
+            for (int callerIndex = 0; callerIndex < 3; callerIndex++) {
+                contentSizeFutures.add(executorService.submit(() -> readContentSize(contentCache, "a", blockingWriter)));
+            }
+            writeReleasedLatch.countDown();
+
+            for (Future<Long> contentSizeFuture : contentSizeFutures) {
+                Assert.assertEquals(10L, (long) contentSizeFuture.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(1, writeCount.get());
+        Assert.assertEquals(1, contentCache.getMissCount());
+        Assert.assertEquals(10, contentCache.getSize());
+    }
+
+    @Test
+    public void testReloadIndex() {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+        readContentSize(contentCache, "a", writeBytes(30));
+        readContentSize(contentCache, "b", writeBytes(20));
+
+        WinbooksDocumentContentCache reloadedContentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+        readContentSize(reloadedContentCache, "a", outputStream -> Assert.fail("Content should be cached"));
+
+        Assert.assertEquals(2, reloadedContentCache.getEntryCount());
+        Assert.assertEquals(50, reloadedContentCache.getSize());
+        Assert.assertEquals(1, reloadedContentCache.getHitCount());
+    }
+
+    @Test
+    public void testClear() {
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 100);
+        readContentSize(contentCache, "a", writeBytes(30));
+
+        contentCache.clear();
+
+        Assert.assertFalse(Files.exists(contentCache.resolveContentPath("a")));
+        Assert.assertEquals(0, contentCache.getSize());
+        Assert.assertEquals(0, contentCache.getEntryCount());
+    }
+
+    private long readContentSize(WinbooksDocumentContentCache contentCache, String key, Consumer<OutputStream> contentWriter) {
+        try (SeekableByteChannel contentChannel = contentCache.openContent(key, contentWriter)) {
+            return contentChannel.size();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Consumer<OutputStream> writeBytes(int size) {
+        return outputStream -> {
+            try {
+                outputStream.write(new byte[size]);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WinbooksDocumentFileNameTest {
+
+    @Test
+    public void testParseLegacyFileName() {
+        WinbooksDocumentFileName documentFileName = WinbooksDocumentFileName.parse("ACHATS_01_200084_03.pdf")
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertEquals("ACHATS", documentFileName.getDbkCode());
+        Assert.assertEquals("01", documentFileName.getPeriodName());
+        Assert.assertEquals("200084", documentFileName.getDocumentNumber());
+        Assert.assertEquals(3, documentFileName.getPartNumber());
+        Assert.assertEquals("ACHATS_01_200084_{0,number,00}.pdf", documentFileName.getFileNameTemplate());
+        Assert.assertEquals("ACHATS_01_200084_03.pdf", MessageFormat.format(documentFileName.getFileNameTemplate(), 3));
+        Assert.assertEquals(Optional.of(1), documentFileName.getPeriodIndexOptional());
+    }
+
+    @Test
+    public void testParseFlaggedFileName() {
+        WinbooksDocumentFileName documentFileName = WinbooksDocumentFileName.parse("VEN_TES_12_200083___00012_B.pdf")
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertEquals("VEN_TES", documentFileName.getDbkCode());
+        Assert.assertEquals("12", documentFileName.getPeriodName());
+        Assert.assertEquals("200083", documentFileName.getDocumentNumber());
+        Assert.assertEquals(12, documentFileName.getPartNumber());
+        Assert.assertEquals("VEN_TES_12_200083___{0,number,00000}_B.pdf", documentFileName.getFileNameTemplate());
+        Assert.assertEquals("VEN_TES_12_200083___00012_B.pdf", MessageFormat.format(documentFileName.getFileNameTemplate(), 12));
+    }
+
+    @Test
+    public void testRejectFileNames() {
+        List<String> fileNames = List.of(
+                "ACHATS_01_200084_3.pdf",
+                "ACHATS_01_200084_003.pdf",
+                "ACHATS_01_200084_03.PDF",
+                "ACHATS_01_200084_03.pdf.tmp",
+                "_01_200084_03.pdf",
+                "ACH-ATS_01_200084_03.pdf",
+                "ACHATS_1A_200084_03.pdf",
+                "ACHATS__200084_03.pdf",
+                "ACHATS_01_200083__00000_B.pdf",
+                "ACHATS_01_200083___0000_B.pdf",
+                "ACHATS_01_200083___00000_b.pdf",
+                "notes.txt",
+                ".pdf"
+        );
+        for (String fileName : fileNames) {
+            Assert.assertFalse(fileName, WinbooksDocumentFileName.parse(fileName).isPresent());
+        }
+    }
+
+    @Test
+    public void testPeriodIndex() {
+        Assert.assertEquals(Optional.of(0), parsePeriodIndex("00"));
+        Assert.assertEquals(Optional.of(123), parsePeriodIndex("123"));
+        Assert.assertEquals(Optional.empty(), parsePeriodIndex("1"));
+        Assert.assertEquals(Optional.empty(), parsePeriodIndex("001"));
+        Assert.assertEquals(Optional.empty(), parsePeriodIndex("0123"));
+    }
+
+    private Optional<Integer> parsePeriodIndex(String periodName) {
+        return WinbooksDocumentFileName.parse("ACHATS_" + periodName + "_1_00.pdf")
+                .flatMap(WinbooksDocumentFileName::getPeriodIndexOptional);
+    }
+}
@@ -0,0 +1,409 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.jbooks.model.WbDocument;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WinbooksDocumentsServiceTest {
+
+    private static final String FILE_NAME_TEMPLATE = "ACHATS_01_200084_{0,number,00}.pdf";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private WinbooksDocumentsService documentsService;
+    private WinbooksFileConfiguration fileConfiguration;
+    private Path dbkPath;
+    private WbBookYearFull bookYear;
+
+    @Before
+    public void setup() throws IOException {
+        Path rootPath = temporaryFolder.getRoot().toPath();
+        Path dossierPath = Files.createDirectory(rootPath.resolve("DOSSIER"));
+        dbkPath = Files.createDirectories(dossierPath.resolve("Document").resolve("2019").resolve("ACHATS"));
+
+        fileConfiguration = new WinbooksFileConfiguration();
+        fileConfiguration.setRootPath(rootPath);
+        fileConfiguration.setBasePathName("DOSSIER");
+        fileConfiguration.setWinbooksCompanyName("DOSSIER");
+
+        WbPeriod wbPeriod = new WbPeriod();
+        wbPeriod.setIndex(1);
+        bookYear = new WbBookYearFull();
+        bookYear.setIndex(1);
+        bookYear.setShortName("2019");
+        bookYear.setPeriodList(List.of(wbPeriod));
+        wbPeriod.setWbBookYearFull(bookYear);
+
+        documentsService = new WinbooksDocumentsService();
+    }
+
+    @Test
+    public void testMergeDocumentParts() throws IOException {
+        int partCount = 12;
+        for (int partIndex = 0; partIndex < partCount; partIndex++) {
+            writePdfPart(partIndex, 2);
+        }
+        WbDocument document = createDocument(partCount);
+
+        byte[] content = documentsService.getDocumentData(fileConfiguration, document)
+                .orElseThrow(AssertionError::new);
+
+        PdfReader pdfReader = new PdfReader(content);
+        Assert.assertEquals(partCount * 2, pdfReader.getNumberOfPages());
+        pdfReader.close();
+    }
+
+    @Test
+    public void testSinglePartDocumentIsNotRewritten() throws IOException {
+        Path partPath = writePdfPart(0, 3);
+        WbDocument document = createDocument(1);
+
+        byte[] content = documentsService.getDocumentData(fileConfiguration, document)
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertArrayEquals(Files.readAllBytes(partPath), content);
+    }
+
+    @Test
+    public void testWriteDocumentContent() throws IOException {
+        Path partPath = writePdfPart(0, 1);
+        WbDocument singlePartDocument = createDocument(1);
+        ByteArrayOutputStream singlePartOutputStream = new ByteArrayOutputStream();
+
+        boolean singlePartFound = documentsService.writeDocumentContent(fileConfiguration, singlePartDocument, singlePartOutputStream);
+
+        Assert.assertTrue(singlePartFound);
+        Assert.assertArrayEquals(Files.readAllBytes(partPath), singlePartOutputStream.toByteArray());
+
+        writePdfPart(1, 2);
+        WbDocument multiPartDocument = createDocument(2);
+        ByteArrayOutputStream multiPartOutputStream = new ByteArrayOutputStream();
+
+        boolean multiPartFound = documentsService.writeDocumentContent(fileConfiguration, multiPartDocument, multiPartOutputStream);
+
+        Assert.assertTrue(multiPartFound);
+        PdfReader pdfReader = new PdfReader(multiPartOutputStream.toByteArray());
+        Assert.assertEquals(3, pdfReader.getNumberOfPages());
+        pdfReader.close();
+    }
+
+    @Test
+    public void testOpenDocumentContent() throws IOException {
+        writePdfPart(0, 1);
+        writePdfPart(1, 1);
+        WbDocument document = createDocument(2);
+
+        try (InputStream inputStream = documentsService.openDocumentContent(fileConfiguration, document)
+                .orElseThrow(AssertionError::new)) {
+            PdfReader pdfReader = new PdfReader(inputStream);
+            Assert.assertEquals(2, pdfReader.getNumberOfPages());
+            pdfReader.close();
+        }
+
+        WbDocument missingDocument = createDocument(2);
+        missingDocument.setDocumentNumber("200085");
+        missingDocument.setFileNameTemplate("ACHATS_01_200085_{0,number,00}.pdf");
+        Assert.assertFalse(documentsService.openDocumentContent(fileConfiguration, missingDocument).isPresent());
+    }
+
+    @Test
+    public void testCachedDocumentContent() throws IOException {
+        writePdfPart(0, 1);
+        writePdfPart(1, 1);
+        WbDocument document = createDocument(2);
+        Path cacheDirectoryPath = temporaryFolder.getRoot().toPath().resolve("cache");
+        WinbooksDocumentContentCache contentCache = new WinbooksDocumentContentCache(cacheDirectoryPath, 1024 * 1024);
+        fileConfiguration.setDocumentContentCacheOptional(Optional.of(contentCache));
+
+        byte[] content = documentsService.getDocumentData(fileConfiguration, document)
+                .orElseThrow(AssertionError::new);
+        ByteArrayOutputStream cachedOutputStream = new ByteArrayOutputStream();
+        documentsService.writeDocumentContent(fileConfiguration, document, cachedOutputStream);
+
+        Assert.assertArrayEquals(content, cachedOutputStream.toByteArray());
+        Assert.assertEquals(1, contentCache.getMissCount());
+        Assert.assertEquals(1, contentCache.getHitCount());
+
+        // A modified part invalidates the cached content
+        Path partPath = writePdfPart(1, 3);
+        Files.setLastModifiedTime(partPath, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        byte[] updatedContent = documentsService.getDocumentData(fileConfiguration, document)
+                .orElseThrow(AssertionError::new);
+
+        Assert.assertEquals(2, contentCache.getMissCount());
+        PdfReader pdfReader = new PdfReader(updatedContent);
+        Assert.assertEquals(4, pdfReader.getNumberOfPages());
+        pdfReader.close();
+    }
+
+    @Test
+    public void testWriteDocumentPart() throws IOException {
+        writePdfPart(0, 1);
+        Path secondPartPath = writePdfPart(1, 2);
+        WbDocument document = createDocument(3);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        boolean partFound = documentsService.writeDocumentPartContent(fileConfiguration, document, 1, outputStream);
+        boolean missingPartFound = documentsService.writeDocumentPartContent(fileConfiguration, document, 2, new ByteArrayOutputStream());
+
+        Assert.assertTrue(partFound);
+        Assert.assertFalse(missingPartFound);
+        Assert.assertArrayEquals(Files.readAllBytes(secondPartPath), outputStream.toByteArray());
+    }
+
+    @Test
+    public void testWriteDocumentPages() throws IOException {
+        writePdfPart(0, 2);
+        writePdfPart(1, 2);
+        WbDocument document = createDocument(3);
+        // The third part is corrupted, and must not be read
+        Files.write(dbkPath.resolve(MessageFormat.format(FILE_NAME_TEMPLATE, 2)), new byte[4]);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        boolean pagesFound = documentsService.writeDocumentPagesContent(fileConfiguration, document, 2, 3, outputStream);
+
+        Assert.assertTrue(pagesFound);
+        PdfReader pdfReader = new PdfReader(outputStream.toByteArray());
+        Assert.assertEquals(2, pdfReader.getNumberOfPages());
+        pdfReader.close();
+
+        try (InputStream firstPageInputStream = documentsService.openDocumentPagesContent(fileConfiguration, document, 1, 1)
+                .orElseThrow(AssertionError::new)) {
+            PdfReader firstPageReader = new PdfReader(firstPageInputStream);
+            Assert.assertEquals(1, firstPageReader.getNumberOfPages());
+            firstPageReader.close();
+        }
+    }
+
+    @Test
+    public void testStreamBookYearDocuments() throws IOException {
+        writePdfPart(0, 1);
+        writePdfPart(1, 1);
+        Files.write(dbkPath.resolve("notes.txt"), new byte[1]);
+
+        List<WbDocument> documents = documentsService.streamBookYearDocuments(fileConfiguration, bookYear)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, documents.size());
+        WbDocument document = documents.get(0);
+        Assert.assertEquals("ACHATS", document.getDbkCode());
+        Assert.assertEquals("200084", document.getDocumentNumber());
+        Assert.assertEquals(2, document.getPartCount());
+        Assert.assertEquals(FILE_NAME_TEMPLATE, document.getFileNameTemplate());
+        Assert.assertNotNull(document.getUpdatedTime());
+    }
+
+    @Test
+    public void testStreamBookYearsDocumentsConcurrently() throws IOException {
+        writePdfPart(0, 1);
+        writePdfPart(1, 1);
+        Path otherDbkPath = Files.createDirectory(dbkPath.resolveSibling("VENTES"));
+        Files.write(otherDbkPath.resolve("VENTES_01_100001_00.pdf"), new byte[1]);
+        Files.write(otherDbkPath.resolve("VENTES_01_100002_00.pdf"), new byte[1]);
+        fileConfiguration.setDocumentScanParallelism(4);
+
+        List<WbDocument> documents = documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(3, documents.size());
+        WbDocument achatsDocument = documents.stream()
+                .filter(document -> document.getDbkCode().equals("ACHATS"))
+                .findAny()
+                .orElseThrow(AssertionError::new);
+        Assert.assertEquals(2, achatsDocument.getPartCount());
+    }
+
+    @Test
+    public void testStreamBookYearDbkDocuments() throws IOException {
+        writePdfPart(0, 1);
+        Path otherDbkPath = Files.createDirectory(dbkPath.resolveSibling("VENTES"));
+        Files.write(otherDbkPath.resolve("VENTES_01_100001_00.pdf"), new byte[1]);
+
+        List<WbDocument> documents = documentsService.streamBookYearDbkDocuments(fileConfiguration, bookYear, "achats")
+                .collect(Collectors.toList());
+        long missingDbkDocumentCount = documentsService.streamBookYearDbkDocuments(fileConfiguration, bookYear, "DIVERS")
+                .count();
+
+        Assert.assertEquals(1, documents.size());
+        Assert.assertEquals("ACHATS", documents.get(0).getDbkCode());
+        Assert.assertEquals(0, missingDbkDocumentCount);
+    }
+
+    @Test
+    public void testWritePeriodDocumentsZip() throws IOException {
+        writePdfPart(0, 1);
+        writePdfPart(1, 2);
+        Path otherDbkPath = Files.createDirectory(dbkPath.resolveSibling("VENTES"));
+        Files.write(otherDbkPath.resolve("VENTES_01_100001_00.pdf"), new byte[]{1, 2, 3});
+        WbPeriod period = bookYear.getPeriodList().get(0);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int documentCount = documentsService.writePeriodDocumentsZip(fileConfiguration, bookYear, period, Optional.empty(), outputStream);
+
+        Assert.assertEquals(2, documentCount);
+        Map<String, byte[]> contentsByEntryName = readZipEntries(outputStream.toByteArray());
+        Assert.assertEquals(Set.of("ACHATS/200084.pdf", "VENTES/100001.pdf"), contentsByEntryName.keySet());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, contentsByEntryName.get("VENTES/100001.pdf"));
+        PdfReader pdfReader = new PdfReader(contentsByEntryName.get("ACHATS/200084.pdf"));
+        Assert.assertEquals(3, pdfReader.getNumberOfPages());
+        pdfReader.close();
+
+        ByteArrayOutputStream dbkOutputStream = new ByteArrayOutputStream();
+        int dbkDocumentCount = documentsService.writePeriodDocumentsZip(fileConfiguration, bookYear, period, Optional.of("VENTES"), dbkOutputStream);
+
+        Assert.assertEquals(1, dbkDocumentCount);
+        Assert.assertEquals(Set.of("VENTES/100001.pdf"), readZipEntries(dbkOutputStream.toByteArray()).keySet());
+    }
+
+    @Test
+    public void testWritePeriodDocumentsZipWithDuplicateNumbers() throws IOException {
+        writePdfPart(0, 1);
+        // Same dbk code, from another folder
+        Path otherDbkPath = Files.createDirectory(dbkPath.resolveSibling("ACHATS_OLD"));
+        Files.write(otherDbkPath.resolve("ACHATS_01_200084_00.pdf"), new byte[]{1, 2, 3});
+        WbPeriod period = bookYear.getPeriodList().get(0);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int documentCount = documentsService.writePeriodDocumentsZip(fileConfiguration, bookYear, period, Optional.empty(), outputStream);
+
+        Assert.assertEquals(2, documentCount);
+        Map<String, byte[]> contentsByEntryName = readZipEntries(outputStream.toByteArray());
+        Assert.assertEquals(Set.of("ACHATS/200084.pdf", "ACHATS/200084_2.pdf"), contentsByEntryName.keySet());
+    }
+
+    @Test
+    public void testDocumentIndex() throws IOException {
+        writePdfPart(0, 1);
+        Path indexFilePath = temporaryFolder.getRoot().toPath().resolve("index").resolve("DOSSIER.idx");
+        fileConfiguration.setDocumentIndexOptional(Optional.of(new WinbooksDocumentIndex(indexFilePath)));
+
+        List<WbDocument> documents = documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, documents.size());
+        Assert.assertTrue(Files.exists(indexFilePath));
+
+        // Reloaded from disk: the unchanged folder is not listed again
+        WinbooksDocumentIndex reloadedDocumentIndex = new WinbooksDocumentIndex(indexFilePath);
+        fileConfiguration.setDocumentIndexOptional(Optional.of(reloadedDocumentIndex));
+        FileTime folderLastModifiedTime = Files.getLastModifiedTime(dbkPath);
+        Files.write(dbkPath.resolve("ACHATS_01_200085_00.pdf"), new byte[1]);
+        Files.setLastModifiedTime(dbkPath, folderLastModifiedTime);
+        List<WbDocument> indexedDocuments = documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(1, indexedDocuments.size());
+        WbDocument indexedDocument = indexedDocuments.get(0);
+        Assert.assertEquals("200084", indexedDocument.getDocumentNumber());
+        Assert.assertSame(bookYear.getPeriodList().get(0), indexedDocument.getWbPeriod());
+        Assert.assertEquals(documents.get(0).getUpdatedTime(), indexedDocument.getUpdatedTime());
+        Assert.assertEquals(1, reloadedDocumentIndex.getHitCount());
+
+        // A changed folder is listed again
+        Files.setLastModifiedTime(dbkPath, FileTime.fromMillis(folderLastModifiedTime.toMillis() + 60_000));
+        List<WbDocument> updatedDocuments = documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(2, updatedDocuments.size());
+        Assert.assertEquals(1, reloadedDocumentIndex.getMissCount());
+    }
+
+    @Test
+    public void testDocumentIndexDropsRemovedFolders() throws IOException {
+        writePdfPart(0, 1);
+        Path otherDbkPath = Files.createDirectory(dbkPath.resolveSibling("VENTES"));
+        Files.write(otherDbkPath.resolve("VENTES_01_100001_00.pdf"), new byte[1]);
+        Path indexFilePath = temporaryFolder.getRoot().toPath().resolve("index").resolve("DOSSIER.idx");
+        WinbooksDocumentIndex documentIndex = new WinbooksDocumentIndex(indexFilePath);
+        fileConfiguration.setDocumentIndexOptional(Optional.of(documentIndex));
+
+        documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(2, documentIndex.getFolderCount());
+
+        Files.delete(otherDbkPath.resolve("VENTES_01_100001_00.pdf"));
+        Files.delete(otherDbkPath);
+        documentsService.streamBookYearsDocuments(fileConfiguration, List.of(bookYear))
+                .collect(Collectors.toList());
+        WinbooksDocumentIndex reloadedDocumentIndex = new WinbooksDocumentIndex(indexFilePath);
+
+        Assert.assertEquals(1, documentIndex.getFolderCount());
+        Assert.assertEquals(1, reloadedDocumentIndex.getFolderCount());
+    }
+
+    private Map<String, byte[]> readZipEntries(byte[] zipContent) throws IOException {
+        Map<String, byte[]> contentsByEntryName = new HashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zipContent))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                contentsByEntryName.put(zipEntry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+        return contentsByEntryName;
+    }
+
+    private WbDocument createDocument(int partCount) {
+        WbDocument document = new WbDocument();
+        document.setDbkCode("ACHATS");
+        document.setDocumentNumber("200084");
+        document.setPartCount(partCount);
+        document.setWbPeriod(bookYear.getPeriodList().get(0));
+        document.setFileNameTemplate(FILE_NAME_TEMPLATE);
+        return document;
+    }
+
+    private Path writePdfPart(int partIndex, int pageCount) throws IOException {
+        String fileName = MessageFormat.format(FILE_NAME_TEMPLATE, partIndex);
+        Path partPath = dbkPath.resolve(fileName);
+        try (OutputStream outputStream = Files.newOutputStream(partPath)) {
+            Document pdfDocument = new Document();
+            PdfWriter.getInstance(pdfDocument, outputStream);
+            pdfDocument.open();
+            for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                pdfDocument.newPage();
+                pdfDocument.add(new Paragraph("Part " + partIndex + ", page " + pageIndex));
+            }
+            pdfDocument.close();
+        } catch (DocumentException exception) {
+            throw new IOException(exception);
+        }
+        return partPath;
+    }
+}
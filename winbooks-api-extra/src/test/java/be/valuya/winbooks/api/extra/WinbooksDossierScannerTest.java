@@ -0,0 +1,128 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import be.valuya.winbooks.api.latency.LatencyEnvironment;
+import be.valuya.winbooks.api.latency.LatencyFileSystem;
+import be.valuya.winbooks.api.latency.LatencyFileSystemProvider;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WinbooksDossierScannerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LatencyFileSystem fileSystem;
+    private Path dossierPath;
+    private WinbooksFileConfiguration fileConfiguration;
+
+    @Before
+    public void setup() throws IOException {
+        Path localRootPath = temporaryFolder.getRoot().toPath();
+        Path localDossierPath = Files.createDirectory(localRootPath.resolve("DOSSIER"));
+        Files.write(localDossierPath.resolve("DOSSIER_ACT.DBF"), new byte[16]);
+        Files.write(localDossierPath.resolve("dossier_acf.dbf"), new byte[8]);
+        Path localDbkPath = Files.createDirectories(localDossierPath.resolve("Document").resolve("2019").resolve("ACHATS"));
+        Files.write(localDbkPath.resolve("ACHATS_01_200084_00.pdf"), new byte[4]);
+        Files.write(localDbkPath.resolve("ACHATS_01_200084_01.pdf"), new byte[4]);
+
+        fileSystem = LatencyFileSystem.newFileSystem(new LatencyEnvironment());
+        Path rootPath = fileSystem.wrap(localRootPath);
+        dossierPath = rootPath.resolve("DOSSIER");
+
+        fileConfiguration = new WinbooksFileConfiguration();
+        fileConfiguration.setRootPath(rootPath);
+        fileConfiguration.setBasePathName("DOSSIER");
+        fileConfiguration.setWinbooksCompanyName("DOSSIER");
+    }
+
+    @After
+    public void closeFileSystem() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void testScanDossier() {
+        WinbooksDossierManifest dossierManifest = new WinbooksDossierScanner().scanDossier(dossierPath);
+
+        Path documentsPath = dossierPath.resolve("Document");
+        Path dbkPath = documentsPath.resolve("2019").resolve("ACHATS");
+        Assert.assertEquals(dossierPath, dossierManifest.getDossierBasePath());
+        Assert.assertTrue(dossierManifest.isScannedDirectory(dossierPath));
+        Assert.assertTrue(dossierManifest.isScannedDirectory(documentsPath));
+        Assert.assertTrue(dossierManifest.isScannedDirectory(dbkPath));
+
+        List<WinbooksFileEntry> documentEntries = dossierManifest.getDirectoryEntriesOptional(dbkPath)
+                .orElseThrow(AssertionError::new);
+        Assert.assertEquals(2, documentEntries.size());
+        documentEntries.forEach(entry -> Assert.assertEquals(4, entry.getSize()));
+
+        WinbooksFileEntry actEntry = dossierManifest.getEntryOptional(dossierPath.resolve("DOSSIER_ACT.DBF"))
+                .orElseThrow(AssertionError::new);
+        Assert.assertFalse(actEntry.isDirectory());
+        Assert.assertEquals(16, actEntry.getSize());
+    }
+
+    @Test
+    public void testResolveFromManifest() {
+        WinbooksDossierManifest dossierManifest = new WinbooksDossierScanner().scanDossier(dossierPath);
+        fileConfiguration.setDossierManifestOptional(Optional.of(dossierManifest));
+        LatencyFileSystemProvider provider = fileSystem.provider();
+        provider.resetStatistics();
+
+        Optional<Path> actPathOptional = WinbooksPathUtils.resolvePath(fileConfiguration, dossierPath, "DOSSIER_ACT.dbf");
+        Optional<Path> acfPathOptional = WinbooksPathUtils.resolvePath(fileConfiguration, dossierPath, "DOSSIER_ACF.dbf");
+        Optional<Path> csfPathOptional = WinbooksPathUtils.resolvePath(fileConfiguration, dossierPath, "DOSSIER_CSF.dbf");
+        Path basePath = WinbooksPathUtils.getDossierBasePath(fileConfiguration);
+        List<Path> documentPaths = WinbooksPathUtils.streamDirectoryFiles(fileConfiguration,
+                dossierPath.resolve("Document").resolve("2019").resolve("ACHATS"), path -> true)
+                .map(WinbooksFileEntry::getPath)
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(Optional.of(dossierPath.resolve("DOSSIER_ACT.DBF")), actPathOptional);
+        Assert.assertEquals(Optional.of(dossierPath.resolve("dossier_acf.dbf")), acfPathOptional);
+        Assert.assertEquals(Optional.empty(), csfPathOptional);
+        Assert.assertEquals(dossierPath, basePath);
+        Assert.assertEquals(2, documentPaths.size());
+        Assert.assertEquals(0, provider.getCallCount());
+    }
+
+    @Test
+    public void testScanArchives() throws IOException {
+        WinbooksDossierScanner dossierScanner = new WinbooksDossierScanner();
+        WinbooksDossierManifest dossierManifest = dossierScanner.scanDossier(dossierPath);
+
+        Path archivePath = Files.createDirectory(dossierPath.resolveSibling("DOSSIER-2013"));
+        Files.write(archivePath.resolve("DOSSIER_ACT.DBF"), new byte[2]);
+        Map<String, Optional<Path>> archivePaths = Map.of(
+                "C:\\DOSSIER-2013", Optional.of(archivePath),
+                "C:\\DOSSIER-2012", Optional.empty()
+        );
+        WinbooksDossierManifest fullDossierManifest = dossierScanner.scanArchives(dossierManifest, archivePaths);
+
+        Assert.assertTrue(fullDossierManifest.isScannedDirectory(dossierPath));
+        Assert.assertTrue(fullDossierManifest.isScannedDirectory(archivePath));
+        Assert.assertTrue(fullDossierManifest.isScannedArchivePath("C:\\DOSSIER-2012"));
+        Assert.assertEquals(Optional.empty(), fullDossierManifest.getArchivePathOptional("C:\\DOSSIER-2012"));
+        Assert.assertEquals(Optional.of(archivePath), fullDossierManifest.getArchivePathOptional("C:\\DOSSIER-2013"));
+        Assert.assertTrue(fullDossierManifest.getEntryOptional(archivePath.resolve("DOSSIER_ACT.DBF")).isPresent());
+    }
+}
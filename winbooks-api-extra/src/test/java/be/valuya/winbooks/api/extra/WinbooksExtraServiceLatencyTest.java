@@ -0,0 +1,128 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.winbooks.api.LatencyWinbooksDossierCategory;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import be.valuya.winbooks.api.latency.LatencyEnvironment;
+import be.valuya.winbooks.api.latency.LatencyFileSystem;
+import be.valuya.winbooks.api.latency.LatencyFileSystemProvider;
+import be.valuya.winbooks.domain.error.WinbooksConfigurationException;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Measures dossier operations against a local dossier, accessed through a file system simulating network latency
+ * and limited bandwidth.
+ */
+@RunWith(JUnit4.class)
+@Category(LatencyWinbooksDossierCategory.class)
+public class WinbooksExtraServiceLatencyTest {
+
+    private static LatencyFileSystem FILESYSTEM;
+    private static Path ROOT_PATH;
+    private static String BASE_NAME;
+
+    private WinbooksExtraService winbooksExtraService;
+    private WinbooksFileConfiguration winbooksFileConfiguration;
+
+    private Logger logger = Logger.getLogger(WinbooksExtraServiceLatencyTest.class.getName());
+
+    @BeforeClass
+    public static void initFileSystem() {
+        String rootPathName = System.getProperty("winbooks.test.folder");
+        BASE_NAME = System.getProperty("winbooks.test.base.name");
+        long latencyMillis = Long.parseLong(System.getProperty("winbooks.test.latency.millis", "20"));
+        long bytesPerSecond = Long.parseLong(System.getProperty("winbooks.test.bandwidth", "0"));
+
+        LatencyEnvironment latencyEnvironment = new LatencyEnvironment()
+                .withCallLatency(Duration.ofMillis(latencyMillis))
+                .withBandwidth(bytesPerSecond);
+        FILESYSTEM = LatencyFileSystem.newFileSystem(latencyEnvironment);
+        ROOT_PATH = FILESYSTEM.wrap(Paths.get(rootPathName));
+    }
+
+    @AfterClass
+    public static void closeFileSystem() {
+        if (FILESYSTEM != null) {
+            FILESYSTEM.close();
+        }
+    }
+
+    @Before
+    public void setup() throws WinbooksConfigurationException {
+        winbooksExtraService = new WinbooksExtraService();
+        winbooksFileConfiguration = winbooksExtraService.createWinbooksFileConfiguration(ROOT_PATH, BASE_NAME, Map.of());
+        FILESYSTEM.provider().resetStatistics();
+    }
+
+    @Test
+    public void testResolvePaths() {
+        measure("resolve dossier base path", () -> winbooksExtraService.getDossierBasePath(winbooksFileConfiguration));
+        measure("resolve act modification time", () -> winbooksExtraService.getActModificationDateTime(winbooksFileConfiguration));
+    }
+
+    @Test
+    public void testStreamBookYears() {
+        measure("stream book years", () -> winbooksExtraService.streamBookYears(winbooksFileConfiguration)
+                .count());
+    }
+
+    @Test
+    public void testStreamAct() {
+        measure("stream act", () -> winbooksExtraService.streamAct(winbooksFileConfiguration)
+                .count());
+    }
+
+    @Test
+    public void testStreamDocuments() {
+        List<WbBookYearFull> bookYears = winbooksExtraService.streamBookYears(winbooksFileConfiguration)
+                .collect(Collectors.toList());
+        FILESYSTEM.provider().resetStatistics();
+
+        measure("stream documents", () -> bookYears.stream()
+                .flatMap(year -> winbooksExtraService.streamBookYearDocuments(winbooksFileConfiguration, year))
+                .count());
+    }
+
+    @Test
+    public void testStreamDocumentsWithManifest() {
+        measure("scan dossier manifest", () -> winbooksExtraService.scanDossierManifest(winbooksFileConfiguration));
+        List<WbBookYearFull> bookYears = winbooksExtraService.streamBookYears(winbooksFileConfiguration)
+                .collect(Collectors.toList());
+
+        measure("stream documents with manifest", () -> bookYears.stream()
+                .flatMap(year -> winbooksExtraService.streamBookYearDocuments(winbooksFileConfiguration, year))
+                .count());
+    }
+
+    private void measure(String operationName, Supplier<Object> operation) {
+        LatencyFileSystemProvider provider = FILESYSTEM.provider();
+        provider.resetStatistics();
+
+        long time0 = System.currentTimeMillis();
+        Object result = operation.get();
+        long time1 = System.currentTimeMillis();
+        Duration duration = Duration.ofMillis(time1 - time0);
+
+        String message = MessageFormat.format("{0}: {1} in {2} ({3} calls, {4} bytes, {5} simulated wait). Result: {6}",
+                operationName, provider.getEnvironment(), duration,
+                provider.getCallCount(), provider.getTransferredBytes(), provider.getWaitedDuration(),
+                result);
+        logger.info(message);
+    }
+}
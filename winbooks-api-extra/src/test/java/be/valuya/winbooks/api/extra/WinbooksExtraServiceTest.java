@@ -0,0 +1,172 @@
+package be.valuya.winbooks.api.extra;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import be.valuya.winbooks.api.extra.config.WinbooksFileConfiguration;
+import be.valuya.winbooks.domain.error.WinbooksError;
+import be.valuya.winbooks.domain.error.WinbooksException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WinbooksExtraServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private WinbooksExtraService extraService;
+    private WinbooksFileConfiguration fileConfiguration;
+    private Path dossierPath;
+
+    @Before
+    public void setup() throws IOException {
+        Path rootPath = temporaryFolder.getRoot().toPath();
+        dossierPath = Files.createDirectory(rootPath.resolve("DOSSIER"));
+
+        fileConfiguration = new WinbooksFileConfiguration();
+        fileConfiguration.setRootPath(rootPath);
+        fileConfiguration.setBasePathName("DOSSIER");
+        fileConfiguration.setWinbooksCompanyName("DOSSIER");
+
+        extraService = new WinbooksExtraService();
+    }
+
+    @Test
+    public void testWriteFiles() throws IOException {
+        Path scansPath = Files.createDirectories(dossierPath.resolve("Document").resolve("SCANS"));
+        Files.write(scansPath.resolve("existing.pdf"), new byte[1]);
+        fileConfiguration.setDocumentUploadParallelism(3);
+
+        Map<Path, InputStream> inputStreamsByPath = new LinkedHashMap<>();
+        for (int fileIndex = 0; fileIndex < 20; fileIndex++) {
+            String folderName = fileIndex % 2 == 0 ? "even" : "odd";
+            Path path = dossierPath.resolve("Document").resolve("Scans").resolve(folderName).resolve("file" + fileIndex + ".pdf");
+            byte[] content = ("content " + fileIndex).getBytes(StandardCharsets.UTF_8);
+            inputStreamsByPath.put(path, new ByteArrayInputStream(content));
+        }
+        Path existingPath = dossierPath.resolve("Document").resolve("Scans").resolve("existing.pdf");
+        inputStreamsByPath.put(existingPath, new ByteArrayInputStream(new byte[2]));
+
+        Map<Path, Path> writtenPathsByPath = extraService.writeFiles(fileConfiguration, inputStreamsByPath);
+
+        Assert.assertEquals(21, writtenPathsByPath.size());
+        Path writtenPath = writtenPathsByPath.get(dossierPath.resolve("Document").resolve("Scans").resolve("odd").resolve("file7.pdf"));
+        Assert.assertEquals(scansPath.resolve("odd").resolve("file7.pdf"), writtenPath);
+        Assert.assertEquals("content 7", Files.readString(writtenPath));
+        Assert.assertEquals(2, Files.size(scansPath.resolve("existing.pdf")));
+
+        // Temporary files are gone
+        try (Stream<Path> pathStream = Files.walk(scansPath)) {
+            List<Path> temporaryPaths = pathStream
+                    .filter(path -> path.getFileName().toString().endsWith(".tmp"))
+                    .collect(Collectors.toList());
+            Assert.assertTrue(temporaryPaths.isEmpty());
+        }
+    }
+
+    @Test
+    public void testWriteFilesRejectsSameFile() throws IOException {
+        Path scansPath = Files.createDirectories(dossierPath.resolve("Document").resolve("SCANS"));
+        Map<Path, InputStream> inputStreamsByPath = new LinkedHashMap<>();
+        inputStreamsByPath.put(dossierPath.resolve("Document").resolve("Scans").resolve("file.pdf"), new ByteArrayInputStream(new byte[1]));
+        inputStreamsByPath.put(dossierPath.resolve("Document").resolve("SCANS").resolve("FILE.pdf"), new ByteArrayInputStream(new byte[2]));
+
+        try {
+            extraService.writeFiles(fileConfiguration, inputStreamsByPath);
+            Assert.fail();
+        } catch (WinbooksException exception) {
+            Assert.assertEquals(WinbooksError.INVALID_PARAMETER, exception.getWinbooksError());
+        }
+        try (Stream<Path> pathStream = Files.list(scansPath)) {
+            Assert.assertEquals(0, pathStream.count());
+        }
+    }
+
+    @Test
+    public void testWriteFile() throws IOException {
+        Path scansPath = Files.createDirectories(dossierPath.resolve("Document").resolve("SCANS"));
+        fileConfiguration.setDocumentUploadFingerprints(true);
+        Path path = dossierPath.resolve("Document").resolve("Scans").resolve("new").resolve("file.pdf");
+
+        Path writtenPath = extraService.writeFile(fileConfiguration, path, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        Assert.assertEquals(scansPath.resolve("new").resolve("file.pdf"), writtenPath);
+        Assert.assertEquals(3, Files.size(writtenPath));
+        Assert.assertEquals(Set.of(writtenPath), extraService.getFileFingerprints(fileConfiguration, writtenPath.getParent()).keySet());
+    }
+
+    @Test
+    public void testWriteFilesDropsChangedManifestDirectories() throws IOException {
+        Path documentsPath = dossierPath.resolve("Document");
+        Path scansPath = Files.createDirectories(documentsPath.resolve("SCANS"));
+        fileConfiguration.setDossierManifestOptional(Optional.of(new WinbooksDossierScanner().scanDossier(dossierPath)));
+
+        extraService.writeFiles(fileConfiguration, Map.of(
+                scansPath.resolve("new").resolve("file.pdf"), new ByteArrayInputStream(new byte[1])));
+
+        WinbooksDossierManifest dossierManifest = fileConfiguration.getDossierManifestOptional()
+                .orElseThrow(AssertionError::new);
+        Assert.assertFalse(dossierManifest.isScannedDirectory(scansPath));
+        Assert.assertTrue(dossierManifest.isScannedDirectory(dossierPath));
+        Assert.assertTrue(dossierManifest.isScannedDirectory(documentsPath));
+    }
+
+    @Test
+    public void testWriteFilesSkipsUnchangedContent() throws IOException {
+        fileConfiguration.setDocumentUploadFingerprints(true);
+        Path scansPath = dossierPath.resolve("Document").resolve("Scans");
+        Path unchangedPath = scansPath.resolve("unchanged.pdf");
+        Path changedPath = scansPath.resolve("changed.pdf");
+        extraService.writeFiles(fileConfiguration, Map.of(
+                unchangedPath, new ByteArrayInputStream(new byte[]{1, 2, 3}),
+                changedPath, new ByteArrayInputStream(new byte[]{1, 2, 3})
+        ));
+
+        Map<Path, WinbooksFileFingerprint> fingerprintsByPath = extraService.getFileFingerprints(fileConfiguration, scansPath);
+        Assert.assertEquals(2, fingerprintsByPath.size());
+        WinbooksFileFingerprint fingerprint = fingerprintsByPath.get(unchangedPath);
+        Assert.assertEquals(3, fingerprint.getSize());
+        Assert.assertEquals("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81", fingerprint.getSha256());
+
+        // Recognizable once unchanged content was not rewritten
+        FileTime pastTime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(unchangedPath, pastTime);
+        Files.setLastModifiedTime(changedPath, pastTime);
+        WinbooksFingerprintSidecar sidecar = WinbooksFingerprintSidecar.load(scansPath);
+        sidecar.putFingerprint("unchanged.pdf", pastTime, fingerprint);
+        sidecar.putFingerprint("changed.pdf", pastTime, fingerprint);
+        sidecar.save();
+
+        extraService.writeFiles(fileConfiguration, Map.of(
+                unchangedPath, new ByteArrayInputStream(new byte[]{1, 2, 3}),
+                changedPath, new ByteArrayInputStream(new byte[]{4, 5})
+        ));
+
+        Assert.assertEquals(pastTime, Files.getLastModifiedTime(unchangedPath));
+        Assert.assertEquals(2, Files.size(changedPath));
+        WinbooksFileFingerprint changedFingerprint = extraService.getFileFingerprints(fileConfiguration, scansPath)
+                .get(changedPath);
+        Assert.assertEquals(2, changedFingerprint.getSize());
+    }
+}
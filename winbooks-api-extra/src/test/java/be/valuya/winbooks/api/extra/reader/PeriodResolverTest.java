@@ -0,0 +1,80 @@
+package be.valuya.winbooks.api.extra.reader;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class PeriodResolverTest {
+
+    @Test
+    public void testFindWbPeriod() {
+        List<WbBookYearFull> bookYears = createBookYears();
+        PeriodResolver periodResolver = new PeriodResolver(false);
+        periodResolver.init(bookYears);
+
+        WbBookYearFull bookYear = periodResolver.findWbBookYearFull(2);
+        Assert.assertSame(bookYears.get(1), bookYear);
+        Assert.assertNull(periodResolver.findWbBookYearFull(3));
+        Assert.assertNull(periodResolver.findWbBookYearFull(-1));
+
+        Assert.assertEquals("2021    ", periodResolver.findWbPeriod(bookYear, 1, (Date) null).getShortName());
+        Assert.assertEquals("Closing ", periodResolver.findWbPeriod(bookYear, 99, (Date) null).getShortName());
+        Assert.assertNull(periodResolver.findWbPeriod(bookYear, 2, (Date) null));
+        Assert.assertNull(periodResolver.findWbPeriod(bookYear, 100, (Date) null));
+    }
+
+    @Test
+    public void testFindWbPeriodFromDate() {
+        List<WbBookYearFull> bookYears = createBookYears();
+
+        PeriodResolver periodResolver = new PeriodResolver(true);
+        periodResolver.init(bookYears);
+
+        Assert.assertEquals("Q2      ", findPeriodName(periodResolver, LocalDate.of(2020, 4, 15)));
+        // Opening period starts along with the first one
+        Assert.assertEquals("Opening ", findPeriodName(periodResolver, LocalDate.of(2021, 1, 31)));
+        Assert.assertEquals("Closing ", findPeriodName(periodResolver, LocalDate.of(2021, 12, 31)));
+        // No period starting that month, nor out of book years: first period
+        Assert.assertEquals("Opening ", findPeriodName(periodResolver, LocalDate.of(2020, 5, 1)));
+        Assert.assertEquals("Opening ", findPeriodName(periodResolver, LocalDate.of(2030, 1, 1)));
+
+        PeriodResolver mappedPeriodResolver = new PeriodResolver(false);
+        mappedPeriodResolver.init(bookYears);
+        Assert.assertNull(mappedPeriodResolver.findWbPeriod(null, 1, Optional.of(toDate(LocalDate.of(2020, 4, 15)))));
+    }
+
+    private List<WbBookYearFull> createBookYears() {
+        Map<String, String> paramMap = new HashMap<>();
+        paramMap.put("BOOKYEARCOUNT", "2");
+        // Quarters
+        paramMap.put("BOOKYEAR1.PERDATE", "01012020" + "01012020" + "01042020" + "01072020" + "01102020" + "31122020");
+        paramMap.put("BOOKYEAR1.PERLIB1", "Opening " + "Q1      " + "Q2      " + "Q3      " + "Q4      " + "Closing ");
+        paramMap.put("BOOKYEAR2.PERDATE", "01012021" + "01012021" + "31122021");
+        paramMap.put("BOOKYEAR2.PERLIB1", "Opening " + "2021    " + "Closing ");
+        return new WbBookYearParamsParser().parseBookYears(paramMap);
+    }
+
+    private String findPeriodName(PeriodResolver periodResolver, LocalDate localDate) {
+        WbPeriod wbPeriod = periodResolver.findWbPeriod(null, 1, Optional.of(toDate(localDate)));
+        return wbPeriod.getShortName();
+    }
+
+    private Date toDate(LocalDate localDate) {
+        return Date.from(localDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,63 @@
+package be.valuya.winbooks.api.extra.reader;
+
+import be.valuya.jbooks.model.WbBookYearFull;
+import be.valuya.jbooks.model.WbBookYearStatus;
+import be.valuya.jbooks.model.WbPeriod;
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class WbBookYearParamsParserTest {
+
+    @Test
+    public void testParseBookYears() {
+        Map<String, String> paramMap = new HashMap<>();
+        paramMap.put("BOOKYEARCOUNT", "10");
+        paramMap.put("AccountPicture", "LENGEN=6");
+        putBookYearParams(paramMap, 1, 2011);
+        putBookYearParams(paramMap, 10, 2020);
+        paramMap.put("BOOKYEAR10.STATUS", "2");
+        // Not a book year param
+        paramMap.put("BOOKYEARX.LONGLABEL", "X");
+
+        List<WbBookYearFull> bookYears = new WbBookYearParamsParser().parseBookYears(paramMap);
+
+        Assert.assertEquals(2, bookYears.size());
+        WbBookYearFull firstBookYear = bookYears.get(0);
+        Assert.assertEquals(1, firstBookYear.getIndex());
+        Assert.assertEquals("2011", firstBookYear.getShortName());
+        Assert.assertEquals(LocalDate.of(2011, 1, 1), firstBookYear.getStartDate());
+        Assert.assertEquals(LocalDate.of(2012, 1, 1), firstBookYear.getEndDate());
+
+        WbBookYearFull lastBookYear = bookYears.get(1);
+        Assert.assertEquals(10, lastBookYear.getIndex());
+        Assert.assertEquals("Year 2020", lastBookYear.getLongName());
+        Assert.assertEquals(WbBookYearStatus.fromValueStr("2").orElse(null), lastBookYear.getWbBookYearStatus());
+        List<WbPeriod> periods = lastBookYear.getPeriodList();
+        Assert.assertEquals(3, periods.size());
+        Assert.assertEquals(1, lastBookYear.getPeriods());
+        WbPeriod period = periods.get(1);
+        Assert.assertEquals(1, period.getIndex());
+        Assert.assertEquals("2020    ", period.getShortName());
+        Assert.assertSame(lastBookYear, period.getWbBookYearFull());
+        Assert.assertEquals(99, periods.get(2).getIndex());
+    }
+
+    private void putBookYearParams(Map<String, String> paramMap, int index, int year) {
+        String prefix = "BOOKYEAR" + index + ".";
+        paramMap.put(prefix + "LONGLABEL", "Year " + year);
+        paramMap.put(prefix + "SHORTLABEL", Integer.toString(year));
+        paramMap.put(prefix + "PERDATE", "0101" + year + "0101" + year + "3112" + year);
+        paramMap.put(prefix + "PERLIB1", "Opening " + year + "    " + "Closing ");
+    }
+}
@@ -0,0 +1,39 @@
+package be.valuya.winbooks.api.latency;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+class LatencyDirectoryStream implements DirectoryStream<Path> {
+
+    private final LatencyFileSystem fileSystem;
+    private final DirectoryStream<Path> delegateStream;
+
+    LatencyDirectoryStream(LatencyFileSystem fileSystem, DirectoryStream<Path> delegateStream) {
+        this.fileSystem = fileSystem;
+        this.delegateStream = delegateStream;
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        Iterator<Path> delegateIterator = delegateStream.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return delegateIterator.hasNext();
+            }
+
+            @Override
+            public Path next() {
+                Path delegatePath = delegateIterator.next();
+                return fileSystem.wrap(delegatePath);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegateStream.close();
+    }
+}
@@ -0,0 +1,44 @@
+package be.valuya.winbooks.api.latency;
+
+import java.time.Duration;
+
+/**
+ * Network conditions simulated by a {@link LatencyFileSystem}.
+ */
+public class LatencyEnvironment {
+
+    private Duration callLatency = Duration.ZERO;
+    private long bytesPerSecond = 0;
+
+    /**
+     * @param callLatency Delay added to every file system call (metadata access, directory listing, channel opening).
+     */
+    public LatencyEnvironment withCallLatency(Duration callLatency) {
+        this.callLatency = callLatency;
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond Maximum transfer rate of file content. 0 means unlimited.
+     */
+    public LatencyEnvironment withBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    public Duration getCallLatency() {
+        return callLatency;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyEnvironment{" +
+                "callLatency=" + callLatency +
+                ", bytesPerSecond=" + bytesPerSecond +
+                '}';
+    }
+}
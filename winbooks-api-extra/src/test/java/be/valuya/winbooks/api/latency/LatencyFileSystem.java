@@ -0,0 +1,117 @@
+package be.valuya.winbooks.api.latency;
+
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * View of the default file system behaving like a slow remote file system.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ *   LatencyEnvironment environment = new LatencyEnvironment()
+ *           .withCallLatency(Duration.ofMillis(20))
+ *           .withBandwidth(1024 * 1024);
+ *   LatencyFileSystem fileSystem = LatencyFileSystem.newFileSystem(environment);
+ *   Path rootPath = fileSystem.wrap(Paths.get("/local/winbooks/folder"));
+ * }</pre>
+ */
+public class LatencyFileSystem extends FileSystem {
+
+    private final FileSystem delegateFileSystem;
+    private final LatencyFileSystemProvider provider;
+
+    private volatile boolean open = true;
+
+    private LatencyFileSystem(FileSystem delegateFileSystem, LatencyFileSystemProvider provider) {
+        this.delegateFileSystem = delegateFileSystem;
+        this.provider = provider;
+    }
+
+    public static LatencyFileSystem newFileSystem(LatencyEnvironment environment) {
+        FileSystem defaultFileSystem = FileSystems.getDefault();
+        LatencyFileSystemProvider provider = new LatencyFileSystemProvider(environment);
+        LatencyFileSystem fileSystem = new LatencyFileSystem(defaultFileSystem, provider);
+        provider.setFileSystem(fileSystem);
+        return fileSystem;
+    }
+
+    /**
+     * @param delegatePath A path of the default file system
+     * @return The same path, accessed through this file system
+     */
+    public Path wrap(Path delegatePath) {
+        return new LatencyPath(this, delegatePath);
+    }
+
+    @Override
+    public LatencyFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return delegateFileSystem.isReadOnly();
+    }
+
+    @Override
+    public String getSeparator() {
+        return delegateFileSystem.getSeparator();
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return StreamSupport.stream(delegateFileSystem.getRootDirectories().spliterator(), false)
+                .map(this::wrap)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return delegateFileSystem.getFileStores();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return delegateFileSystem.supportedFileAttributeViews();
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        Path delegatePath = delegateFileSystem.getPath(first, more);
+        return wrap(delegatePath);
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        PathMatcher delegateMatcher = delegateFileSystem.getPathMatcher(syntaxAndPattern);
+        return path -> delegateMatcher.matches(((LatencyPath) path).getDelegate());
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        return delegateFileSystem.getUserPrincipalLookupService();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watch service not supported by latency file system");
+    }
+}
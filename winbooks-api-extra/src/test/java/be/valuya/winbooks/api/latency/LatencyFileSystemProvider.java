@@ -0,0 +1,230 @@
+package be.valuya.winbooks.api.latency;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.spi.FileSystemProvider;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File system provider wrapping the default file system, adding a configurable delay to every call and
+ * limiting the content transfer rate.
+ * <p>
+ * This allows to measure the behaviour of remote (ftp, smb) dossiers against local fixture dossiers.
+ * The provider is not registered as an installed provider: file systems are obtained through
+ * {@link LatencyFileSystem#newFileSystem(LatencyEnvironment)}.
+ */
+public class LatencyFileSystemProvider extends FileSystemProvider {
+
+    static final String SCHEME = "latency";
+
+    private final FileSystemProvider delegateProvider;
+    private final LatencyEnvironment environment;
+
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private final AtomicLong waitedNanos = new AtomicLong();
+
+    private LatencyFileSystem fileSystem;
+
+    LatencyFileSystemProvider(LatencyEnvironment environment) {
+        this.delegateProvider = FileSystems.getDefault().provider();
+        this.environment = environment;
+    }
+
+    void setFileSystem(LatencyFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    public LatencyEnvironment getEnvironment() {
+        return environment;
+    }
+
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    public long getTransferredBytes() {
+        return transferredBytes.get();
+    }
+
+    public Duration getWaitedDuration() {
+        return Duration.ofNanos(waitedNanos.get());
+    }
+
+    public void resetStatistics() {
+        callCount.set(0);
+        transferredBytes.set(0);
+        waitedNanos.set(0);
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        throw new UnsupportedOperationException("Use LatencyFileSystem.newFileSystem");
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        Path delegatePath = delegateProvider.getPath(URI.create("file://" + uri.getPath()));
+        return fileSystem.wrap(delegatePath);
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        simulateCall();
+        SeekableByteChannel delegateChannel = delegateProvider.newByteChannel(unwrap(path), options, attrs);
+        return new ThrottledByteChannel(delegateChannel, this);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        simulateCall();
+        LatencyPath latencyDir = toLatencyPath(dir);
+        DirectoryStream.Filter<Path> delegateFilter = delegatePath -> filter.accept(fileSystem.wrap(delegatePath));
+        DirectoryStream<Path> delegateStream = delegateProvider.newDirectoryStream(latencyDir.getDelegate(), delegateFilter);
+        return new LatencyDirectoryStream(fileSystem, delegateStream);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        simulateCall();
+        delegateProvider.createDirectory(unwrap(dir), attrs);
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        simulateCall();
+        delegateProvider.delete(unwrap(path));
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        simulateCall();
+        long size = delegateProvider.readAttributes(unwrap(source), BasicFileAttributes.class).size();
+        simulateTransfer(size);
+        delegateProvider.copy(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        simulateCall();
+        delegateProvider.move(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        simulateCall();
+        return delegateProvider.isSameFile(unwrap(path), unwrap(path2));
+    }
+
+    @Override
+    public boolean isHidden(Path path) throws IOException {
+        simulateCall();
+        return delegateProvider.isHidden(unwrap(path));
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        simulateCall();
+        return delegateProvider.getFileStore(unwrap(path));
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        simulateCall();
+        delegateProvider.checkAccess(unwrap(path), modes);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        return delegateProvider.getFileAttributeView(unwrap(path), type, options);
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        simulateCall();
+        return delegateProvider.readAttributes(unwrap(path), type, options);
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        simulateCall();
+        return delegateProvider.readAttributes(unwrap(path), attributes, options);
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        simulateCall();
+        delegateProvider.setAttribute(unwrap(path), attribute, value, options);
+    }
+
+    void simulateCall() throws IOException {
+        callCount.incrementAndGet();
+        Duration callLatency = environment.getCallLatency();
+        sleep(callLatency.toNanos());
+    }
+
+    void simulateTransfer(long byteCount) throws IOException {
+        if (byteCount <= 0) {
+            return;
+        }
+        transferredBytes.addAndGet(byteCount);
+        long bytesPerSecond = environment.getBytesPerSecond();
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long transferNanos = byteCount * 1_000_000_000L / bytesPerSecond;
+        sleep(transferNanos);
+    }
+
+    private void sleep(long nanos) throws IOException {
+        if (nanos <= 0) {
+            return;
+        }
+        waitedNanos.addAndGet(nanos);
+        try {
+            Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while simulating latency");
+        }
+    }
+
+    private LatencyPath toLatencyPath(Path path) {
+        if (!(path instanceof LatencyPath)) {
+            throw new ProviderMismatchException("Not a latency path: " + path);
+        }
+        return (LatencyPath) path;
+    }
+
+    private Path unwrap(Path path) {
+        return toLatencyPath(path).getDelegate();
+    }
+}
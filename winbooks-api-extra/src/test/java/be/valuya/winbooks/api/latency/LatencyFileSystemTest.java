@@ -0,0 +1,107 @@
+package be.valuya.winbooks.api.latency;
+
+import be.valuya.winbooks.api.DefaultCategory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(JUnit4.class)
+@Category(DefaultCategory.class)
+public class LatencyFileSystemTest {
+
+    private static final Duration CALL_LATENCY = Duration.ofMillis(5);
+    private static final long BYTES_PER_SECOND = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LatencyFileSystem fileSystem;
+    private Path rootPath;
+
+    @Before
+    public void setup() throws IOException {
+        Path localRootPath = temporaryFolder.getRoot().toPath();
+        Path localDossierPath = Files.createDirectory(localRootPath.resolve("DOSSIER"));
+        Files.write(localDossierPath.resolve("DOSSIER_ACT.DBF"), new byte[10 * 1024]);
+        Files.write(localDossierPath.resolve("DOSSIER_ACF.DBF"), "acf".getBytes(StandardCharsets.UTF_8));
+
+        LatencyEnvironment environment = new LatencyEnvironment()
+                .withCallLatency(CALL_LATENCY)
+                .withBandwidth(BYTES_PER_SECOND);
+        fileSystem = LatencyFileSystem.newFileSystem(environment);
+        rootPath = fileSystem.wrap(localRootPath);
+    }
+
+    @Test
+    public void testPathsStayOnLatencyFileSystem() throws IOException {
+        Path dossierPath = rootPath.resolve("DOSSIER");
+        Assert.assertSame(fileSystem, dossierPath.getFileSystem());
+        Assert.assertSame(fileSystem, dossierPath.getParent().getFileSystem());
+
+        try (Stream<Path> tablePathStream = Files.list(dossierPath)) {
+            List<Path> tablePaths = tablePathStream.collect(Collectors.toList());
+            Assert.assertEquals(2, tablePaths.size());
+            tablePaths.forEach(tablePath -> Assert.assertSame(fileSystem, tablePath.getFileSystem()));
+        }
+
+        Path relativePath = rootPath.relativize(dossierPath.resolve("DOSSIER_ACF.DBF"));
+        Assert.assertEquals(2, relativePath.getNameCount());
+    }
+
+    @Test
+    public void testCallLatency() throws IOException {
+        LatencyFileSystemProvider provider = fileSystem.provider();
+        provider.resetStatistics();
+
+        long time0 = System.nanoTime();
+        boolean exists = Files.exists(rootPath.resolve("DOSSIER").resolve("DOSSIER_ACF.DBF"));
+        boolean missing = Files.exists(rootPath.resolve("DOSSIER").resolve("DOSSIER_CSF.DBF"));
+        long time1 = System.nanoTime();
+
+        Assert.assertTrue(exists);
+        Assert.assertFalse(missing);
+        Assert.assertEquals(2, provider.getCallCount());
+        Duration elapsed = Duration.ofNanos(time1 - time0);
+        Assert.assertTrue(elapsed.compareTo(CALL_LATENCY.multipliedBy(2)) >= 0);
+    }
+
+    @Test
+    public void testBandwidthLimit() throws IOException {
+        LatencyFileSystemProvider provider = fileSystem.provider();
+        provider.resetStatistics();
+
+        long time0 = System.nanoTime();
+        byte[] content = Files.readAllBytes(rootPath.resolve("DOSSIER").resolve("DOSSIER_ACT.DBF"));
+        long time1 = System.nanoTime();
+
+        Assert.assertEquals(10 * 1024, content.length);
+        Assert.assertEquals(10 * 1024, provider.getTransferredBytes());
+        // 10kB at 100kB/s
+        Duration elapsed = Duration.ofNanos(time1 - time0);
+        Assert.assertTrue(elapsed.compareTo(Duration.ofMillis(100)) >= 0);
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Path uploadPath = rootPath.resolve("DOSSIER").resolve("upload.pdf");
+        Files.write(uploadPath, "pdf".getBytes(StandardCharsets.UTF_8));
+
+        Path localUploadPath = temporaryFolder.getRoot().toPath().resolve("DOSSIER").resolve("upload.pdf");
+        Assert.assertTrue(Files.exists(localUploadPath));
+        Assert.assertEquals(3, fileSystem.provider().getTransferredBytes());
+    }
+}
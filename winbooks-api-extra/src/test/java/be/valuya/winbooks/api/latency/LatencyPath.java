@@ -0,0 +1,195 @@
+package be.valuya.winbooks.api.latency;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Objects;
+
+class LatencyPath implements Path {
+
+    private final LatencyFileSystem fileSystem;
+    private final Path delegate;
+
+    LatencyPath(LatencyFileSystem fileSystem, Path delegate) {
+        this.fileSystem = fileSystem;
+        this.delegate = delegate;
+    }
+
+    Path getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public LatencyFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return delegate.isAbsolute();
+    }
+
+    @Override
+    public Path getRoot() {
+        return wrapNullable(delegate.getRoot());
+    }
+
+    @Override
+    public Path getFileName() {
+        return wrapNullable(delegate.getFileName());
+    }
+
+    @Override
+    public Path getParent() {
+        return wrapNullable(delegate.getParent());
+    }
+
+    @Override
+    public int getNameCount() {
+        return delegate.getNameCount();
+    }
+
+    @Override
+    public Path getName(int index) {
+        return wrap(delegate.getName(index));
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        return wrap(delegate.subpath(beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        return other instanceof LatencyPath
+                && delegate.startsWith(((LatencyPath) other).delegate);
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return delegate.startsWith(other);
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        return other instanceof LatencyPath
+                && delegate.endsWith(((LatencyPath) other).delegate);
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return delegate.endsWith(other);
+    }
+
+    @Override
+    public Path normalize() {
+        return wrap(delegate.normalize());
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        if (other instanceof LatencyPath) {
+            return wrap(delegate.resolve(((LatencyPath) other).delegate));
+        }
+        return wrap(delegate.resolve(other.toString()));
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return wrap(delegate.resolve(other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        if (other instanceof LatencyPath) {
+            return wrap(delegate.resolveSibling(((LatencyPath) other).delegate));
+        }
+        return wrap(delegate.resolveSibling(other.toString()));
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return wrap(delegate.resolveSibling(other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        if (!(other instanceof LatencyPath)) {
+            throw new ProviderMismatchException("Not a latency path: " + other);
+        }
+        return wrap(delegate.relativize(((LatencyPath) other).delegate));
+    }
+
+    @Override
+    public URI toUri() {
+        URI delegateUri = delegate.toUri();
+        return URI.create(LatencyFileSystemProvider.SCHEME + "://" + delegateUri.getRawPath());
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return wrap(delegate.toAbsolutePath());
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        fileSystem.provider().simulateCall();
+        return wrap(delegate.toRealPath(options));
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("Latency paths are not associated with the default provider");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watch service not supported by latency file system");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        throw new UnsupportedOperationException("Watch service not supported by latency file system");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return delegate.compareTo(((LatencyPath) other).delegate);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LatencyPath that = (LatencyPath) o;
+        return fileSystem == that.fileSystem &&
+                Objects.equals(delegate, that.delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileSystem, delegate);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    private Path wrap(Path delegatePath) {
+        return fileSystem.wrap(delegatePath);
+    }
+
+    private Path wrapNullable(Path delegatePathNullable) {
+        if (delegatePathNullable == null) {
+            return null;
+        }
+        return wrap(delegatePathNullable);
+    }
+}
@@ -0,0 +1,62 @@
+package be.valuya.winbooks.api.latency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+class ThrottledByteChannel implements SeekableByteChannel {
+
+    private final SeekableByteChannel delegateChannel;
+    private final LatencyFileSystemProvider provider;
+
+    ThrottledByteChannel(SeekableByteChannel delegateChannel, LatencyFileSystemProvider provider) {
+        this.delegateChannel = delegateChannel;
+        this.provider = provider;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int readCount = delegateChannel.read(dst);
+        provider.simulateTransfer(readCount);
+        return readCount;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int writtenCount = delegateChannel.write(src);
+        provider.simulateTransfer(writtenCount);
+        return writtenCount;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegateChannel.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        delegateChannel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegateChannel.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        delegateChannel.truncate(size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegateChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegateChannel.close();
+    }
+}